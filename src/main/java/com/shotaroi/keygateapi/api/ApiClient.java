@@ -1,7 +1,11 @@
 package com.shotaroi.keygateapi.api;
 
+import com.shotaroi.keygateapi.ratelimit.FailMode;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.Instant;
 
@@ -25,16 +29,74 @@ public class ApiClient {
     @Column(nullable = false, unique = true, length = 64)
     private String apiKeyHash;
 
+    // the key replaced by the last rotation, still accepted until previousKeyExpiresAt
+    @Column(unique = true, length = 64)
+    private String previousApiKeyHash;
+
+    @Column
+    private Instant previousKeyExpiresAt;
+
+    // the key stops working at this point (null = never)
+    @Column
+    private Instant expiresAt;
+
+    // set by POST /clients/{id}/revoke, none of the client's keys work after that
+    @Column
+    private Instant revokedAt;
+
     // how many requests per minute they are allowed
     @Column(nullable = false)
     private int requestsPerMinute;
 
+    // which limiter algorithm applies to this client
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    @ColumnDefault("'FIXED_WINDOW'")
+    @Builder.Default
+    private RateLimitAlgorithm rateLimitAlgorithm = RateLimitAlgorithm.FIXED_WINDOW;
+
+    // max requests at once for TOKEN_BUCKET (null = same as requestsPerMinute)
+    @Column
+    private Integer burst;
+
+    // optional limits on top of requestsPerMinute (null = no such limit)
+    @Column
+    private Integer requestsPerSecond;
+
+    @Column
+    private Integer requestsPerHour;
+
+    @Column
+    private Integer requestsPerDay;
+
+    // requests in flight at once, to protect slow backends
+    @Column
+    private Integer maxConcurrent;
+
+    // what happens to this client's requests while Redis is down
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    @ColumnDefault("'LOCAL'")
+    @Builder.Default
+    private FailMode failMode = FailMode.LOCAL;
+
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
 
+    // drives the auth caches' delta refresh
+    @Column(nullable = false)
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    private Instant updatedAt;
+
     @PrePersist
     void onCreate() {
         createdAt = Instant.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        updatedAt = Instant.now();
     }
 
     public String getApiKeyHash() {
@@ -61,6 +123,32 @@ public class ApiClient {
         this.name = name;
     }
 
+    public boolean isRevoked() {
+        return revokedAt != null;
+    }
+
+    // the rotated-out key, while its grace period lasts
+    public boolean hasPreviousKey(Instant now) {
+        return previousApiKeyHash != null && previousKeyExpiresAt != null && previousKeyExpiresAt.isAfter(now);
+    }
+
+    public int effectiveBurst() {
+        return burst != null ? burst : requestsPerMinute;
+    }
+
+    public RateLimitPolicy.Quotas quotas() {
+        return new RateLimitPolicy.Quotas(
+                orZero(requestsPerSecond),
+                orZero(requestsPerHour),
+                orZero(requestsPerDay),
+                orZero(maxConcurrent)
+        );
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
     public Long getId() {
         return id;
     }
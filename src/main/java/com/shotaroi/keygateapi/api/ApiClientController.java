@@ -1,57 +1,116 @@
 package com.shotaroi.keygateapi.api;
 
-import com.shotaroi.keygateapi.security.ApiKeyHasher;
-import com.shotaroi.keygateapi.security.ApiKeyService;
+import com.shotaroi.keygateapi.ratelimit.FailMode;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+
 @RestController
 @RequestMapping("/clients")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ApiClientController {
 
-    private final ApiClientRepository repo;
-    private final ApiKeyService keyService;
-    private final ApiKeyHasher hasher;
+    private final ApiClientService clients;
 
-    public ApiClientController(ApiClientRepository repo, ApiKeyService keyService, ApiKeyHasher hasher) {
-        this.repo = repo;
-        this.keyService = keyService;
-        this.hasher = hasher;
+    public ApiClientController(ApiClientService clients) {
+        this.clients = clients;
     }
 
     public record CreateClientRequest(
             @NotBlank String name,
-            @Min(1) @Max(300) int requestsPerMinute
+            @Min(1) @Max(300) int requestsPerMinute,
+            RateLimitAlgorithm rateLimitAlgorithm, // optional, defaults to FIXED_WINDOW
+            @Min(1) @Max(300) Integer burst,       // optional, defaults to requestsPerMinute
+            FailMode failMode,                     // optional, defaults to LOCAL
+            // optional extra limits, checked together with requestsPerMinute
+            @Min(1) @Max(300) Integer requestsPerSecond,
+            @Min(1) @Max(18_000) Integer requestsPerHour,
+            @Min(1) @Max(432_000) Integer requestsPerDay,
+            @Min(1) @Max(1_000) Integer maxConcurrent,
+            @Min(1) Long expiresInSeconds          // optional, the key never expires by default
     ) {}
 
     public record CreateClientResponse(
             Long id,
             String name,
             int requestsPerMinute,
+            RateLimitAlgorithm rateLimitAlgorithm,
+            int burst,
+            FailMode failMode,
+            Integer requestsPerSecond,
+            Integer requestsPerHour,
+            Integer requestsPerDay,
+            Integer maxConcurrent,
+            Instant expiresAt,
             String apiKey // show only once
     ) {}
 
+    // null fields are left unchanged; 0 removes one of the optional limits
+    public record UpdateClientRequest(
+            @Size(min = 1) String name,
+            @Min(1) @Max(300) Integer requestsPerMinute,
+            RateLimitAlgorithm rateLimitAlgorithm,
+            @Min(1) @Max(300) Integer burst,
+            FailMode failMode,
+            @Min(0) @Max(300) Integer requestsPerSecond,
+            @Min(0) @Max(18_000) Integer requestsPerHour,
+            @Min(0) @Max(432_000) Integer requestsPerDay,
+            @Min(0) @Max(1_000) Integer maxConcurrent,
+            @Min(0) Long expiresInSeconds          // from now; 0 removes the expiry
+    ) {}
+
+    public record ClientResponse(
+            Long id,
+            String name,
+            int requestsPerMinute,
+            RateLimitAlgorithm rateLimitAlgorithm,
+            int burst,
+            FailMode failMode,
+            Integer requestsPerSecond,
+            Integer requestsPerHour,
+            Integer requestsPerDay,
+            Integer maxConcurrent,
+            Instant expiresAt,
+            Instant previousKeyExpiresAt,
+            Instant revokedAt
+    ) {}
+
+    // optional body; 0 cuts the old key off right away
+    public record RotateKeyRequest(
+            @Min(0) @Max(604_800) Long gracePeriodSeconds
+    ) {}
+
+    public record RotateKeyResponse(
+            Long id,
+            String apiKey, // show only once
+            Instant expiresAt,
+            Instant previousKeyExpiresAt
+    ) {}
+
     @PostMapping
     public CreateClientResponse create(@Valid @RequestBody CreateClientRequest req) {
-        String rawKey = keyService.generateRawKey();
-        String hash = hasher.sha256(rawKey);
-
-//        ApiClient saved = repo.save(ApiClient.builder()
-//                .name(req.name())
-//                .requestsPerMinute(req.requestsPerMinute())
-//                .apiKeyHash(hash)
-//                .build());
-        ApiClient client = new ApiClient();
-        client.setName(req.name());
-        client.setRequestsPerMinute(req.requestsPerMinute());
-        client.setApiKeyHash(hash);
+        return clients.create(req);
+    }
 
-        ApiClient saved = repo.save(client);
+    @PatchMapping("/{id}")
+    public ClientResponse update(@PathVariable Long id, @Valid @RequestBody UpdateClientRequest req) {
+        return clients.update(id, req);
+    }
 
+    @PostMapping("/{id}/rotate")
+    public RotateKeyResponse rotate(@PathVariable Long id, @Valid @RequestBody(required = false) RotateKeyRequest req) {
+        return clients.rotate(id, req);
+    }
 
-        return new CreateClientResponse(saved.getId(), saved.getName(), saved.getRequestsPerMinute(), rawKey);
+    @PostMapping("/{id}/revoke")
+    public ClientResponse revoke(@PathVariable Long id) {
+        return clients.revoke(id);
     }
 }
@@ -1,9 +1,35 @@
 package com.shotaroi.keygateapi.api;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 public interface ApiClientRepository extends JpaRepository<ApiClient, Long> {
     Optional<ApiClient> findByApiKeyHash(String apiKeyHash);
+
+    // current key, or the one replaced by the last rotation
+    Optional<ApiClient> findByApiKeyHashOrPreviousApiKeyHash(String apiKeyHash, String previousApiKeyHash);
+
+    @Query("select min(c.id) from ApiClient c")
+    Long findMinId();
+
+    @Query("select max(c.id) from ApiClient c")
+    Long findMaxId();
+
+    // keyset page of (afterId, lastId], for the cache warm-up
+    @Query("select c from ApiClient c where c.id > :afterId and c.id <= :lastId order by c.id")
+    List<ApiClient> findIdRange(@Param("afterId") long afterId, @Param("lastId") long lastId, Limit limit);
+
+    // keyset page of rows changed after (since, afterId), for the cache delta refresh
+    @Query("""
+            select c from ApiClient c
+            where c.updatedAt > :since or (c.updatedAt = :since and c.id > :afterId)
+            order by c.updatedAt, c.id
+            """)
+    List<ApiClient> findUpdatedSince(@Param("since") Instant since, @Param("afterId") long afterId, Limit limit);
 }
@@ -0,0 +1,229 @@
+package com.shotaroi.keygateapi.api;
+
+import com.shotaroi.keygateapi.api.ApiClientController.ClientResponse;
+import com.shotaroi.keygateapi.api.ApiClientController.CreateClientRequest;
+import com.shotaroi.keygateapi.api.ApiClientController.CreateClientResponse;
+import com.shotaroi.keygateapi.api.ApiClientController.RotateKeyRequest;
+import com.shotaroi.keygateapi.api.ApiClientController.RotateKeyResponse;
+import com.shotaroi.keygateapi.api.ApiClientController.UpdateClientRequest;
+import com.shotaroi.keygateapi.errors.ResourceNotFoundException;
+import com.shotaroi.keygateapi.ratelimit.FailMode;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.security.ApiKeyHasher;
+import com.shotaroi.keygateapi.security.ApiKeyService;
+import com.shotaroi.keygateapi.security.ClientChangeBus;
+import com.shotaroi.keygateapi.security.RevokedKeys;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// client admin for /clients, shared by the servlet and reactive controllers; blocking (JPA + Redis)
+@Service
+public class ApiClientService {
+
+    private final ApiClientRepository repo;
+    private final ApiKeyService keyService;
+    private final ApiKeyHasher hasher;
+    private final ClientChangeBus changeBus;
+    private final RevokedKeys revokedKeys;
+
+    // how long the old key keeps working after a rotation, unless the request says otherwise
+    private static final Duration DEFAULT_ROTATION_GRACE = Duration.ofHours(24);
+
+    public ApiClientService(ApiClientRepository repo,
+                            ApiKeyService keyService,
+                            ApiKeyHasher hasher,
+                            ClientChangeBus changeBus,
+                            RevokedKeys revokedKeys) {
+        this.repo = repo;
+        this.keyService = keyService;
+        this.hasher = hasher;
+        this.changeBus = changeBus;
+        this.revokedKeys = revokedKeys;
+    }
+
+    public CreateClientResponse create(CreateClientRequest req) {
+        String rawKey = keyService.generateRawKey();
+        String hash = hasher.sha256(rawKey);
+
+//        ApiClient saved = repo.save(ApiClient.builder()
+//                .name(req.name())
+//                .requestsPerMinute(req.requestsPerMinute())
+//                .apiKeyHash(hash)
+//                .build());
+        ApiClient client = new ApiClient();
+        client.setName(req.name());
+        client.setRequestsPerMinute(req.requestsPerMinute());
+        client.setApiKeyHash(hash);
+        client.setRateLimitAlgorithm(req.rateLimitAlgorithm() != null
+                ? req.rateLimitAlgorithm()
+                : RateLimitAlgorithm.FIXED_WINDOW);
+        client.setBurst(req.burst());
+        client.setFailMode(req.failMode() != null ? req.failMode() : FailMode.LOCAL);
+        client.setRequestsPerSecond(req.requestsPerSecond());
+        client.setRequestsPerHour(req.requestsPerHour());
+        client.setRequestsPerDay(req.requestsPerDay());
+        client.setMaxConcurrent(req.maxConcurrent());
+        if (req.expiresInSeconds() != null) {
+            client.setExpiresAt(Instant.now().plusSeconds(req.expiresInSeconds()));
+        }
+
+        ApiClient saved = repo.save(client);
+
+        // the hash may have been cached as "invalid" if someone tried it before it existed,
+        // here or on any other node
+        changeBus.publish(hash);
+
+        return new CreateClientResponse(
+                saved.getId(),
+                saved.getName(),
+                saved.getRequestsPerMinute(),
+                saved.getRateLimitAlgorithm(),
+                saved.effectiveBurst(),
+                saved.getFailMode(),
+                saved.getRequestsPerSecond(),
+                saved.getRequestsPerHour(),
+                saved.getRequestsPerDay(),
+                saved.getMaxConcurrent(),
+                saved.getExpiresAt(),
+                rawKey
+        );
+    }
+
+    public ClientResponse update(Long id, UpdateClientRequest req) {
+        ApiClient client = repo.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Client not found: " + id));
+
+        if (req.name() != null) {
+            client.setName(req.name());
+        }
+        if (req.requestsPerMinute() != null) {
+            client.setRequestsPerMinute(req.requestsPerMinute());
+        }
+        if (req.rateLimitAlgorithm() != null) {
+            client.setRateLimitAlgorithm(req.rateLimitAlgorithm());
+        }
+        if (req.burst() != null) {
+            client.setBurst(req.burst());
+        }
+        if (req.failMode() != null) {
+            client.setFailMode(req.failMode());
+        }
+        if (req.requestsPerSecond() != null) {
+            client.setRequestsPerSecond(unlessZero(req.requestsPerSecond()));
+        }
+        if (req.requestsPerHour() != null) {
+            client.setRequestsPerHour(unlessZero(req.requestsPerHour()));
+        }
+        if (req.requestsPerDay() != null) {
+            client.setRequestsPerDay(unlessZero(req.requestsPerDay()));
+        }
+        if (req.maxConcurrent() != null) {
+            client.setMaxConcurrent(unlessZero(req.maxConcurrent()));
+        }
+        if (req.expiresInSeconds() != null) {
+            client.setExpiresAt(req.expiresInSeconds() == 0 ? null : Instant.now().plusSeconds(req.expiresInSeconds()));
+        }
+
+        ApiClient saved = repo.save(client);
+        publishKeys(saved);
+
+        return toResponse(saved);
+    }
+
+    // new key; the old one keeps working for the grace period, sharing the client's limits
+    public RotateKeyResponse rotate(Long id, RotateKeyRequest req) {
+        ApiClient client = repo.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Client not found: " + id));
+        if (client.isRevoked()) {
+            throw new IllegalArgumentException("Client is revoked: " + id);
+        }
+
+        Duration grace = (req != null && req.gracePeriodSeconds() != null)
+                ? Duration.ofSeconds(req.gracePeriodSeconds())
+                : DEFAULT_ROTATION_GRACE;
+        Instant now = Instant.now();
+
+        // a key from an earlier rotation that is still in its grace period stops working now
+        String cutOff = client.hasPreviousKey(now) ? client.getPreviousApiKeyHash() : null;
+        String oldHash = client.getApiKeyHash();
+
+        String rawKey = keyService.generateRawKey();
+        String hash = hasher.sha256(rawKey);
+        client.setApiKeyHash(hash);
+        if (grace.isZero()) {
+            client.setPreviousApiKeyHash(null);
+            client.setPreviousKeyExpiresAt(null);
+        } else {
+            client.setPreviousApiKeyHash(oldHash);
+            client.setPreviousKeyExpiresAt(now.plus(grace));
+        }
+
+        ApiClient saved = repo.save(client);
+
+        if (cutOff != null) {
+            revokedKeys.revoke(cutOff);
+            changeBus.publish(cutOff);
+        }
+        if (grace.isZero()) {
+            revokedKeys.revoke(oldHash);
+        }
+        changeBus.publish(oldHash);
+        changeBus.publish(hash);
+
+        return new RotateKeyResponse(saved.getId(), rawKey, saved.getExpiresAt(), saved.getPreviousKeyExpiresAt());
+    }
+
+    // permanent: the current key and any key still in its grace period stop working on every node
+    public ClientResponse revoke(Long id) {
+        ApiClient client = repo.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Client not found: " + id));
+        if (client.isRevoked()) {
+            return toResponse(client);
+        }
+
+        Instant now = Instant.now();
+        boolean hadPreviousKey = client.hasPreviousKey(now);
+        client.setRevokedAt(now);
+        ApiClient saved = repo.save(client);
+
+        revokedKeys.revoke(saved.getApiKeyHash());
+        if (hadPreviousKey) {
+            revokedKeys.revoke(saved.getPreviousApiKeyHash());
+        }
+        publishKeys(saved);
+
+        return toResponse(saved);
+    }
+
+    // drops every key of the client from the auth caches, here and on the other nodes
+    private void publishKeys(ApiClient client) {
+        changeBus.publish(client.getApiKeyHash());
+        if (client.getPreviousApiKeyHash() != null) {
+            changeBus.publish(client.getPreviousApiKeyHash());
+        }
+    }
+
+    private static ClientResponse toResponse(ApiClient client) {
+        return new ClientResponse(
+                client.getId(),
+                client.getName(),
+                client.getRequestsPerMinute(),
+                client.getRateLimitAlgorithm(),
+                client.effectiveBurst(),
+                client.getFailMode(),
+                client.getRequestsPerSecond(),
+                client.getRequestsPerHour(),
+                client.getRequestsPerDay(),
+                client.getMaxConcurrent(),
+                client.getExpiresAt(),
+                client.getPreviousKeyExpiresAt(),
+                client.getRevokedAt()
+        );
+    }
+
+    private static Integer unlessZero(int value) {
+        return value == 0 ? null : value;
+    }
+}
@@ -0,0 +1,51 @@
+package com.shotaroi.keygateapi.api;
+
+import com.shotaroi.keygateapi.api.ApiClientController.ClientResponse;
+import com.shotaroi.keygateapi.api.ApiClientController.CreateClientRequest;
+import com.shotaroi.keygateapi.api.ApiClientController.CreateClientResponse;
+import com.shotaroi.keygateapi.api.ApiClientController.RotateKeyRequest;
+import com.shotaroi.keygateapi.api.ApiClientController.RotateKeyResponse;
+import com.shotaroi.keygateapi.api.ApiClientController.UpdateClientRequest;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// same endpoints and bodies as ApiClientController, for the reactive profile;
+// the JPA and Redis calls behind them block, so they run off the event loop
+@RestController
+@RequestMapping("/clients")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveApiClientController {
+
+    private final ApiClientService clients;
+
+    public ReactiveApiClientController(ApiClientService clients) {
+        this.clients = clients;
+    }
+
+    @PostMapping
+    public Mono<CreateClientResponse> create(@Valid @RequestBody CreateClientRequest req) {
+        return Mono.fromCallable(() -> clients.create(req))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ClientResponse> update(@PathVariable Long id, @Valid @RequestBody UpdateClientRequest req) {
+        return Mono.fromCallable(() -> clients.update(id, req))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @PostMapping("/{id}/rotate")
+    public Mono<RotateKeyResponse> rotate(@PathVariable Long id, @Valid @RequestBody(required = false) RotateKeyRequest req) {
+        return Mono.fromCallable(() -> clients.rotate(id, req))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @PostMapping("/{id}/revoke")
+    public Mono<ClientResponse> revoke(@PathVariable Long id) {
+        return Mono.fromCallable(() -> clients.revoke(id))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,61 @@
+package com.shotaroi.keygateapi.config;
+
+import com.shotaroi.keygateapi.errors.ApiErrorWriter;
+import com.shotaroi.keygateapi.metrics.AuthMetrics;
+import com.shotaroi.keygateapi.ratelimit.ReactiveRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.RouteCosts;
+import com.shotaroi.keygateapi.security.ApiClientCache;
+import com.shotaroi.keygateapi.security.ApiKeyHasher;
+import com.shotaroi.keygateapi.security.ReactiveApiKeyAuthFilter;
+import com.shotaroi.keygateapi.security.RevokedKeys;
+import com.shotaroi.keygateapi.trace.ReactiveRequestIdFilter;
+import com.shotaroi.keygateapi.trace.RequestIdGenerator;
+import com.shotaroi.keygateapi.trace.RequestIdProperties;
+import com.shotaroi.keygateapi.usage.UsageRecorder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+// SecurityConfig for the reactive profile (spring.main.web-application-type=reactive)
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ApiClientCache clientCache,
+                                                         RevokedKeys revokedKeys,
+                                                         ApiKeyHasher hasher,
+                                                         ReactiveRateLimiter rateLimiter,
+                                                         RouteCosts routeCosts,
+                                                         ApiErrorWriter errorWriter,
+                                                         AuthMetrics metrics,
+                                                         UsageRecorder usageRecorder,
+                                                         RequestIdGenerator requestIdGenerator,
+                                                         RequestIdProperties requestIdProps) {
+        var apiKeyAuthFilter = new ReactiveApiKeyAuthFilter(
+                clientCache, revokedKeys, hasher, rateLimiter, routeCosts, errorWriter, metrics, usageRecorder
+        );
+
+        return http
+                .csrf(csrf -> csrf.disable())
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(auth -> auth
+                        .pathMatchers("/actuator/**").permitAll()
+                        .pathMatchers("/clients/**").permitAll()
+                        .pathMatchers("/public/**").permitAll()
+                        .anyExchange().authenticated()
+                )
+                .addFilterAt(new ReactiveRequestIdFilter(requestIdGenerator, requestIdProps), SecurityWebFiltersOrder.FIRST)
+                .addFilterAt(apiKeyAuthFilter, SecurityWebFiltersOrder.AUTHENTICATION)
+                .httpBasic(basic -> basic.disable())
+                .formLogin(form -> form.disable())
+                .build();
+    }
+}
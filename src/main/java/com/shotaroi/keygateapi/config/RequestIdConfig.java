@@ -0,0 +1,22 @@
+package com.shotaroi.keygateapi.config;
+
+import com.shotaroi.keygateapi.trace.RequestIdGenerator;
+import com.shotaroi.keygateapi.trace.RequestIdProperties;
+import com.shotaroi.keygateapi.trace.TimeOrderedRequestIdGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.UUID;
+
+// ids for requests that arrive without one; both filters use it
+@Configuration
+public class RequestIdConfig {
+
+    @Bean
+    public RequestIdGenerator requestIdGenerator(RequestIdProperties props) {
+        return switch (props.generator()) {
+            case TIME_ORDERED -> new TimeOrderedRequestIdGenerator();
+            case RANDOM -> () -> UUID.randomUUID().toString();
+        };
+    }
+}
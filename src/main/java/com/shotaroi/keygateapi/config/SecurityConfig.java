@@ -2,6 +2,7 @@ package com.shotaroi.keygateapi.config;
 
 import com.shotaroi.keygateapi.security.ApiKeyAuthFilter;
 import com.shotaroi.keygateapi.trace.RequestIdFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -10,6 +11,7 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SecurityConfig {
 
     private final ApiKeyAuthFilter apiKeyAuthFilter;
@@ -0,0 +1,482 @@
+package com.shotaroi.keygateapi.errors;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes {@link ApiError} bodies without Jackson databinding. The fixed part of an error
+ * (status, error, message) is encoded to UTF-8 once and cached. Timestamp, path and details
+ * are spliced in as the body is streamed out.
+ *
+ * <p>Field order, map key order and the timestamp format are taken from the application's
+ * ObjectMapper at startup. A probe error is rendered both ways and the bytes are compared.
+ * If they differ (a mapper setting we don't reproduce), every body goes through Jackson.
+ * Bodies whose details hold nulls or types other than strings, numbers, booleans, maps and
+ * collections also go through Jackson.
+ */
+@Component
+public class ApiErrorWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiErrorWriter.class);
+
+    // messages can carry ids etc., so don't let the template cache grow without bound
+    private static final int MAX_TEMPLATES = 256;
+    private static final int CHUNK_SIZE = 512;
+
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    private enum Field {
+        TIMESTAMP("timestamp"), STATUS("status"), ERROR("error"), MESSAGE("message"), PATH("path"), DETAILS("details");
+
+        final String json;
+
+        Field(String json) {
+            this.json = json;
+        }
+
+        boolean variable() {
+            return this == TIMESTAMP || this == PATH || this == DETAILS;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final Map<TemplateKey, byte[][]> templates = new ConcurrentHashMap<>();
+
+    // how the configured mapper writes an ApiError; compatible=false means always use Jackson
+    private final Field[] order;
+    private final Field[] variables;
+    private final boolean sortMapKeys;
+    private final boolean compatible;
+
+    @Autowired
+    public ApiErrorWriter(ObjectMapper objectMapper) {
+        this(objectMapper, Clock.systemUTC());
+    }
+
+    ApiErrorWriter(ObjectMapper objectMapper, Clock clock) {
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+
+        Map<String, Object> probeDetails = new LinkedHashMap<>();
+        probeDetails.put("b", 1);
+        probeDetails.put("a", "x");
+        Instant probeTime = Instant.ofEpochSecond(1_700_000_000L, 123_456_000);
+        byte[] expected = objectMapper.writeValueAsBytes(
+                new ApiError(probeTime, 599, "probe", "probe \"message\"", "/probe", probeDetails)
+        );
+
+        Field[] found = orderIn(new String(expected, StandardCharsets.UTF_8));
+        Field[] vars = (found != null) ? variablesOf(found) : new Field[0];
+        boolean sorted = false;
+        boolean matches = false;
+        if (found != null) {
+            for (boolean sort : new boolean[]{false, true}) {
+                byte[] ours = render(found, vars, sort, probeTime, 599, "probe", "probe \"message\"", "/probe", probeDetails, null);
+                if (Arrays.equals(ours, expected)) {
+                    sorted = sort;
+                    matches = true;
+                    break;
+                }
+            }
+        }
+
+        this.order = found;
+        this.variables = vars;
+        this.sortMapKeys = sorted;
+        this.compatible = matches;
+        if (!matches) {
+            log.info("ObjectMapper settings differ from what ApiErrorWriter reproduces, error bodies use Jackson");
+        }
+    }
+
+    public void write(HttpServletResponse response,
+                      int status,
+                      String error,
+                      String message,
+                      String path,
+                      Map<String, ?> details,
+                      String requestId) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        writeTo(response.getOutputStream(), status, error, message, path, details, requestId);
+        response.flushBuffer();
+    }
+
+    public byte[] toBytes(int status,
+                          String error,
+                          String message,
+                          String path,
+                          Map<String, ?> details,
+                          String requestId) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            writeTo(out, status, error, message, path, details, requestId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public void writeTo(OutputStream stream,
+                        int status,
+                        String error,
+                        String message,
+                        String path,
+                        Map<String, ?> details,
+                        String requestId) throws IOException {
+        Instant timestamp = clock.instant();
+
+        // check everything up front: once bytes are on the wire we can't switch to Jackson
+        if (!compatible || message == null || path == null || !supported(details)) {
+            Map<String, Object> merged = new LinkedHashMap<>(details);
+            if (requestId != null) {
+                merged.put("requestId", requestId);
+            }
+            objectMapper.writeValue(stream, new ApiError(timestamp, status, error, message, path, merged));
+            return;
+        }
+
+        Sink out = new Sink(stream, CHUNK_SIZE);
+        try {
+            byte[][] segments = segments(status, error, message);
+            writeBody(out, segments, variables, sortMapKeys, timestamp, path, details, requestId);
+            out.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private byte[][] segments(int status, String error, String message) {
+        TemplateKey key = new TemplateKey(status, error, message);
+        byte[][] cached = templates.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        byte[][] built = buildSegments(order, status, error, message);
+        if (templates.size() < MAX_TEMPLATES) {
+            templates.putIfAbsent(key, built);
+        }
+        return built;
+    }
+
+    // the constant text before each variable field, plus the closing brace:
+    // {"timestamp":  |  ,"status":429,"error":"rate_limited","message":"Too many requests","path":  |  ,"details":  |  }
+    private static byte[][] buildSegments(Field[] order, int status, String error, String message) {
+        List<byte[]> segments = new ArrayList<>();
+        Sink segment = new Sink(null, 64);
+        segment.put((byte) '{');
+
+        for (int i = 0; i < order.length; i++) {
+            if (i > 0) {
+                segment.put((byte) ',');
+            }
+            writeString(segment, order[i].json);
+            segment.put((byte) ':');
+            switch (order[i]) {
+                case STATUS -> segment.putAscii(Integer.toString(status));
+                case ERROR -> writeString(segment, error);
+                case MESSAGE -> writeString(segment, message);
+                default -> {
+                    segments.add(segment.toByteArray());
+                    segment = new Sink(null, 64);
+                }
+            }
+        }
+
+        segment.put((byte) '}');
+        segments.add(segment.toByteArray());
+        return segments.toArray(new byte[0][]);
+    }
+
+    private static byte[] render(Field[] order, Field[] variables, boolean sortMapKeys, Instant timestamp,
+                                 int status, String error, String message, String path,
+                                 Map<String, ?> details, String requestId) {
+        Sink out = new Sink(null, 256);
+        writeBody(out, buildSegments(order, status, error, message), variables, sortMapKeys, timestamp, path, details, requestId);
+        return out.toByteArray();
+    }
+
+    private static void writeBody(Sink out, byte[][] segments, Field[] variables, boolean sortMapKeys,
+                                  Instant timestamp, String path, Map<String, ?> details, String requestId) {
+        for (int i = 0; i < variables.length; i++) {
+            out.put(segments[i]);
+            switch (variables[i]) {
+                case TIMESTAMP -> {
+                    // ISO_INSTANT, same as Jackson's default for Instant
+                    out.put((byte) '"');
+                    out.putAscii(timestamp.toString());
+                    out.put((byte) '"');
+                }
+                case PATH -> writeString(out, path);
+                default -> writeDetails(out, details, requestId, sortMapKeys);
+            }
+        }
+        out.put(segments[variables.length]);
+    }
+
+    private static void writeDetails(Sink out, Map<String, ?> details, String requestId, boolean sortMapKeys) {
+        if (sortMapKeys || requestId == null) {
+            Map<String, Object> merged = sortMapKeys ? new TreeMap<>(details) : new LinkedHashMap<>(details);
+            if (requestId != null) {
+                merged.put("requestId", requestId);
+            }
+            writeValue(out, merged, sortMapKeys);
+            return;
+        }
+
+        // common case, no copy: the details, then requestId last
+        out.put((byte) '{');
+        for (Map.Entry<String, ?> entry : details.entrySet()) {
+            writeString(out, entry.getKey());
+            out.put((byte) ':');
+            writeValue(out, entry.getValue(), false);
+            out.put((byte) ',');
+        }
+        writeString(out, "requestId");
+        out.put((byte) ':');
+        writeString(out, requestId);
+        out.put((byte) '}');
+    }
+
+    private static void writeValue(Sink out, Object value, boolean sortMapKeys) {
+        if (value instanceof String s) {
+            writeString(out, s);
+        } else if (value instanceof Map<?, ?> map) {
+            Map<?, ?> entries = sortMapKeys ? new TreeMap<>(map) : map;
+            out.put((byte) '{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                if (!first) {
+                    out.put((byte) ',');
+                }
+                first = false;
+                writeString(out, (String) entry.getKey());
+                out.put((byte) ':');
+                writeValue(out, entry.getValue(), sortMapKeys);
+            }
+            out.put((byte) '}');
+        } else if (value instanceof Collection<?> items) {
+            out.put((byte) '[');
+            boolean first = true;
+            for (Object item : items) {
+                if (!first) {
+                    out.put((byte) ',');
+                }
+                first = false;
+                writeValue(out, item, sortMapKeys);
+            }
+            out.put((byte) ']');
+        } else {
+            // numbers and booleans, see supported()
+            out.putAscii(value.toString());
+        }
+    }
+
+    private static boolean supported(Object value) {
+        if (value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte || value instanceof Boolean) {
+            return true;
+        }
+        if (value instanceof Double d) {
+            return Double.isFinite(d);
+        }
+        if (value instanceof Float f) {
+            return Float.isFinite(f);
+        }
+        if (value instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String) || !supported(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof Collection<?> items) {
+            for (Object item : items) {
+                if (!supported(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // null and anything else
+        return false;
+    }
+
+    // same escaping as Jackson's default: quotes, backslash and control chars; everything else raw UTF-8
+    private static void writeString(Sink out, String s) {
+        if (s == null) {
+            out.put(NULL);
+            return;
+        }
+        out.put((byte) '"');
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out.put((byte) c);
+                } else {
+                    escape(out, c);
+                }
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out.put((byte) (0xF0 | (cp >> 18)));
+                out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, not valid UTF-16 to begin with
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        out.put((byte) '"');
+    }
+
+    private static void escape(Sink out, char c) {
+        out.put((byte) '\\');
+        switch (c) {
+            case '"' -> out.put((byte) '"');
+            case '\\' -> out.put((byte) '\\');
+            case '\b' -> out.put((byte) 'b');
+            case '\t' -> out.put((byte) 't');
+            case '\n' -> out.put((byte) 'n');
+            case '\f' -> out.put((byte) 'f');
+            case '\r' -> out.put((byte) 'r');
+            default -> {
+                out.put((byte) 'u');
+                out.put((byte) '0');
+                out.put((byte) '0');
+                out.put(HEX[c >> 4]);
+                out.put(HEX[c & 0xF]);
+            }
+        }
+    }
+
+    // top-level field order in the mapper's output, or null if a field is missing
+    private static Field[] orderIn(String json) {
+        Field[] fields = Field.values();
+        int[] positions = new int[fields.length];
+        for (Field field : fields) {
+            positions[field.ordinal()] = json.indexOf("\"" + field.json + "\":");
+            if (positions[field.ordinal()] < 0) {
+                return null;
+            }
+        }
+        Field[] ordered = fields.clone();
+        Arrays.sort(ordered, (a, b) -> Integer.compare(positions[a.ordinal()], positions[b.ordinal()]));
+        return ordered;
+    }
+
+    private static Field[] variablesOf(Field[] order) {
+        return Arrays.stream(order).filter(Field::variable).toArray(Field[]::new);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private record TemplateKey(int status, String error, String message) {}
+
+    /**
+     * Small write buffer. With a stream it is flushed in chunks as it fills; without one it grows.
+     */
+    private static final class Sink {
+        private final OutputStream stream;
+        private byte[] bytes;
+        private int size;
+
+        Sink(OutputStream stream, int capacity) {
+            this.stream = stream;
+            this.bytes = new byte[capacity];
+        }
+
+        void put(byte b) {
+            if (size == bytes.length) {
+                makeRoom(1);
+            }
+            bytes[size++] = b;
+        }
+
+        void put(byte[] b) {
+            if (size + b.length > bytes.length) {
+                if (stream != null && b.length > bytes.length) {
+                    // large constant segment: send it as is instead of copying
+                    flush();
+                    write(b, b.length);
+                    return;
+                }
+                makeRoom(b.length);
+            }
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        void putAscii(String s) {
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                put((byte) s.charAt(i));
+            }
+        }
+
+        void flush() {
+            if (stream != null && size > 0) {
+                write(bytes, size);
+                size = 0;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void makeRoom(int needed) {
+            if (stream != null) {
+                flush();
+                if (needed <= bytes.length) {
+                    return;
+                }
+            }
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + needed));
+        }
+
+        private void write(byte[] b, int length) {
+            try {
+                stream.write(b, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
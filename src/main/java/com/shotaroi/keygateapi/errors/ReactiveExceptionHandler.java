@@ -0,0 +1,87 @@
+package com.shotaroi.keygateapi.errors;
+
+import com.shotaroi.keygateapi.trace.RequestIdFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// GlobalExceptionHandler for the reactive profile: same statuses and ApiError bodies, from ApiErrorWriter
+@RestControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveExceptionHandler {
+
+    private final ApiErrorWriter errorWriter;
+
+    public ReactiveExceptionHandler(ApiErrorWriter errorWriter) {
+        this.errorWriter = errorWriter;
+    }
+
+    // 400 - validation errors (WebFlux reports these as a bind exception)
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<byte[]> handleValidation(WebExchangeBindException ex, ServerWebExchange exchange) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        Map<String, String> fieldErrors = new LinkedHashMap<>();
+
+        for (FieldError fe : ex.getBindingResult().getFieldErrors()) {
+            fieldErrors.put(fe.getField(), fe.getDefaultMessage());
+        }
+
+        details.put("fieldErrors", fieldErrors);
+        return build(HttpStatus.BAD_REQUEST, "validation_error", "Validation failed", exchange, details);
+    }
+
+    // 400 - invalid JSON, or a bad query/path parameter
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<byte[]> handleBadInput(ServerWebInputException ex, ServerWebExchange exchange) {
+        String message = (ex.getCause() instanceof DecodingException)
+                ? "Invalid JSON request body"
+                : ex.getReason();
+        return build(HttpStatus.BAD_REQUEST, "bad_request", message, exchange, Map.of());
+    }
+
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<byte[]> handleNotFound(ResourceNotFoundException ex, ServerWebExchange exchange) {
+        return build(HttpStatus.NOT_FOUND, "not_found", ex.getMessage(), exchange, Map.of());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<byte[]> handleIllegalArgument(IllegalArgumentException ex, ServerWebExchange exchange) {
+        return build(HttpStatus.BAD_REQUEST, "bad_request", ex.getMessage(), exchange, Map.of());
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<byte[]> handleUnknown(Exception ex, ServerWebExchange exchange) {
+        return build(HttpStatus.INTERNAL_SERVER_ERROR, "internal_error", "Something went wrong", exchange, Map.of());
+    }
+
+    private ResponseEntity<byte[]> build(HttpStatus status,
+                                         String error,
+                                         String message,
+                                         ServerWebExchange exchange,
+                                         Map<String, Object> details) {
+        Object requestId = exchange.getAttribute(RequestIdFilter.ATTR);
+
+        byte[] body = errorWriter.toBytes(
+                status.value(),
+                error,
+                message,
+                exchange.getRequest().getPath().value(),
+                details,
+                requestId != null ? requestId.toString() : null
+        );
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+}
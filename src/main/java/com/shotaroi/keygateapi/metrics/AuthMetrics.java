@@ -0,0 +1,159 @@
+package com.shotaroi.keygateapi.metrics;
+
+import com.shotaroi.keygateapi.ratelimit.CountMinSketch;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gateway overhead per request ("keygate.auth.duration"), tagged by outcome and a
+ * bounded client tag. The timer counts double as per-outcome request counters.
+ *
+ * <p>Besides the configured clients, the {@code maxClientTags} busiest ones get their own tag.
+ * Requests per client are counted in a count-min sketch that starts over every
+ * {@code rankWindow}. A client pushes the least busy auto-tagged one out once it has clearly
+ * more requests in the current window; the one pushed out is "other" from then on.
+ */
+@Component
+public class AuthMetrics {
+
+    public enum Outcome { ALLOWED, REJECTED, INVALID, MISSING, UNAVAILABLE, REVOKED, EXPIRED }
+
+    // used when we don't know the client (missing / invalid key)
+    public static final String NO_CLIENT = "none";
+    private static final String OTHER_CLIENT = "other";
+
+    // a client needs this many requests in the window, and twice the weakest tagged one, to take its tag
+    private static final int MIN_REQUESTS_TO_DISPLACE = 100;
+
+    private final MeterRegistry registry;
+    private final Set<String> taggedClients;
+    private final int maxClientTags;
+    private final long rankWindowMillis;
+
+    private final CountMinSketch requests = new CountMinSketch(4096, 4);
+    private volatile long windowStart = System.currentTimeMillis();
+    // auto-tagged client names; only changed under the lock in promote
+    private final Set<String> autoTagged = ConcurrentHashMap.newKeySet();
+    // a name below this count can't take a tag, so most requests skip the lock
+    private volatile int promotionBar;
+
+    // client tag -> timers indexed by Outcome.ordinal()
+    private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    public AuthMetrics(MeterRegistry registry, MetricsProperties props) {
+        this.registry = registry;
+        this.taggedClients = Set.copyOf(props.taggedClients());
+        this.maxClientTags = props.maxClientTags();
+        this.rankWindowMillis = props.rankWindow().toMillis();
+    }
+
+    public void record(Outcome outcome, String clientName, long elapsedNanos) {
+        timersFor(clientTag(clientName))[outcome.ordinal()].record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    String clientTag(String clientName) {
+        if (clientName == null) {
+            return NO_CLIENT;
+        }
+        if (taggedClients.contains(clientName)) {
+            return escape(clientName);
+        }
+        if (maxClientTags <= 0) {
+            return OTHER_CLIENT;
+        }
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= rankWindowMillis) {
+            // racy on purpose: a few counts landing in the wrong window don't matter
+            windowStart = now;
+            requests.clear();
+            if (promotionBar > MIN_REQUESTS_TO_DISPLACE) {
+                promotionBar = MIN_REQUESTS_TO_DISPLACE;
+            }
+        }
+        int count = requests.add(clientName);
+        if (autoTagged.contains(clientName)) {
+            return escape(clientName);
+        }
+        if (count >= promotionBar && promote(clientName, count)) {
+            return escape(clientName);
+        }
+        return OTHER_CLIENT;
+    }
+
+    private synchronized boolean promote(String clientName, int count) {
+        if (autoTagged.contains(clientName)) {
+            return true;
+        }
+        if (autoTagged.size() < maxClientTags) {
+            autoTagged.add(clientName);
+            if (autoTagged.size() == maxClientTags) {
+                promotionBar = MIN_REQUESTS_TO_DISPLACE;
+            }
+            return true;
+        }
+        String weakest = null;
+        int weakestCount = Integer.MAX_VALUE;
+        for (String tagged : autoTagged) {
+            int estimate = requests.estimate(tagged);
+            if (estimate < weakestCount) {
+                weakest = tagged;
+                weakestCount = estimate;
+            }
+        }
+        int bar = Math.max(MIN_REQUESTS_TO_DISPLACE, 2 * weakestCount);
+        promotionBar = bar;
+        if (weakest == null || count < bar) {
+            return false;
+        }
+        autoTagged.remove(weakest);
+        dropTimers(escape(weakest));
+        autoTagged.add(clientName);
+        return true;
+    }
+
+    // a request that already looked up the old timers may still land in them, that's fine for metrics
+    private void dropTimers(String clientTag) {
+        Timer[] dropped = timers.remove(clientTag);
+        if (dropped != null) {
+            for (Timer timer : dropped) {
+                registry.remove(timer);
+            }
+        }
+    }
+
+    // client names can't pass for the reserved tags: "none" -> "_none", "_x" -> "__x"
+    static String escape(String clientName) {
+        if (clientName.equals(NO_CLIENT) || clientName.equals(OTHER_CLIENT) || clientName.startsWith("_")) {
+            return "_" + clientName;
+        }
+        return clientName;
+    }
+
+    private Timer[] timersFor(String clientTag) {
+        Timer[] existing = timers.get(clientTag);
+        if (existing != null) {
+            return existing;
+        }
+        return timers.computeIfAbsent(clientTag, tag -> {
+            Timer[] created = new Timer[Outcome.values().length];
+            for (Outcome outcome : Outcome.values()) {
+                created[outcome.ordinal()] = Timer.builder("keygate.auth.duration")
+                        .description("Time spent in the auth + rate limit filter, excluding the downstream handler")
+                        .tag("outcome", outcome.name().toLowerCase())
+                        .tag("client", tag)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(50_000))
+                        .maximumExpectedValue(Duration.ofSeconds(1))
+                        .register(registry);
+            }
+            return created;
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package com.shotaroi.keygateapi.metrics;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "keygate.metrics")
+public record MetricsProperties(
+        // clients that always get their own "client" tag value
+        @DefaultValue List<String> taggedClients,
+        // on top of those, the N busiest clients get their own tag; everyone else is "other"
+        @DefaultValue("0") int maxClientTags,
+        // requests are counted per window to rank the clients, then the counts start over
+        @DefaultValue("10m") Duration rankWindow
+) {}
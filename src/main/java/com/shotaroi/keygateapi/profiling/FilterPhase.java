@@ -0,0 +1,26 @@
+package com.shotaroi.keygateapi.profiling;
+
+/**
+ * Timed steps of {@code ApiKeyAuthFilter}. The labels end up in the JFR events and in the
+ * endpoint's report.
+ */
+public enum FilterPhase {
+    // X-API-KEY -> ApiKeyHash
+    HASH("hash"),
+    // client cache, and Postgres on a miss
+    LOOKUP("lookup"),
+    // rateLimiter.check, the Redis round trip(s) included
+    LIMITER("limiter"),
+    // 401 / 429 / 503 bodies
+    ERROR_WRITE("error-write");
+
+    private final String label;
+
+    FilterPhase(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,35 @@
+package com.shotaroi.keygateapi.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One phase of one request in the auth filter. Only phases slower than the threshold are
+ * written by default, so a continuous recording stays small; the endpoint's bounded recording
+ * drops the threshold and gets all of them.
+ */
+@Name(FilterPhaseEvent.NAME)
+@Label("Auth Filter Phase")
+@Category({"KeyGate", "Auth Filter"})
+@Description("Time spent in one phase of ApiKeyAuthFilter")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class FilterPhaseEvent extends Event {
+
+    public static final String NAME = "keygate.FilterPhase";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Request Id")
+    String requestId;
+
+    // not part of the event (transient), only set while the profiler has a recording running
+    transient long startNanos;
+    transient boolean timed;
+}
@@ -0,0 +1,60 @@
+package com.shotaroi.keygateapi.profiling;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.OptionalParameter;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * {@code /actuator/filterprofile}: POST starts a bounded recording of the auth filter's
+ * phases, GET returns their percentiles so far, DELETE stops it early. A POST while one is
+ * running gets a 409 with the running one's report.
+ *
+ * <p>Not exposed by default: {@code /actuator/**} needs no API key, and anyone who can reach
+ * it could keep the node recording.
+ */
+@Component
+@WebEndpoint(id = "filterprofile")
+public class FilterProfileEndpoint {
+
+    private final FilterProfiler profiler;
+    private final ProfilingProperties props;
+
+    public FilterProfileEndpoint(FilterProfiler profiler, ProfilingProperties props) {
+        this.profiler = profiler;
+        this.props = props;
+    }
+
+    @ReadOperation
+    public ProfileReport report() {
+        return profiler.report();
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<ProfileReport> start(@OptionalParameter Long durationSeconds, @OptionalParameter Boolean jfr) {
+        Duration duration = props.defaultDuration();
+        if (durationSeconds != null) {
+            if (durationSeconds <= 0) {
+                throw new InvalidEndpointRequestException("durationSeconds must be positive", "durationSeconds <= 0");
+            }
+            duration = Duration.ofSeconds(durationSeconds);
+        }
+        try {
+            return new WebEndpointResponse<>(profiler.start(duration, Boolean.TRUE.equals(jfr)));
+        } catch (IllegalStateException e) {
+            return new WebEndpointResponse<>(profiler.report(), HttpStatus.CONFLICT.value());
+        }
+    }
+
+    @DeleteOperation
+    public ProfileReport stop() {
+        return profiler.stop();
+    }
+}
@@ -0,0 +1,212 @@
+package com.shotaroi.keygateapi.profiling;
+
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Times the phases of the auth filter. Every phase is a {@link FilterPhaseEvent}, which costs
+ * next to nothing while no JFR recording wants it. On top of that, a bounded in-process
+ * recording (started from {@link FilterProfileEndpoint}) keeps one HdrHistogram per phase;
+ * outside of one, no clock is read here at all.
+ *
+ * <pre>
+ * FilterPhaseEvent event = profiler.begin();
+ * ApiKeyHash hash = hasher.hash(rawKey);
+ * profiler.end(event, FilterPhase.HASH, requestId);
+ * </pre>
+ */
+@Component
+public class FilterProfiler {
+
+    // anything slower is counted as this, a Recorder throws on values it can't track
+    private static final long MAX_TRACKED_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // 1% resolution keeps a histogram at a few tens of KB
+    private static final int SIGNIFICANT_DIGITS = 2;
+    // one file, overwritten by each recording, so repeated recordings don't fill the disk
+    private static final String JFR_FILE = "keygate-filter-profile.jfr";
+
+    private final ProfilingProperties props;
+
+    // what request threads record into, null unless a recording is running
+    private final AtomicReference<Session> session = new AtomicReference<>();
+    // started and not closed yet; may already be unhooked from session. Guarded by this
+    private Session open;
+    // the last closed one, so its report can still be read
+    private Session finished;
+
+    public FilterProfiler(ProfilingProperties props) {
+        this.props = props;
+    }
+
+    public FilterPhaseEvent begin() {
+        FilterPhaseEvent event = new FilterPhaseEvent();
+        if (session.get() != null) {
+            event.timed = true;
+            event.startNanos = System.nanoTime();
+        }
+        event.begin();
+        return event;
+    }
+
+    public void end(FilterPhaseEvent event, FilterPhase phase, String requestId) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase.label();
+            event.requestId = requestId;
+            event.commit();
+        }
+        if (!event.timed) {
+            return;
+        }
+        Session current = session.get();
+        if (current == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - current.deadlineNanos > 0) {
+            // only unhooked here; draining it and closing the JFR file happen off the request path
+            session.compareAndSet(current, null);
+            return;
+        }
+        current.recorders[phase.ordinal()].recordValue(Math.min(now - event.startNanos, MAX_TRACKED_NANOS));
+    }
+
+    /**
+     * Starts a recording, cut to {@code keygate.profiling.max-duration}. With {@code jfr}, the
+     * phase events also go to a JFR file, without the usual threshold.
+     *
+     * @throws IllegalStateException if one is still running; stop it first
+     */
+    public synchronized ProfileReport start(Duration duration, boolean jfr) {
+        closeEnded();
+        if (open != null) {
+            throw new IllegalStateException("A recording is already running until " + open.endsAt);
+        }
+        Duration bounded = duration.compareTo(props.maxDuration()) > 0 ? props.maxDuration() : duration;
+        Instant now = Instant.now();
+        open = new Session(now, bounded, jfr ? startJfr(bounded) : null);
+        session.set(open);
+        return report();
+    }
+
+    public synchronized ProfileReport stop() {
+        Session running = open;
+        if (running != null) {
+            session.compareAndSet(running, null);
+        }
+        return report();
+    }
+
+    public synchronized ProfileReport report() {
+        closeEnded();
+        Session shown = open != null ? open : finished;
+        if (shown == null) {
+            return new ProfileReport(false, null, null, null, Map.of());
+        }
+        return shown.report(open != null);
+    }
+
+    /**
+     * Closes a recording that ran out or was unhooked by a request thread: folds in its last
+     * values and writes the JFR file. Also runs every second, so that happens when nobody asks.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public synchronized void closeEnded() {
+        Session running = open;
+        if (running == null) {
+            return;
+        }
+        if (System.nanoTime() - running.deadlineNanos > 0) {
+            session.compareAndSet(running, null);
+        }
+        if (session.get() == running) {
+            return;
+        }
+        open = null;
+        running.drain();
+        if (running.jfr != null) {
+            // stopping writes the file to the destination set in startJfr
+            if (running.jfr.getState() == RecordingState.RUNNING) {
+                running.jfr.stop();
+            }
+            running.jfr.close();
+        }
+        finished = running;
+    }
+
+    private Recording startJfr(Duration duration) {
+        Path dir = Path.of(props.jfrDirectory().isBlank() ? System.getProperty("java.io.tmpdir") : props.jfrDirectory());
+        Recording recording = new Recording();
+        recording.setName("keygate-filter-profile");
+        recording.enable(FilterPhaseEvent.class).withoutThreshold();
+        recording.setToDisk(true);
+        recording.setMaxSize(props.jfrMaxSize().toBytes());
+        recording.setDuration(duration);
+        try {
+            Files.createDirectories(dir);
+            recording.setDestination(dir.resolve(JFR_FILE));
+        } catch (IOException e) {
+            recording.close();
+            throw new UncheckedIOException("Can't write JFR recording to " + dir, e);
+        }
+        recording.start();
+        return recording;
+    }
+
+    private static final class Session {
+        final Instant startedAt;
+        final Instant endsAt;
+        final long deadlineNanos;
+        final Recording jfr;
+        final Recorder[] recorders;
+        // what the recorders have handed over so far, guarded by the profiler's lock
+        final Histogram[] totals;
+
+        Session(Instant startedAt, Duration duration, Recording jfr) {
+            this.startedAt = startedAt;
+            this.endsAt = startedAt.plus(duration);
+            this.deadlineNanos = System.nanoTime() + duration.toNanos();
+            this.jfr = jfr;
+            FilterPhase[] phases = FilterPhase.values();
+            this.recorders = new Recorder[phases.length];
+            this.totals = new Histogram[phases.length];
+            for (int i = 0; i < phases.length; i++) {
+                recorders[i] = new Recorder(MAX_TRACKED_NANOS, SIGNIFICANT_DIGITS);
+                totals[i] = new Histogram(MAX_TRACKED_NANOS, SIGNIFICANT_DIGITS);
+            }
+        }
+
+        void drain() {
+            for (int i = 0; i < recorders.length; i++) {
+                totals[i].add(recorders[i].getIntervalHistogram());
+            }
+        }
+
+        ProfileReport report(boolean running) {
+            if (running) {
+                drain();
+            }
+            Map<String, ProfileReport.PhaseSummary> phases = new LinkedHashMap<>();
+            for (FilterPhase phase : FilterPhase.values()) {
+                phases.put(phase.label(), ProfileReport.PhaseSummary.of(totals[phase.ordinal()]));
+            }
+            String file = jfr != null && jfr.getDestination() != null ? jfr.getDestination().toString() : null;
+            return new ProfileReport(running, startedAt, endsAt, file, phases);
+        }
+    }
+}
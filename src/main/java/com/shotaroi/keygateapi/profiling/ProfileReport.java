@@ -0,0 +1,42 @@
+package com.shotaroi.keygateapi.profiling;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * What {@code /actuator/filterprofile} returns: the running recording, or the last one.
+ * Latencies are in microseconds.
+ */
+public record ProfileReport(
+        boolean recording,
+        Instant startedAt,
+        Instant endsAt,
+        // only when the recording was started with jfr=true
+        String jfrFile,
+        Map<String, PhaseSummary> phases
+) {
+
+    public record PhaseSummary(long count, double mean, double p50, double p90, double p99, double p999, double max) {
+
+        static PhaseSummary of(Histogram histogram) {
+            if (histogram.getTotalCount() == 0) {
+                return new PhaseSummary(0, 0, 0, 0, 0, 0, 0);
+            }
+            return new PhaseSummary(
+                    histogram.getTotalCount(),
+                    micros(histogram.getMean()),
+                    micros(histogram.getValueAtPercentile(50)),
+                    micros(histogram.getValueAtPercentile(90)),
+                    micros(histogram.getValueAtPercentile(99)),
+                    micros(histogram.getValueAtPercentile(99.9)),
+                    micros(histogram.getMaxValue())
+            );
+        }
+
+        private static double micros(double nanos) {
+            return Math.round(nanos / 100.0) / 10.0;
+        }
+    }
+}
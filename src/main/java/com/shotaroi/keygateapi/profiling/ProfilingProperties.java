@@ -0,0 +1,19 @@
+package com.shotaroi.keygateapi.profiling;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "keygate.profiling")
+public record ProfilingProperties(
+        // used when a recording is started without a duration
+        @DefaultValue("60s") Duration defaultDuration,
+        // longer requested durations are cut to this
+        @DefaultValue("10m") Duration maxDuration,
+        // the optional JFR recording is capped at this size, oldest chunks go first
+        @DefaultValue("64MB") DataSize jfrMaxSize,
+        // where JFR files are written; empty = java.io.tmpdir
+        @DefaultValue("") String jfrDirectory
+) {}
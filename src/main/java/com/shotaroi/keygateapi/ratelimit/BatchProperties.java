@@ -0,0 +1,21 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "keygate.ratelimit.batch")
+public record BatchProperties(
+        @DefaultValue("false") boolean enabled,
+        // limiter calls sent in one pipeline
+        @DefaultValue("128") int maxBatchSize,
+        // how long the first call of a batch may wait for others to join
+        @DefaultValue("200us") Duration maxWait,
+        // calls waiting for a dispatcher; beyond this they fail and the breaker/fallback takes over
+        @DefaultValue("65536") int queueCapacity,
+        // one pipeline in flight per dispatcher, each with its own Redis connection
+        @DefaultValue("1") int dispatchers,
+        // caller gives up after this long
+        @DefaultValue("1s") Duration callTimeout
+) {}
@@ -0,0 +1,67 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Maps keys to nodes on a 64-bit hash ring. Each node is placed at {@code virtualNodes} points,
+ * so keys spread evenly. A key belongs to the first point at or after its own hash. Adding a
+ * node only takes over the keys just before its points; removing one hands its keys to the
+ * next points. Either way about 1/N of the keys move, and no key moves between the other nodes.
+ */
+final class ConsistentHashRing<T> {
+
+    private final long[] points;
+    private final Object[] owners;
+
+    ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        int perNode = Math.max(1, virtualNodes);
+
+        Point[] all = new Point[nodes.size() * perNode];
+        int i = 0;
+        for (Map.Entry<String, T> node : nodes.entrySet()) {
+            for (int v = 0; v < perNode; v++) {
+                // placed by name, so a shard keeps its keys when its address changes
+                all[i++] = new Point(hash(node.getKey() + "#" + v), node.getValue());
+            }
+        }
+        Arrays.sort(all, Comparator.comparingLong(Point::position));
+
+        this.points = new long[all.length];
+        this.owners = new Object[all.length];
+        for (int p = 0; p < all.length; p++) {
+            points[p] = all[p].position();
+            owners[p] = all[p].node();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T nodeFor(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return (T) owners[i == points.length ? 0 : i];
+    }
+
+    // FNV-1a over the chars, then the murmur3 finalizer so nearby names land far apart
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private record Point(long position, Object node) {}
+}
@@ -0,0 +1,65 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed-size, lock-free frequency estimates. Never under-counts; over-counts only when keys
+ * collide in every row, which is what lets it track any number of keys in constant memory.
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicIntegerArray counts;
+
+    public CountMinSketch(int width, int depth) {
+        int w = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = w - 1;
+        this.counts = new AtomicIntegerArray(w * depth);
+    }
+
+    /**
+     * Counts one occurrence and returns the new estimate for the key.
+     */
+    public int add(Object key) {
+        int h1 = key.hashCode();
+        int h2 = mix(h1);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = (h1 + row * h2) & mask;
+            estimate = Math.min(estimate, counts.incrementAndGet(row * (mask + 1) + column));
+        }
+        return estimate;
+    }
+
+    /**
+     * The current estimate for the key, without counting it.
+     */
+    public int estimate(Object key) {
+        int h1 = key.hashCode();
+        int h2 = mix(h1);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = (h1 + row * h2) & mask;
+            estimate = Math.min(estimate, counts.get(row * (mask + 1) + column));
+        }
+        return estimate;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    // second, independent-enough hash for double hashing (murmur3 finalizer), forced odd
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
@@ -0,0 +1,11 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+/**
+ * How window counters are laid out in Redis (see redis/counters.lua).
+ */
+public enum CounterFormat {
+    // one hash per client, one small field per window
+    COMPACT,
+    // one string key per client and window, as before; for rolling back
+    LEGACY
+}
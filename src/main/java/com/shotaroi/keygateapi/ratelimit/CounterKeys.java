@@ -0,0 +1,135 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Names of the window counters the limiter scripts count in. Every counter is a key plus a
+ * field, read and written through the functions in redis/counters.lua:
+ * <ul>
+ *   <li>{@link CounterFormat#LEGACY}: {@code rl:{hex hash}:{windowStart}} (minute) and
+ *       {@code rl:{hex hash}:s|h|d:{windowStart}}, one string key per window, empty field.</li>
+ *   <li>{@link CounterFormat#COMPACT}: all windows of a client in one hash,
+ *       {@code rl:{base64url hash}}, with fields like {@code m} + window start in base 36.</li>
+ * </ul>
+ * A busy client with quotas has a dozen or more legacy keys alive at once (one per second for
+ * the per-second quota). Compact is one key, small enough for Redis's listpack encoding.
+ */
+@Component
+public class CounterKeys {
+
+    // function definitions put in front of every counting script
+    private static final String PRELUDE = read("redis/counters.lua");
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * One window's count: a legacy key with an empty field, or a field of the client's hash.
+     */
+    record Counter(String key, String field) {}
+
+    private final CounterFormat format;
+
+    public CounterKeys(CounterProperties props) {
+        this.format = props.format();
+    }
+
+    public CounterFormat format() {
+        return format;
+    }
+
+    Counter minute(String apiKeyHash, long minuteStart) {
+        return format == CounterFormat.LEGACY
+                ? new Counter(legacyMinuteKey(apiKeyHash, minuteStart), "")
+                : new Counter(compactKey(apiKeyHash), field('m', minuteStart));
+    }
+
+    // window is 's', 'h' or 'd'
+    Counter window(String apiKeyHash, char window, long windowStart) {
+        return format == CounterFormat.LEGACY
+                ? new Counter(legacyWindowKey(apiKeyHash, window, windowStart), "")
+                : new Counter(compactKey(apiKeyHash), field(window, windowStart));
+    }
+
+    /**
+     * A counter in the legacy layout, as found by {@link CounterMigrator}. window is 'm' for the minute.
+     */
+    record LegacyCounter(String apiKeyHash, char window, long windowStart) {}
+
+    // null for anything that isn't a legacy window counter, compact keys included
+    static LegacyCounter parseLegacy(String key) {
+        String[] parts = key.split(":");
+        if (parts.length < 3 || parts.length > 4 || !parts[0].equals("rl")) {
+            return null;
+        }
+        if (parts[1].length() != 64 || !parts[1].chars().allMatch(HexFormat::isHexDigit)) {
+            return null;
+        }
+        try {
+            if (parts.length == 3) {
+                return new LegacyCounter(parts[1], 'm', Long.parseLong(parts[2]));
+            }
+            if (parts[2].length() == 1 && "shd".contains(parts[2])) {
+                return new LegacyCounter(parts[1], parts[2].charAt(0), Long.parseLong(parts[3]));
+            }
+        } catch (NumberFormatException e) {
+            // not ours
+        }
+        return null;
+    }
+
+    static String legacyMinuteKey(String apiKeyHash, long minuteStart) {
+        return "rl:" + apiKeyHash + ":" + minuteStart;
+    }
+
+    static String legacyWindowKey(String apiKeyHash, char window, long windowStart) {
+        return "rl:" + apiKeyHash + ":" + window + ":" + windowStart;
+    }
+
+    // 32 bytes as 43 base64url chars instead of 64 hex; no ':' in it, so legacy keys are told apart by one
+    static String compactKey(String apiKeyHash) {
+        return "rl:" + BASE64.encodeToString(HEX.parseHex(apiKeyHash));
+    }
+
+    static String field(char window, long windowStart) {
+        return window + Long.toString(windowStart, 36);
+    }
+
+    // same lifetimes as counter_lifetimes in counters.lua
+    static long expireAt(char window, long windowStart) {
+        return windowStart + 10 + switch (window) {
+            case 's' -> 1;
+            case 'm' -> 120;
+            case 'h' -> 3600;
+            case 'd' -> 86400;
+            default -> throw new IllegalArgumentException("Unknown counter window: " + window);
+        };
+    }
+
+    /**
+     * Loads a counting script with the counter functions in front of it.
+     */
+    static <T> RedisScript<T> script(String path, Class<T> resultType) {
+        return RedisScript.of(PRELUDE + read(path), resultType);
+    }
+
+    static String prelude() {
+        return PRELUDE;
+    }
+
+    private static String read(String path) {
+        try {
+            return new ClassPathResource(path).getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path, e);
+        }
+    }
+}
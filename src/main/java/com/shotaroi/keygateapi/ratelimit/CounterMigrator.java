@@ -0,0 +1,97 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Copies counters written in the {@link CounterFormat#LEGACY} layout into the compact one, so a
+ * client keeps its hourly and daily counts across the switch. Scans each shard for
+ * {@code rl:*:*} (compact keys have no second ':') and adds what every live counter gained
+ * since the last pass to its client's hash, with redis/migrate_counter.lua.
+ *
+ * <p>Runs at startup and then on a schedule, because nodes still on the old layout keep
+ * reading and writing legacy keys during a rolling deploy. Those keys are left alone, to expire
+ * with their window, until {@code legacy-cutover}. After it, each is deleted with its last copy,
+ * and once a pass finds none the migration stops for good.
+ */
+@Component
+public class CounterMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(CounterMigrator.class);
+
+    private static final RedisScript<Long> MIGRATE =
+            CounterKeys.script("redis/migrate_counter.lua", Long.class);
+
+    private final RedisShards shards;
+    private final CounterKeys counterKeys;
+    private final CounterProperties props;
+
+    private volatile boolean done;
+
+    public CounterMigrator(RedisShards shards, CounterKeys counterKeys, CounterProperties props) {
+        this.shards = shards;
+        this.counterKeys = counterKeys;
+        this.props = props;
+    }
+
+    @Scheduled(fixedDelayString = "${keygate.ratelimit.counters.migration-interval-ms:60000}")
+    public void migrate() {
+        if (done || !props.migrateLegacy() || counterKeys.format() != CounterFormat.COMPACT) {
+            return;
+        }
+
+        Instant started = Instant.now();
+        long now = started.getEpochSecond();
+        // before the cut-over a legacy node may still write any of these keys, or write new ones
+        boolean cutOver = props.legacyCutover() != null && !started.isBefore(props.legacyCutover());
+        int found = 0;
+        long moved = 0;
+        try {
+            for (RedisShards.Shard shard : shards.all()) {
+                ScanOptions scan = ScanOptions.scanOptions().match("rl:*:*").count(props.migrationScanCount()).build();
+                try (Cursor<String> keys = shard.redis().scan(scan)) {
+                    while (keys.hasNext()) {
+                        String key = keys.next();
+                        CounterKeys.LegacyCounter legacy = CounterKeys.parseLegacy(key);
+                        if (legacy == null) {
+                            continue;
+                        }
+                        long expireAt = CounterKeys.expireAt(legacy.window(), legacy.windowStart());
+                        if (expireAt <= now) {
+                            // its window is over, the key's own TTL takes care of it
+                            continue;
+                        }
+                        found++;
+                        Long count = shard.redis().execute(
+                                MIGRATE,
+                                List.of(key, CounterKeys.compactKey(legacy.apiKeyHash())),
+                                CounterKeys.field(legacy.window(), legacy.windowStart()),
+                                String.valueOf(expireAt),
+                                cutOver ? "1" : "0"
+                        );
+                        moved += (count == null) ? 0 : count;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // whatever was moved stays moved; the next run carries on
+            log.warn("Limiter counter migration failed", e);
+            return;
+        }
+
+        if (found == 0 && cutOver) {
+            done = true;
+            log.info("No legacy limiter counters left, counter migration is done");
+        } else if (found > 0) {
+            log.info("Copied {} legacy limiter counters ({} requests since the last pass) to the compact layout", found, moved);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Instant;
+
+@ConfigurationProperties(prefix = "keygate.ratelimit.counters")
+public record CounterProperties(
+        @DefaultValue("COMPACT") CounterFormat format,
+        // copy counters written in the legacy layout into the compact one
+        @DefaultValue("true") boolean migrateLegacy,
+        // keys per SCAN call while looking for legacy counters
+        @DefaultValue("1000") int migrationScanCount,
+        // when no node writes legacy counters any more; null = they may, so nothing is deleted
+        Instant legacyCutover
+) {}
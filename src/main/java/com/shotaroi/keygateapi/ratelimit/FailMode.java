@@ -0,0 +1,13 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+/**
+ * What to do with a client's requests while Redis is unreachable.
+ */
+public enum FailMode {
+    // keep limiting with an in-memory per-node approximation
+    LOCAL,
+    // let everything through
+    OPEN,
+    // reject everything with 503
+    CLOSED
+}
@@ -0,0 +1,16 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "keygate.ratelimit.fallback")
+public record FallbackProperties(
+        // consecutive Redis failures before the breaker opens
+        @DefaultValue("5") int failureThreshold,
+        // how long to stay open before letting a probe request through
+        @DefaultValue("5s") Duration openDuration,
+        // the local limiter allows requestsPerMinute / expectedNodeCount per node
+        @DefaultValue("1") int expectedNodeCount
+) {}
@@ -0,0 +1,48 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+@Component
+public class FixedWindowRateLimiter extends ScriptRateLimiter {
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SCRIPT =
+            CounterKeys.script("redis/fixed_window.lua", List.class);
+
+    private final CounterKeys counterKeys;
+
+    public FixedWindowRateLimiter(LimiterCallBatcher batcher, CounterKeys counterKeys) {
+        super(batcher);
+        this.counterKeys = counterKeys;
+    }
+
+    @Override
+    public RateLimitAlgorithm algorithm() {
+        return RateLimitAlgorithm.FIXED_WINDOW;
+    }
+
+    @Override
+    ScriptCall prepare(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        long now = Instant.now().getEpochSecond();
+        long minuteBucket = now - (now % 60);
+        CounterKeys.Counter counter = counterKeys.minute(apiKeyHash, minuteBucket);
+
+        return new ScriptCall(
+                apiKeyHash,
+                SCRIPT,
+                List.of(counter.key()),
+                List.of(
+                        String.valueOf(policy.requestsPerMinute()),
+                        String.valueOf(cost),
+                        String.valueOf(minuteBucket + 60),
+                        String.valueOf(now),
+                        counter.field()
+                ),
+                policy.requestsPerMinute()
+        );
+    }
+}
@@ -0,0 +1,103 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-node shield against clients that keep calling far past their limit. Rejections from
+ * Redis are counted in a count-min sketch, reset every minute. Once a key's estimate reaches
+ * {@code rejectionThreshold}, it is blocked locally until the reset time the limiter reported.
+ * Its requests are then answered without a Redis round trip.
+ *
+ * <p>Only per-minute rejections block, and only requests costing more than what was left
+ * in that minute: a 429 on an expensive route doesn't shut out the key's cheap ones. The
+ * longer quotas (hour, day) and the concurrency cap always go to Redis.
+ *
+ * <p>The sketch keeps memory constant however many keys get rejected now and then. Only the
+ * heavy hitters make it into the block table.
+ */
+@Component
+public class HotKeyDetector {
+
+    private final HotKeyProperties props;
+    private final CountMinSketch sketch;
+    private final Map<String, Block> blocked = new ConcurrentHashMap<>();
+    private volatile long sketchMinute = currentMinute();
+
+    private final Counter localRejections;
+    private final Counter blocks;
+
+    public HotKeyDetector(HotKeyProperties props, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.sketch = new CountMinSketch(props.sketchWidth(), props.sketchDepth());
+
+        this.localRejections = Counter.builder("keygate.ratelimit.hotkey.rejections")
+                .description("Requests rejected locally because their key was blocked")
+                .register(meterRegistry);
+        this.blocks = Counter.builder("keygate.ratelimit.hotkey.blocks")
+                .description("Keys blocked locally after repeated rejections")
+                .register(meterRegistry);
+        Gauge.builder("keygate.ratelimit.hotkey.blocked", blocked, Map::size)
+                .description("Keys currently blocked on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The rejection to return without asking Redis, or null if the key isn't blocked.
+     */
+    RateLimitResult blockedResult(String apiKeyHash, int cost) {
+        if (!props.enabled()) {
+            return null;
+        }
+        Block block = blocked.get(apiKeyHash);
+        if (block == null || cost <= block.remaining) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= block.untilMillis) {
+            blocked.remove(apiKeyHash, block);
+            return null;
+        }
+        localRejections.increment();
+        long resetSeconds = Math.max(1, (block.untilMillis - now + 999) / 1000);
+        return new RateLimitResult(false, block.limit, block.used, block.remaining, resetSeconds, false, QuotaWindow.MINUTE, null);
+    }
+
+    void onResult(String apiKeyHash, RateLimitResult result) {
+        if (!props.enabled() || result.allowed() || result.unavailable() || result.window() != QuotaWindow.MINUTE) {
+            return;
+        }
+        long minute = currentMinute();
+        if (minute != sketchMinute) {
+            // racy on purpose: a few counts landing in the wrong minute don't matter
+            sketchMinute = minute;
+            sketch.clear();
+        }
+        if (sketch.add(apiKeyHash) >= props.rejectionThreshold() && blocked.size() < props.maxBlocked()) {
+            long until = System.currentTimeMillis() + result.resetSeconds() * 1000;
+            if (blocked.put(apiKeyHash, new Block(result.limit(), result.used(), result.remaining(), until)) == null) {
+                blocks.increment();
+            }
+        }
+    }
+
+    // keys that stopped calling never hit the expiry check in blockedResult
+    @Scheduled(fixedDelay = 10_000)
+    void evictExpired() {
+        long now = System.currentTimeMillis();
+        blocked.values().removeIf(block -> now >= block.untilMillis);
+    }
+
+    private static long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+
+    // remaining: what was left in the minute, requests costing up to that still go to Redis
+    private record Block(int limit, long used, long remaining, long untilMillis) {}
+}
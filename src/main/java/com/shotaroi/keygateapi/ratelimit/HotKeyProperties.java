@@ -0,0 +1,16 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "keygate.ratelimit.hot-keys")
+public record HotKeyProperties(
+        @DefaultValue("true") boolean enabled,
+        // rejections from Redis within one minute before a key is blocked locally
+        @DefaultValue("20") int rejectionThreshold,
+        // count-min sketch size; width is rounded up to a power of two
+        @DefaultValue("4096") int sketchWidth,
+        @DefaultValue("4") int sketchDepth,
+        // cap on locally blocked keys; past it, rejections go to Redis as before
+        @DefaultValue("10000") int maxBlocked
+) {}
@@ -0,0 +1,16 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "keygate.ratelimit.lease")
+public record LeaseProperties(
+        @DefaultValue("false") boolean enabled,
+        // only clients at or above this limit use leases; small limits would get tiny blocks
+        @DefaultValue("100") int minRequestsPerMinute,
+        // block size as a fraction of requestsPerMinute
+        @DefaultValue("0.1") double blockFraction,
+        // fetch the next block once this fraction of the current one is left
+        @DefaultValue("0.25") double refillAt,
+        @DefaultValue("2") int refillThreads
+) {}
@@ -0,0 +1,253 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-window limiting with per-node leases: each node reserves a block of the client's
+ * quota from Redis and spends it locally, so most requests never touch Redis.
+ *
+ * <p>Bounds, with N nodes and a block of B = requestsPerMinute * blockFraction:
+ * <ul>
+ *   <li>Redis never grants more than the limit in one window, so with agreeing clocks
+ *       a client is never admitted more than requestsPerMinute per minute.</li>
+ *   <li>A node holds at most one block plus one in-flight refill, so up to 2·N·B of the
+ *       quota can sit unspent on idle nodes (under-admission) until the window ends.</li>
+ *   <li>With clock skew, a node still on the old window spends its old lease for the
+ *       length of the skew, so over-admission per window boundary is at most 2·N·B.</li>
+ * </ul>
+ */
+@Component
+public class LeasedRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(LeasedRateLimiter.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESERVE =
+            CounterKeys.script("redis/lease_reserve.lua", List.class);
+
+    private static final RedisScript<Long> RELEASE =
+            CounterKeys.script("redis/lease_release.lua", Long.class);
+
+    private final RedisShards shards;
+    private final CounterKeys counterKeys;
+    private final LeaseProperties props;
+    private final ExecutorService refillExecutor;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    public LeasedRateLimiter(RedisShards shards, CounterKeys counterKeys, LeaseProperties props) {
+        this.shards = shards;
+        this.counterKeys = counterKeys;
+        this.props = props;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.refillExecutor = Executors.newFixedThreadPool(props.refillThreads(), r -> {
+            Thread t = new Thread(r, "rl-lease-refill-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public boolean appliesTo(RateLimitPolicy policy) {
+        return props.enabled()
+                && policy.algorithm() == RateLimitAlgorithm.FIXED_WINDOW
+                // leases only cover the minute window; other quotas need the script on every request
+                && policy.quotas().isEmpty()
+                && policy.requestsPerMinute() >= props.minRequestsPerMinute();
+    }
+
+    public RateLimitResult tryAcquire(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        long now = Instant.now().getEpochSecond();
+        long window = now - (now % 60);
+        int limit = policy.requestsPerMinute();
+
+        Lease lease = currentLease(apiKeyHash, window);
+
+        boolean allowed = lease.tryTake(cost);
+        if (!allowed && !lease.exhausted) {
+            // local block ran dry before the async refill landed
+            reserve(apiKeyHash, lease, limit, cost);
+            allowed = lease.tryTake(cost);
+        }
+
+        if (allowed && !lease.exhausted && lease.tokens.get() <= refillThreshold(limit)) {
+            refillAsync(apiKeyHash, lease, limit);
+        }
+
+        long used = Math.max(0, lease.reservedInRedis - lease.tokens.get());
+        return new RateLimitResult(
+                allowed,
+                limit,
+                used,
+                Math.max(0, limit - used),
+                window + 60 - now
+        );
+    }
+
+    // gives back leases of windows that are over, for clients that went quiet
+    @Scheduled(fixedDelay = 5000)
+    void releaseExpired() {
+        long now = Instant.now().getEpochSecond();
+        long window = now - (now % 60);
+
+        leases.forEach((apiKeyHash, lease) -> {
+            if (lease.window < window && leases.remove(apiKeyHash, lease)) {
+                release(apiKeyHash, lease);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refillExecutor.shutdownNow();
+        leases.forEach(this::release);
+        leases.clear();
+    }
+
+    private Lease currentLease(String apiKeyHash, long window) {
+        while (true) {
+            Lease current = leases.get(apiKeyHash);
+            if (current != null && current.window >= window) {
+                return current;
+            }
+
+            Lease fresh = new Lease(window);
+            boolean installed = (current == null)
+                    ? leases.putIfAbsent(apiKeyHash, fresh) == null
+                    : leases.replace(apiKeyHash, current, fresh);
+
+            if (installed) {
+                if (current != null) {
+                    releaseAsync(apiKeyHash, current);
+                }
+                return fresh;
+            }
+            // another thread rolled the window first, use theirs
+        }
+    }
+
+    private long blockSize(int limit) {
+        return Math.max(1, Math.round(limit * props.blockFraction()));
+    }
+
+    private long refillThreshold(int limit) {
+        return (long) (blockSize(limit) * props.refillAt());
+    }
+
+    private void reserve(String apiKeyHash, Lease lease, int limit, int cost) {
+        RedisShards.Shard shard = shards.forKey(apiKeyHash);
+        CounterKeys.Counter counter = counterKeys.minute(apiKeyHash, lease.window);
+        long start = System.nanoTime();
+        @SuppressWarnings("unchecked")
+        List<Long> reply = shard.redis().execute(
+                RESERVE,
+                List.of(counter.key()),
+                String.valueOf(limit),
+                String.valueOf(Math.max(blockSize(limit), cost)),
+                String.valueOf(lease.window + 60),
+                counter.field()
+        );
+        shard.recordSince(start);
+
+        long granted = reply.get(0);
+        lease.reservedInRedis = reply.get(1);
+        if (granted <= 0) {
+            lease.exhausted = true;
+            return;
+        }
+        lease.tokens.addAndGet(granted);
+
+        // the window may have rolled while we were waiting on Redis
+        if (leases.get(apiKeyHash) != lease) {
+            release(apiKeyHash, lease);
+        }
+    }
+
+    private void refillAsync(String apiKeyHash, Lease lease, int limit) {
+        if (!lease.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refillExecutor.execute(() -> {
+                try {
+                    reserve(apiKeyHash, lease, limit, 1);
+                } catch (RuntimeException e) {
+                    // the next request will retry synchronously once the block is empty
+                    log.warn("Lease refill failed for window {}", lease.window, e);
+                } finally {
+                    lease.refilling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            lease.refilling.set(false);
+        }
+    }
+
+    private void releaseAsync(String apiKeyHash, Lease lease) {
+        try {
+            refillExecutor.execute(() -> release(apiKeyHash, lease));
+        } catch (RejectedExecutionException e) {
+            release(apiKeyHash, lease);
+        }
+    }
+
+    private void release(String apiKeyHash, Lease lease) {
+        long unused = lease.tokens.getAndSet(0);
+        if (unused <= 0) {
+            return;
+        }
+        CounterKeys.Counter counter = counterKeys.minute(apiKeyHash, lease.window);
+        try {
+            shards.forKey(apiKeyHash).redis().execute(
+                    RELEASE,
+                    List.of(counter.key()),
+                    String.valueOf(unused),
+                    counter.field()
+            );
+        } catch (RuntimeException e) {
+            // only affects the usage numbers of a window that is already over
+            log.warn("Could not release {} unused tokens for window {}", unused, lease.window, e);
+        }
+    }
+
+    private static final class Lease {
+        final long window;
+        final AtomicLong tokens = new AtomicLong();
+        final AtomicBoolean refilling = new AtomicBoolean();
+        // counter value in Redis after our last reservation (all nodes together)
+        volatile long reservedInRedis;
+        // Redis had nothing left for this window, stop asking until it rolls over
+        volatile boolean exhausted;
+
+        Lease(long window) {
+            this.window = window;
+        }
+
+        boolean tryTake(int cost) {
+            while (true) {
+                long available = tokens.get();
+                if (available < cost) {
+                    return false;
+                }
+                if (tokens.compareAndSet(available, available - cost)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
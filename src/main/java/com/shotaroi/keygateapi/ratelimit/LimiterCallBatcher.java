@@ -0,0 +1,243 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.StringCodec;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs limiter scripts for {@link ScriptRateLimiter}. With {@code keygate.ratelimit.batch.enabled}
+ * off, each call is its own EVALSHA. With it on, calls from concurrent requests are queued.
+ * Dispatcher threads then send them as one pipeline, so a busy node makes far fewer round trips.
+ *
+ * <p>A batch closes when it has {@code maxBatchSize} calls or its first call has waited
+ * {@code maxWait}. Every script still runs on its own and atomically, in queue order, so
+ * a request gets the same decision either way.
+ *
+ * <p>Each Redis shard (see {@link RedisShards}) has its own queue and dispatchers, so a batch
+ * only holds calls for one shard and a slow shard doesn't hold up the others.
+ *
+ * <p>Every dispatcher opens one Lettuce connection of its own, on first use, and keeps it.
+ * Auto-flush is off on it, so a batch's EVALSHAs go out in a single write. Spring's
+ * {@code executePipelined} would take a dedicated connection for each batch instead, and
+ * auto-flush can't be turned off on the connection shared with the rest of the app.
+ */
+@Component
+public class LimiterCallBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(LimiterCallBatcher.class);
+
+    private final RedisShards shards;
+    private final BatchProperties props;
+    // indexed by RedisShards.Shard#index
+    private final List<Lane> lanes = new ArrayList<>();
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running = true;
+
+    public LimiterCallBatcher(RedisShards shards, BatchProperties props, MeterRegistry meterRegistry) {
+        this.shards = shards;
+        this.props = props;
+
+        this.batchSizes = DistributionSummary.builder("keygate.ratelimit.batch.size")
+                .description("Limiter calls per pipelined Redis batch")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue((double) props.maxBatchSize())
+                .register(meterRegistry);
+
+        if (props.enabled()) {
+            for (RedisShards.Shard shard : shards.all()) {
+                Lane lane = new Lane(shard, new ArrayBlockingQueue<>(props.queueCapacity()), new ArrayList<>());
+                for (int i = 0; i < props.dispatchers(); i++) {
+                    String name = "rl-batch-" + shard.name() + "-" + (i + 1);
+                    Thread t = new Thread(() -> dispatch(lane), name);
+                    t.setDaemon(true);
+                    t.start();
+                    lane.dispatchers().add(t);
+                }
+                lanes.add(lane);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    RateLimitResult execute(ScriptCall call) {
+        RedisShards.Shard shard = shards.forKey(call.apiKeyHash());
+        if (!props.enabled()) {
+            long start = System.nanoTime();
+            List<Long> reply = shard.redis().execute(call.script(), call.keys(), call.args().toArray());
+            shard.recordSince(start);
+            return call.toResult(reply);
+        }
+
+        Pending pending = new Pending(call, new CompletableFuture<>());
+        if (!lanes.get(shard.index()).queue().offer(pending)) {
+            throw new RejectedExecutionException("Limiter batch queue is full");
+        }
+        // join() rethrows Redis errors (and the timeout) as unchecked, which the breaker counts
+        List<?> reply = pending.reply
+                .orTimeout(props.callTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .join();
+        return call.toResult(reply);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.dispatchers().forEach(Thread::interrupt);
+            Pending left;
+            while ((left = lane.queue().poll()) != null) {
+                left.reply.completeExceptionally(new RejectedExecutionException("Limiter batcher is shutting down"));
+            }
+        }
+    }
+
+    private void dispatch(Lane lane) {
+        BlockingQueue<Pending> queue = lane.queue();
+        long maxWaitNanos = props.maxWait().toNanos();
+        List<Pending> batch = new ArrayList<>(props.maxBatchSize());
+        StatefulRedisConnection<String, String> connection = null;
+
+        try {
+            while (running) {
+                try {
+                    batch.add(queue.take());
+                    long deadline = System.nanoTime() + maxWaitNanos;
+
+                    while (batch.size() < props.maxBatchSize()) {
+                        Pending next = queue.poll();
+                        if (next == null) {
+                            long left = deadline - System.nanoTime();
+                            if (left <= 0 || (next = queue.poll(left, TimeUnit.NANOSECONDS)) == null) {
+                                break;
+                            }
+                        }
+                        batch.add(next);
+                    }
+
+                    batchSizes.record(batch.size());
+                    if (connection == null) {
+                        // lazily, so a Redis that's down at startup only fails the calls, like the templates do
+                        connection = connect(lane.shard());
+                    }
+                    send(lane.shard(), connection, batch, true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    batch.forEach(p -> p.reply.completeExceptionally(e));
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("Limiter batch failed", e);
+                    batch.forEach(p -> p.reply.completeExceptionally(e));
+                } finally {
+                    batch.clear();
+                }
+            }
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    // a connection of our own from the shard's Lettuce client, same server and credentials as its template
+    private static StatefulRedisConnection<String, String> connect(RedisShards.Shard shard) {
+        if (!(shard.redis().getConnectionFactory() instanceof LettuceConnectionFactory factory)
+                || !(factory.getNativeClient() instanceof RedisClient client)) {
+            throw new IllegalStateException("Batched limiter calls need a standalone Lettuce connection, shard " + shard.name() + " has none");
+        }
+        StatefulRedisConnection<String, String> connection = client.connect(StringCodec.UTF8);
+        connection.setAutoFlushCommands(false);
+        return connection;
+    }
+
+    private void send(RedisShards.Shard shard,
+                      StatefulRedisConnection<String, String> connection,
+                      List<Pending> batch,
+                      boolean firstAttempt) throws InterruptedException {
+        RedisAsyncCommands<String, String> commands = connection.async();
+        List<RedisFuture<List<Object>>> replies = new ArrayList<>(batch.size());
+        long start = System.nanoTime();
+        for (Pending p : batch) {
+            replies.add(commands.evalsha(
+                    p.call.script().getSha1(),
+                    ScriptOutputType.MULTI,
+                    p.call.keys().toArray(String[]::new),
+                    p.call.args().toArray(String[]::new)
+            ));
+        }
+        connection.flushCommands();
+
+        // callers give up after callTimeout, so there's no point waiting longer for their replies
+        long deadline = start + props.callTimeout().toNanos();
+        List<Pending> missingScript = new ArrayList<>();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Pending p = batch.get(i);
+                try {
+                    p.reply.complete(replies.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException e) {
+                    // one failed script doesn't touch the others' replies
+                    if (firstAttempt && isNoScript(e.getCause())) {
+                        missingScript.add(p);
+                    } else {
+                        p.reply.completeExceptionally(e.getCause());
+                    }
+                } catch (TimeoutException e) {
+                    p.reply.completeExceptionally(e);
+                }
+            }
+        } finally {
+            shard.recordSince(start);
+        }
+
+        // first use after a Redis restart or SCRIPT FLUSH: load and resend only those calls
+        if (!missingScript.isEmpty()) {
+            Set<RedisScript<?>> scripts = new LinkedHashSet<>();
+            missingScript.forEach(p -> scripts.add(p.call.script()));
+            for (RedisScript<?> script : scripts) {
+                shard.redis().execute((RedisCallback<String>) c -> c.scriptingCommands()
+                        .scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+            }
+            send(shard, connection, missingScript, false);
+        }
+    }
+
+    private static boolean isNoScript(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Pending(ScriptCall call, CompletableFuture<List<?>> reply) {}
+
+    private record Lane(RedisShards.Shard shard, BlockingQueue<Pending> queue, List<Thread> dispatchers) {}
+}
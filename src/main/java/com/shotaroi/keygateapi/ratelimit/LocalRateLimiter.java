@@ -0,0 +1,83 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory fixed window used while Redis is unavailable. Each node allows
+ * requestsPerMinute / expectedNodeCount, so the cluster as a whole stays close to the real limit.
+ */
+@Component
+public class LocalRateLimiter {
+
+    private final int expectedNodeCount;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    public LocalRateLimiter(FallbackProperties props) {
+        this.expectedNodeCount = Math.max(1, props.expectedNodeCount());
+    }
+
+    public RateLimitResult tryAcquire(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        long now = Instant.now().getEpochSecond();
+        long windowStart = now - (now % 60);
+        int limit = Math.max(1, policy.requestsPerMinute() / expectedNodeCount);
+
+        Window window = windows.get(apiKeyHash);
+        if (window == null || window.start != windowStart) {
+            Window fresh = new Window(windowStart);
+            window = windows.merge(apiKeyHash, fresh, (old, created) -> old.start >= created.start ? old : created);
+        }
+
+        boolean allowed;
+        long used;
+        while (true) {
+            long current = window.used.get();
+            if (current + cost > limit) {
+                allowed = false;
+                used = current;
+                break;
+            }
+            if (window.used.compareAndSet(current, current + cost)) {
+                allowed = true;
+                used = current + cost;
+                break;
+            }
+        }
+
+        return new RateLimitResult(allowed, limit, used, Math.max(0, limit - used), windowStart + 60 - now);
+    }
+
+    /**
+     * Hands over what this node admitted in the current minute so it can be added to the
+     * Redis counters once Redis is back, and forgets everything else.
+     */
+    public Map<String, Long> drainCurrentWindow() {
+        long now = Instant.now().getEpochSecond();
+        long windowStart = now - (now % 60);
+
+        Map<String, Long> admitted = new HashMap<>();
+        windows.forEach((apiKeyHash, window) -> {
+            if (windows.remove(apiKeyHash, window) && window.start == windowStart) {
+                long used = window.used.get();
+                if (used > 0) {
+                    admitted.put(apiKeyHash, used);
+                }
+            }
+        });
+        return admitted;
+    }
+
+    private static final class Window {
+        final long start;
+        final AtomicLong used = new AtomicLong();
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+}
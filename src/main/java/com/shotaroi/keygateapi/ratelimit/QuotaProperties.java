@@ -0,0 +1,13 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "keygate.ratelimit.quotas")
+public record QuotaProperties(
+        // a concurrency slot whose release never arrives (node crash) frees itself after this;
+        // keep it above the longest request you serve
+        @DefaultValue("60s") Duration concurrencyLeaseTtl
+) {}
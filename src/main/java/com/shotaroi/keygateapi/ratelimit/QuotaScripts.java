@@ -0,0 +1,91 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns a per-minute limiter call into one that also checks and charges the client's
+ * {@link RateLimitPolicy.Quotas}, using redis/quotas.lua. It is still a single script call,
+ * so all limits are decided atomically and nothing is charged when any of them rejects.
+ */
+@SuppressWarnings("rawtypes")
+final class QuotaScripts {
+
+    // the algorithm script brings its own copy of the counter functions, but only inside per_minute()
+    private static final String QUOTAS = CounterKeys.prelude() + read("redis/quotas.lua");
+
+    // one combined script per algorithm script, keyed by the algorithm script's sha1
+    private static final Map<String, RedisScript<List>> WRAPPED = new ConcurrentHashMap<>();
+
+    private QuotaScripts() {}
+
+    static ScriptCall wrap(ScriptCall minute,
+                           CounterKeys counterKeys,
+                           String apiKeyHash,
+                           RateLimitPolicy policy,
+                           int cost,
+                           String lease,
+                           Duration leaseTtl) {
+        RateLimitPolicy.Quotas quotas = policy.quotas();
+        long nowMillis = System.currentTimeMillis();
+        long now = nowMillis / 1000;
+
+        CounterKeys.Counter second = counterKeys.window(apiKeyHash, 's', now);
+        CounterKeys.Counter hour = counterKeys.window(apiKeyHash, 'h', now - (now % 3600));
+        CounterKeys.Counter day = counterKeys.window(apiKeyHash, 'd', now - (now % 86400));
+
+        List<String> keys = new ArrayList<>(minute.keys().size() + 4);
+        keys.addAll(minute.keys());
+        keys.add(second.key());
+        keys.add(hour.key());
+        keys.add(day.key());
+        keys.add(concurrencyKey(apiKeyHash));
+
+        List<String> args = new ArrayList<>(minute.args().size() + 14);
+        args.addAll(minute.args());
+        args.add(String.valueOf(minute.limit()));
+        args.add(String.valueOf(quotas.requestsPerSecond()));
+        args.add(String.valueOf(quotas.requestsPerHour()));
+        args.add(String.valueOf(quotas.requestsPerDay()));
+        args.add(String.valueOf(quotas.maxConcurrent()));
+        args.add(String.valueOf(cost));
+        args.add(String.valueOf(nowMillis));
+        args.add(lease != null ? lease : "");
+        args.add(String.valueOf(leaseTtl.toMillis()));
+        args.add(second.field());
+        args.add(hour.field());
+        args.add(day.field());
+        args.add(String.valueOf(minute.keys().size()));
+        args.add(String.valueOf(minute.args().size()));
+
+        return new ScriptCall(minute.apiKeyHash(), wrapped(minute.script()), keys, args, minute.limit(), lease);
+    }
+
+    static String concurrencyKey(String apiKeyHash) {
+        return "cc:" + apiKeyHash;
+    }
+
+    private static RedisScript<List> wrapped(RedisScript<List> minute) {
+        return WRAPPED.computeIfAbsent(minute.getSha1(), sha1 -> RedisScript.of(
+                "local function per_minute()\n" + minute.getScriptAsString() + "\nend\n\n" + QUOTAS,
+                List.class
+        ));
+    }
+
+    private static String read(String path) {
+        try {
+            return new ClassPathResource(path).getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path, e);
+        }
+    }
+}
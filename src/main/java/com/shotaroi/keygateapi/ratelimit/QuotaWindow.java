@@ -0,0 +1,18 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+/**
+ * Which of a client's limits a {@link RateLimitResult} describes. MINUTE is the client's
+ * configured algorithm, whichever one it is. The ordinals are used in redis/quotas.lua.
+ */
+public enum QuotaWindow {
+    SECOND,
+    MINUTE,
+    HOUR,
+    DAY,
+    CONCURRENT;
+
+    // for headers and error details
+    public String label() {
+        return name().toLowerCase();
+    }
+}
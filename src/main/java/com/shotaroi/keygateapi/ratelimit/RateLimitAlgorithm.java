@@ -0,0 +1,10 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+public enum RateLimitAlgorithm {
+    // counter per calendar minute; cheap, but allows up to 2x the limit across a minute boundary
+    FIXED_WINDOW,
+    // current minute + weighted previous minute; smooths out the boundary burst
+    SLIDING_WINDOW,
+    // refills at requestsPerMinute, allows short bursts up to `burst`
+    TOKEN_BUCKET
+}
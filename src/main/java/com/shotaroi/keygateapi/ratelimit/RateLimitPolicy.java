@@ -0,0 +1,44 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+/**
+ * Per-client limiter settings.
+ *
+ * @param requestsPerMinute sustained rate
+ * @param burst             how many requests may arrive at once (token bucket capacity);
+ *                          the window algorithms only look at requestsPerMinute
+ * @param failMode          behaviour while Redis is unreachable
+ * @param quotas            limits on top of the per-minute one, checked in the same Redis call
+ */
+public record RateLimitPolicy(
+        RateLimitAlgorithm algorithm,
+        int requestsPerMinute,
+        int burst,
+        FailMode failMode,
+        Quotas quotas
+) {
+
+    public RateLimitPolicy(RateLimitAlgorithm algorithm, int requestsPerMinute, int burst, FailMode failMode) {
+        this(algorithm, requestsPerMinute, burst, failMode, Quotas.NONE);
+    }
+
+    public static RateLimitPolicy fixedWindow(int requestsPerMinute) {
+        return new RateLimitPolicy(RateLimitAlgorithm.FIXED_WINDOW, requestsPerMinute, requestsPerMinute, FailMode.LOCAL);
+    }
+
+    public RateLimitPolicy withoutQuotas() {
+        return quotas.isEmpty() ? this : new RateLimitPolicy(algorithm, requestsPerMinute, burst, failMode);
+    }
+
+    /**
+     * Fixed windows per second, hour and day (calendar-aligned, UTC) and a cap on requests
+     * in flight. 0 means no such limit.
+     */
+    public record Quotas(int requestsPerSecond, int requestsPerHour, int requestsPerDay, int maxConcurrent) {
+
+        public static final Quotas NONE = new Quotas(0, 0, 0, 0);
+
+        public boolean isEmpty() {
+            return requestsPerSecond == 0 && requestsPerHour == 0 && requestsPerDay == 0 && maxConcurrent == 0;
+        }
+    }
+}
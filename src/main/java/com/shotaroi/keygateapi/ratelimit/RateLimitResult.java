@@ -0,0 +1,56 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import java.util.List;
+
+/**
+ * Outcome of a single limiter call, with everything needed for the X-RateLimit-* headers.
+ * With several limits, the numbers are those of the binding one: the limit that rejected
+ * the request, or else the one with the least room left.
+ */
+public record RateLimitResult(
+        boolean allowed,
+        int limit,
+        long used,
+        long remaining,
+        long resetSeconds,
+        // no decision could be made (Redis down and the client is fail-closed)
+        boolean unavailable,
+        QuotaWindow window,
+        // concurrency slot taken by this request, to be released when it completes (null if none)
+        String concurrencyLease
+) {
+
+    public RateLimitResult(boolean allowed, int limit, long used, long remaining, long resetSeconds) {
+        this(allowed, limit, used, remaining, resetSeconds, false, QuotaWindow.MINUTE, null);
+    }
+
+    static RateLimitResult limiterUnavailable(int limit, long retryAfterSeconds) {
+        return new RateLimitResult(false, limit, 0, 0, retryAfterSeconds, true, QuotaWindow.MINUTE, null);
+    }
+
+    // all limiter scripts reply with {allowed, used, remaining, resetSeconds}
+    static RateLimitResult fromScriptReply(int limit, List<Long> reply) {
+        return new RateLimitResult(
+                reply.get(0) == 1L,
+                limit,
+                reply.get(1),
+                reply.get(2),
+                reply.get(3)
+        );
+    }
+
+    // redis/quotas.lua adds the binding limit and its QuotaWindow ordinal: {..., limit, window}
+    static RateLimitResult fromQuotaReply(List<Long> reply, String lease) {
+        boolean allowed = reply.get(0) == 1L;
+        return new RateLimitResult(
+                allowed,
+                Math.toIntExact(reply.get(4)),
+                reply.get(1),
+                reply.get(2),
+                reply.get(3),
+                false,
+                QuotaWindow.values()[Math.toIntExact(reply.get(5))],
+                allowed ? lease : null
+        );
+    }
+}
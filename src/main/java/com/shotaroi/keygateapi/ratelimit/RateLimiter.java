@@ -0,0 +1,16 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+/**
+ * One rate limiting algorithm. Every implementation runs its check atomically in Redis
+ * (a single script call), so concurrent requests across nodes can't race each other.
+ */
+public interface RateLimiter {
+
+    RateLimitAlgorithm algorithm();
+
+    /**
+     * Charges {@code cost} units and reports whether the request fits.
+     * A cost of 0 only reads the current state.
+     */
+    RateLimitResult tryAcquire(String apiKeyHash, RateLimitPolicy policy, int cost);
+}
@@ -0,0 +1,116 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link RedisRateLimiter} for the reactive stack. Runs the same
+ * limiter scripts through {@link ReactiveStringRedisTemplate} and shares the circuit breaker,
+ * fallback, hot-key blocking and metrics with the blocking limiter.
+ *
+ * <p>Lease mode isn't used here: a lease refill can block on Redis, so every check is one script call.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveRateLimiter.class);
+
+    private final Map<RateLimitAlgorithm, ScriptRateLimiter> limiters = new EnumMap<>(RateLimitAlgorithm.class);
+    private final RedisShards shards;
+    private final RedisRateLimiter blockingLimiter;
+    private final LocalRateLimiter localLimiter;
+    private final RedisCircuitBreaker breaker;
+    private final HotKeyDetector hotKeys;
+
+    public ReactiveRateLimiter(List<ScriptRateLimiter> limiters,
+                               RedisShards shards,
+                               RedisRateLimiter blockingLimiter,
+                               LocalRateLimiter localLimiter,
+                               RedisCircuitBreaker breaker,
+                               HotKeyDetector hotKeys) {
+        for (ScriptRateLimiter limiter : limiters) {
+            this.limiters.put(limiter.algorithm(), limiter);
+        }
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            if (!this.limiters.containsKey(algorithm)) {
+                throw new IllegalStateException("No script limiter registered for " + algorithm);
+            }
+        }
+        this.shards = shards;
+        this.blockingLimiter = blockingLimiter;
+        this.localLimiter = localLimiter;
+        this.breaker = breaker;
+        this.hotKeys = hotKeys;
+    }
+
+    public Mono<RateLimitResult> check(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        RateLimitResult blocked = hotKeys.blockedResult(apiKeyHash, cost);
+        if (blocked != null) {
+            return Mono.just(blocked);
+        }
+        if (!breaker.tryAcquirePermission()) {
+            return Mono.fromSupplier(() -> blockingLimiter.fallback(apiKeyHash, policy, cost));
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return execute(blockingLimiter.prepare(limiters.get(policy.algorithm()), apiKeyHash, policy, cost))
+                    .doOnNext(result -> {
+                        blockingLimiter.recordLatency(policy.algorithm(), System.nanoTime() - start);
+                        blockingLimiter.onRedisSuccess();
+                        hotKeys.onResult(apiKeyHash, result);
+                    });
+        }).onErrorResume(e -> {
+            breaker.onFailure();
+            log.debug("Redis limiter call failed, using fail mode {}", policy.failMode(), e);
+            return Mono.fromSupplier(() -> blockingLimiter.fallback(apiKeyHash, policy, cost));
+        });
+    }
+
+    // read-only view for /usage, same semantics as RedisRateLimiter#peek
+    public Mono<RateLimitResult> peek(String apiKeyHash, RateLimitPolicy policy) {
+        if (!breaker.tryAcquirePermission()) {
+            return Mono.fromSupplier(() -> localLimiter.tryAcquire(apiKeyHash, policy, 0));
+        }
+        return Mono.defer(() -> execute(blockingLimiter.prepare(limiters.get(policy.algorithm()), apiKeyHash, policy, 0)))
+                .doOnNext(result -> blockingLimiter.onRedisSuccess())
+                .onErrorResume(e -> {
+                    breaker.onFailure();
+                    return Mono.fromSupplier(() -> localLimiter.tryAcquire(apiKeyHash, policy, 0));
+                });
+    }
+
+    // same as RedisRateLimiter#release; errors are swallowed, the slot expires on its own
+    public Mono<Void> release(String apiKeyHash, String lease) {
+        return shards.forKey(apiKeyHash).reactive().opsForZSet().remove(QuotaScripts.concurrencyKey(apiKeyHash), lease)
+                .then()
+                .onErrorResume(e -> {
+                    log.debug("Could not release concurrency lease, it will expire on its own", e);
+                    return Mono.empty();
+                });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Mono<RateLimitResult> execute(ScriptCall call) {
+        RedisShards.Shard shard = shards.forKey(call.apiKeyHash());
+        long start = System.nanoTime();
+        Flux<Object> reply = (Flux) shard.reactive().execute(call.script(), call.keys(), call.args());
+        return reply.collectList()
+                .doOnNext(elements -> shard.recordSince(start))
+                .map(elements -> call.toResult(unwrap(elements)));
+    }
+
+    // Lettuce emits an array reply element by element; unwrap in case it arrives as one list
+    private static List<?> unwrap(List<Object> elements) {
+        return (elements.size() == 1 && elements.get(0) instanceof List<?> nested) ? nested : elements;
+    }
+}
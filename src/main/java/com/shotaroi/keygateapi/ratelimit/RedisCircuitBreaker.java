@@ -0,0 +1,115 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stops sending limiter calls to Redis after repeated failures, so request threads
+ * don't queue up behind a stalled connection.
+ *
+ * <p>CLOSED: calls go through. OPEN: calls are skipped for {@code openDuration}.
+ * HALF_OPEN: a single probe call decides whether to close again or re-open.
+ */
+@Component
+public class RedisCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    private volatile long openedAt;
+
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+    public RedisCircuitBreaker(FallbackProperties props, MeterRegistry meterRegistry) {
+        this.failureThreshold = props.failureThreshold();
+        this.openNanos = props.openDuration().toNanos();
+
+        // 0 = closed, 1 = open, 2 = half-open
+        Gauge.builder("keygate.ratelimit.breaker.state", state, s -> s.get().ordinal())
+                .description("Redis limiter circuit breaker state (0 closed, 1 open, 2 half-open)")
+                .register(meterRegistry);
+        for (State s : State.values()) {
+            transitions.put(s, Counter.builder("keygate.ratelimit.breaker.transitions")
+                    .tag("to", s.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    /**
+     * @return true if the caller may talk to Redis now
+     */
+    public boolean tryAcquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                transitions.get(State.HALF_OPEN).increment();
+            }
+        }
+        // half-open: exactly one probe at a time
+        return probeInFlight.compareAndSet(false, true);
+    }
+
+    /**
+     * @return true if this call closed the breaker after an outage
+     */
+    public boolean onSuccess() {
+        // avoid a shared write on every healthy request
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        if (state.get() == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            probeInFlight.set(false);
+            transitions.get(State.CLOSED).increment();
+            log.info("Redis limiter recovered, circuit closed");
+            return true;
+        }
+        return false;
+    }
+
+    public void onFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            open();
+            probeInFlight.set(false);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        consecutiveFailures.set(0);
+        if (state.getAndSet(State.OPEN) != State.OPEN) {
+            transitions.get(State.OPEN).increment();
+            log.warn("Redis limiter failing, circuit open for {} ms", openNanos / 1_000_000);
+        }
+    }
+}
@@ -1,62 +1,235 @@
 package com.shotaroi.keygateapi.ratelimit;
 
-import org.springframework.data.redis.core.StringRedisTemplate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point used by the auth filter and /usage. Picks the {@link RateLimiter}
+ * matching the client's configured algorithm, and falls back to the client's
+ * {@link FailMode} while the circuit breaker says Redis is down. Keys the
+ * {@link HotKeyDetector} has blocked are rejected before any of that.
+ *
+ * <p>Clients with {@link RateLimitPolicy.Quotas} get their per-second, hourly, daily and
+ * concurrency limits checked in the same script call as the per-minute one (see {@link QuotaScripts}).
+ * While Redis is down only the per-minute limit applies.
+ */
 @Component
 public class RedisRateLimiter {
 
-    private final StringRedisTemplate redis;
+    private static final Logger log = LoggerFactory.getLogger(RedisRateLimiter.class);
+
+    private final Map<RateLimitAlgorithm, RateLimiter> limiters = new EnumMap<>(RateLimitAlgorithm.class);
+    private final LeasedRateLimiter leasedLimiter;
+    private final LocalRateLimiter localLimiter;
+    private final RedisCircuitBreaker breaker;
+    private final HotKeyDetector hotKeys;
+    private final RedisShards shards;
+    private final CounterKeys counterKeys;
+    private final long retryAfterSeconds;
+    private final Duration concurrencyLeaseTtl;
+
+    // latency of the limiter call per algorithm; "leased" is mostly local with an occasional Redis trip
+    private final Map<RateLimitAlgorithm, Timer> redisTimers = new EnumMap<>(RateLimitAlgorithm.class);
+    private final Timer leasedTimer;
+
+    // [failMode][allowed ? 1 : 0]
+    private final Counter[][] fallbackDecisions = new Counter[FailMode.values().length][2];
+
+    public RedisRateLimiter(List<RateLimiter> limiters,
+                            LeasedRateLimiter leasedLimiter,
+                            LocalRateLimiter localLimiter,
+                            RedisCircuitBreaker breaker,
+                            HotKeyDetector hotKeys,
+                            RedisShards shards,
+                            CounterKeys counterKeys,
+                            FallbackProperties fallbackProps,
+                            QuotaProperties quotaProps,
+                            MeterRegistry meterRegistry) {
+        this.leasedLimiter = leasedLimiter;
+        this.localLimiter = localLimiter;
+        this.breaker = breaker;
+        this.hotKeys = hotKeys;
+        this.shards = shards;
+        this.counterKeys = counterKeys;
+        this.retryAfterSeconds = Math.max(1, fallbackProps.openDuration().toSeconds());
+        this.concurrencyLeaseTtl = quotaProps.concurrencyLeaseTtl();
+
+        for (RateLimiter limiter : limiters) {
+            this.limiters.put(limiter.algorithm(), limiter);
+        }
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            if (!this.limiters.containsKey(algorithm)) {
+                throw new IllegalStateException("No RateLimiter registered for " + algorithm);
+            }
+        }
 
-    public RedisRateLimiter(StringRedisTemplate redis) {
-        this.redis = redis;
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            redisTimers.put(algorithm, limiterTimer(meterRegistry, algorithm.name().toLowerCase()));
+        }
+        this.leasedTimer = limiterTimer(meterRegistry, "leased");
+
+        for (FailMode mode : FailMode.values()) {
+            for (int allowed = 0; allowed < 2; allowed++) {
+                fallbackDecisions[mode.ordinal()][allowed] = Counter.builder("keygate.ratelimit.fallback.decisions")
+                        .description("Limiter decisions made without Redis")
+                        .tag("mode", mode.name().toLowerCase())
+                        .tag("outcome", allowed == 1 ? "allowed" : "rejected")
+                        .register(meterRegistry);
+            }
+        }
     }
 
-    public long currentUsed(String apiKeyHash) {
-        long minuteBucket = currentMinuteBucket();
-        String key = keyFor(apiKeyHash, minuteBucket);
+    private static Timer limiterTimer(MeterRegistry registry, String algorithm) {
+        return Timer.builder("keygate.ratelimit.redis.duration")
+                .description("Rate limiter call latency, including the Redis round trip")
+                .tag("algorithm", algorithm)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(50_000))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(registry);
+    }
 
-        String value = redis.opsForValue().get(key);
-        if (value == null) return 0;
+    public boolean allowRequest(String apiKeyHash, int limitPerMinute) {
+        return check(apiKeyHash, RateLimitPolicy.fixedWindow(limitPerMinute)).allowed();
+    }
+
+    /**
+     * Counts one request and returns the full picture (used / remaining / reset)
+     * from the same Redis reply.
+     */
+    public RateLimitResult check(String apiKeyHash, RateLimitPolicy policy) {
+        return check(apiKeyHash, policy, 1);
+    }
 
+    /**
+     * Same, for a request that costs {@code cost} units (see {@link RouteCosts}). All of it
+     * is charged in the same script call, or none of it when the request is rejected.
+     */
+    public RateLimitResult check(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        RateLimitResult blocked = hotKeys.blockedResult(apiKeyHash, cost);
+        if (blocked != null) {
+            return blocked;
+        }
+        if (!breaker.tryAcquirePermission()) {
+            return fallback(apiKeyHash, policy, cost);
+        }
+        boolean leased = leasedLimiter.appliesTo(policy);
+        long start = System.nanoTime();
         try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException e) {
-            return 0;
+            RateLimitResult result = leased
+                    ? leasedLimiter.tryAcquire(apiKeyHash, policy, cost)
+                    : acquire(limiters.get(policy.algorithm()), apiKeyHash, policy, cost);
+            if (leased) {
+                leasedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } else {
+                recordLatency(policy.algorithm(), System.nanoTime() - start);
+            }
+            onRedisSuccess();
+            hotKeys.onResult(apiKeyHash, result);
+            return result;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            log.debug("Redis limiter call failed, using fail mode {}", policy.failMode(), e);
+            return fallback(apiKeyHash, policy, cost);
         }
     }
 
-    public long secondsUntilReset() {
-        long now = Instant.now().getEpochSecond();
-        long passed = now % 60;
-        long left = 60 - passed;
-        return (left == 0) ? 60 : left;
+    // read-only view for /usage, doesn't count as a request
+    // (with leases on, tokens reserved by nodes but not spent yet show up as used)
+    public RateLimitResult peek(String apiKeyHash, RateLimitPolicy policy) {
+        if (!breaker.tryAcquirePermission()) {
+            return localLimiter.tryAcquire(apiKeyHash, policy, 0);
+        }
+        try {
+            RateLimitResult result = acquire(limiters.get(policy.algorithm()), apiKeyHash, policy, 0);
+            onRedisSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            return localLimiter.tryAcquire(apiKeyHash, policy, 0);
+        }
     }
 
-    private long currentMinuteBucket() {
-        return Instant.now().truncatedTo(ChronoUnit.MINUTES).getEpochSecond();
+    /**
+     * Frees the concurrency slot a request took (see {@link RateLimitResult#concurrencyLease()}).
+     * If this fails, the slot frees itself after {@code keygate.ratelimit.quotas.concurrency-lease-ttl}.
+     */
+    public void release(String apiKeyHash, String lease) {
+        try {
+            shards.forKey(apiKeyHash).redis().opsForZSet().remove(QuotaScripts.concurrencyKey(apiKeyHash), lease);
+        } catch (RuntimeException e) {
+            log.debug("Could not release concurrency lease, it will expire on its own", e);
+        }
     }
 
-    private String keyFor(String apiKeyHash, long minuteBucket) {
-        return "rl:" + apiKeyHash + ":" + minuteBucket;
+    private RateLimitResult acquire(RateLimiter limiter, String apiKeyHash, RateLimitPolicy policy, int cost) {
+        if (!policy.quotas().isEmpty() && limiter instanceof ScriptRateLimiter script) {
+            return script.execute(prepare(script, apiKeyHash, policy, cost));
+        }
+        return limiter.tryAcquire(apiKeyHash, policy, cost);
     }
 
+    // the limiter's own call, wrapped with the client's other quotas if it has any;
+    // the reactive limiter builds its calls here too
+    ScriptCall prepare(ScriptRateLimiter limiter, String apiKeyHash, RateLimitPolicy policy, int cost) {
+        ScriptCall call = limiter.prepare(apiKeyHash, policy, cost);
+        if (policy.quotas().isEmpty()) {
+            return call;
+        }
+        String lease = (cost > 0 && policy.quotas().maxConcurrent() > 0)
+                ? Long.toHexString(ThreadLocalRandom.current().nextLong())
+                : null;
+        return QuotaScripts.wrap(call, counterKeys, apiKeyHash, policy, cost, lease, concurrencyLeaseTtl);
+    }
 
-    public boolean allowRequest(String apiKeyHash, int limitPerMinute) {
-        long minuteBucket = currentMinuteBucket();
-        String key = keyFor(apiKeyHash, minuteBucket);
+    void recordLatency(RateLimitAlgorithm algorithm, long nanos) {
+        redisTimers.get(algorithm).record(nanos, TimeUnit.NANOSECONDS);
+    }
 
-        Long count = redis.opsForValue().increment(key);
+    // also used by the reactive limiter, so both stacks share one breaker and fallback policy
+    RateLimitResult fallback(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        RateLimitResult result = switch (policy.failMode()) {
+            case LOCAL -> localLimiter.tryAcquire(apiKeyHash, policy, cost);
+            case OPEN -> new RateLimitResult(true, policy.requestsPerMinute(), 0, policy.requestsPerMinute(), retryAfterSeconds);
+            case CLOSED -> RateLimitResult.limiterUnavailable(policy.requestsPerMinute(), retryAfterSeconds);
+        };
+        fallbackDecisions[policy.failMode().ordinal()][result.allowed() ? 1 : 0].increment();
+        return result;
+    }
 
-        if (count != null && count == 1) {
-            redis.expire(key, Duration.ofSeconds(70));
+    void onRedisSuccess() {
+        if (breaker.onSuccess()) {
+            CompletableFuture.runAsync(this::reconcile);
         }
+    }
 
-        return count != null && count <= limitPerMinute;
+    // adds what this node admitted locally during the outage to the shared window counters
+    // (token bucket state isn't reconciled, it refills on its own within a minute)
+    private void reconcile() {
+        Map<String, Long> admitted = localLimiter.drainCurrentWindow();
+        RateLimiter fixedWindow = limiters.get(RateLimitAlgorithm.FIXED_WINDOW);
+        admitted.forEach((apiKeyHash, count) -> {
+            try {
+                fixedWindow.tryAcquire(apiKeyHash, RateLimitPolicy.fixedWindow(Integer.MAX_VALUE), Math.toIntExact(count));
+            } catch (RuntimeException e) {
+                log.warn("Could not reconcile {} locally admitted requests", count, e);
+            }
+        });
+        if (!admitted.isEmpty()) {
+            log.info("Reconciled local limiter counts for {} clients", admitted.size());
+        }
     }
 
 }
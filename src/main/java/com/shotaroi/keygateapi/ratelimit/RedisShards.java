@@ -0,0 +1,124 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Which Redis instance holds a client's limiter keys. With {@code keygate.ratelimit.shards.nodes}
+ * empty, that's the app's own Redis ({@code spring.data.redis}). Otherwise clients are spread
+ * over the listed instances on a {@link ConsistentHashRing}, keyed by API key hash.
+ *
+ * <p>Every key of one client (window counters, quota counters, the concurrency set) lives on the
+ * same shard, so each limiter script still runs atomically on a single instance. Pub/sub and
+ * usage data stay on {@code spring.data.redis}.
+ */
+@Component
+public class RedisShards implements DisposableBean {
+
+    /**
+     * One Redis instance. {@code reactive} is null when the app has no reactive template.
+     */
+    public record Shard(int index, String name, StringRedisTemplate redis, ReactiveStringRedisTemplate reactive, Timer latency) {
+
+        void recordSince(long startNanos) {
+            latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final ConsistentHashRing<Shard> ring;
+    private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+
+    public RedisShards(ShardProperties props,
+                       StringRedisTemplate redis,
+                       Optional<ReactiveStringRedisTemplate> reactiveRedis,
+                       MeterRegistry meterRegistry) {
+        if (props.nodes() == null || props.nodes().isEmpty()) {
+            shards.add(new Shard(0, "default", redis, reactiveRedis.orElse(null), shardTimer(meterRegistry, "default")));
+            this.ring = null;
+            return;
+        }
+
+        Map<String, Shard> byName = new LinkedHashMap<>();
+        for (ShardProperties.Node node : props.nodes()) {
+            if (node.name() == null || node.name().isBlank()) {
+                throw new IllegalStateException("Every keygate.ratelimit.shards node needs a name");
+            }
+            if (byName.containsKey(node.name())) {
+                throw new IllegalStateException("Duplicate Redis shard name: " + node.name());
+            }
+            LettuceConnectionFactory factory = connect(node, props.timeout(), props.connectTimeout());
+            factories.add(factory);
+            Shard shard = new Shard(
+                    shards.size(),
+                    node.name(),
+                    new StringRedisTemplate(factory),
+                    new ReactiveStringRedisTemplate(factory),
+                    shardTimer(meterRegistry, node.name())
+            );
+            shards.add(shard);
+            byName.put(node.name(), shard);
+        }
+        this.ring = new ConsistentHashRing<>(byName, props.virtualNodes());
+    }
+
+    private static LettuceConnectionFactory connect(ShardProperties.Node node, Duration timeout, Duration connectTimeout) {
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(node.host(), node.port());
+        server.setDatabase(node.database());
+        if (node.password() != null && !node.password().isBlank()) {
+            server.setPassword(RedisPassword.of(node.password()));
+        }
+        LettuceClientConfiguration client = LettuceClientConfiguration.builder()
+                .commandTimeout(timeout)
+                .clientOptions(ClientOptions.builder()
+                        .socketOptions(SocketOptions.builder().connectTimeout(connectTimeout).build())
+                        .build())
+                .build();
+
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(server, client);
+        factory.afterPropertiesSet();
+        factory.start();
+        return factory;
+    }
+
+    private static Timer shardTimer(MeterRegistry registry, String shard) {
+        return Timer.builder("keygate.ratelimit.shard.duration")
+                .description("Limiter round trips to one Redis shard (a pipelined batch counts once)")
+                .tag("shard", shard)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(50_000))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(registry);
+    }
+
+    public Shard forKey(String apiKeyHash) {
+        return ring == null ? shards.get(0) : ring.nodeFor(apiKeyHash);
+    }
+
+    public List<Shard> all() {
+        return List.copyOf(shards);
+    }
+
+    @Override
+    public void destroy() {
+        factories.forEach(LettuceConnectionFactory::destroy);
+    }
+}
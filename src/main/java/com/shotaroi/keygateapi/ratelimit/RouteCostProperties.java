@@ -0,0 +1,21 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "keygate.ratelimit.route-costs")
+public record RouteCostProperties(
+        // what a request costs when no route matches
+        @DefaultValue("1") int defaultCost,
+        @DefaultValue List<Route> routes
+) {
+
+    /**
+     * @param pattern Spring path pattern, e.g. {@code /reports/**} or {@code /orders/{id}}
+     * @param method  HTTP method, or null for any
+     * @param cost    units charged against the client's limits
+     */
+    public record Route(String pattern, String method, int cost) {}
+}
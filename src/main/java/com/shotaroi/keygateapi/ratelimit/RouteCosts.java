@@ -0,0 +1,103 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How many units a request costs, from {@code keygate.ratelimit.route-costs}. The routes are
+ * compiled once at startup. Literal paths go into a hash map. Patterns are kept most specific
+ * first, and the first match wins.
+ */
+@Component
+public class RouteCosts {
+
+    private static final String ANY_METHOD = "*";
+
+    private final int defaultCost;
+    // "GET /reports/daily" or "* /reports/daily"
+    private final Map<String, Integer> literals = new HashMap<>();
+    private final CompiledRoute[] patterns;
+
+    public RouteCosts(RouteCostProperties props) {
+        if (props.defaultCost() < 1) {
+            throw new IllegalArgumentException("keygate.ratelimit.route-costs.default-cost must be at least 1");
+        }
+        this.defaultCost = props.defaultCost();
+
+        PathPatternParser parser = new PathPatternParser();
+        List<CompiledRoute> compiled = new ArrayList<>();
+        for (RouteCostProperties.Route route : props.routes()) {
+            if (route.cost() < 1) {
+                // 0 would mean "just read" to the limiter scripts; free routes belong under /public
+                throw new IllegalArgumentException("Route cost for " + route.pattern() + " must be at least 1");
+            }
+            String method = route.method() != null ? route.method().toUpperCase() : ANY_METHOD;
+            PathPattern pattern = parser.parse(route.pattern());
+            if (isLiteral(route.pattern())) {
+                literals.putIfAbsent(method + " " + pattern.getPatternString(), route.cost());
+            } else {
+                compiled.add(new CompiledRoute(pattern, method, route.cost()));
+            }
+        }
+
+        // most specific pattern first; for the same pattern, a method-specific route wins
+        compiled.sort(Comparator.comparing(CompiledRoute::pattern, PathPattern.SPECIFICITY_COMPARATOR)
+                .thenComparing(route -> route.method().equals(ANY_METHOD)));
+        this.patterns = compiled.toArray(new CompiledRoute[0]);
+    }
+
+    public boolean isEmpty() {
+        return literals.isEmpty() && patterns.length == 0;
+    }
+
+    public int costOf(String method, String path) {
+        if (isEmpty()) {
+            return defaultCost;
+        }
+        Integer literal = literal(method, path);
+        if (literal != null) {
+            return literal;
+        }
+        return patterns.length == 0 ? defaultCost : match(method, PathContainer.parsePath(path));
+    }
+
+    // for WebFlux, which already has the parsed path
+    public int costOf(String method, PathContainer path) {
+        if (isEmpty()) {
+            return defaultCost;
+        }
+        Integer literal = literal(method, path.value());
+        return literal != null ? literal : match(method, path);
+    }
+
+    private Integer literal(String method, String path) {
+        if (literals.isEmpty()) {
+            return null;
+        }
+        Integer cost = literals.get(method + " " + path);
+        return cost != null ? cost : literals.get(ANY_METHOD + " " + path);
+    }
+
+    private int match(String method, PathContainer path) {
+        for (CompiledRoute route : patterns) {
+            if ((route.method().equals(ANY_METHOD) || route.method().equals(method)) && route.pattern().matches(path)) {
+                return route.cost();
+            }
+        }
+        return defaultCost;
+    }
+
+    private static boolean isLiteral(String pattern) {
+        return pattern.indexOf('*') < 0 && pattern.indexOf('{') < 0 && pattern.indexOf('?') < 0;
+    }
+
+    private record CompiledRoute(PathPattern pattern, String method, int cost) {}
+}
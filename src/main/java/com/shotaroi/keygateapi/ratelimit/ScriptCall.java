@@ -0,0 +1,30 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One limiter script invocation, built once and run by either the blocking or the reactive template.
+ * {@code apiKeyHash} picks the Redis shard (see {@link RedisShards}); all keys belong to that client.
+ * {@code lease} is the concurrency slot the call asks for, if the client has a concurrency limit.
+ */
+@SuppressWarnings("rawtypes")
+record ScriptCall(String apiKeyHash, RedisScript<List> script, List<String> keys, List<String> args, int limit, String lease) {
+
+    ScriptCall(String apiKeyHash, RedisScript<List> script, List<String> keys, List<String> args, int limit) {
+        this(apiKeyHash, script, keys, args, limit, null);
+    }
+
+    // reply elements are Longs, whichever way the call was sent
+    RateLimitResult toResult(List<?> reply) {
+        List<Long> values = new ArrayList<>(reply.size());
+        for (Object value : reply) {
+            values.add(((Number) value).longValue());
+        }
+        return values.size() > 4
+                ? RateLimitResult.fromQuotaReply(values, lease)
+                : RateLimitResult.fromScriptReply(limit, values);
+    }
+}
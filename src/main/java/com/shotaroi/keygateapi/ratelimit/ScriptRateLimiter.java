@@ -0,0 +1,26 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+/**
+ * Base for limiters that are a single Lua script call. Subclasses only say which script,
+ * keys and arguments to use, so the reactive stack and the batcher can run the exact same call.
+ */
+public abstract class ScriptRateLimiter implements RateLimiter {
+
+    private final LimiterCallBatcher batcher;
+
+    protected ScriptRateLimiter(LimiterCallBatcher batcher) {
+        this.batcher = batcher;
+    }
+
+    abstract ScriptCall prepare(String apiKeyHash, RateLimitPolicy policy, int cost);
+
+    @Override
+    public RateLimitResult tryAcquire(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        return execute(prepare(apiKeyHash, policy, cost));
+    }
+
+    // also runs calls that RedisRateLimiter has wrapped with the client's other quotas
+    RateLimitResult execute(ScriptCall call) {
+        return batcher.execute(call);
+    }
+}
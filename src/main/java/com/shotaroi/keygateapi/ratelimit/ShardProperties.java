@@ -0,0 +1,30 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "keygate.ratelimit.shards")
+public record ShardProperties(
+        // points per shard on the hash ring, more = a more even spread
+        @DefaultValue("160") int virtualNodes,
+        // same budget as spring.data.redis: the limiter is on every request
+        @DefaultValue("100ms") Duration timeout,
+        @DefaultValue("250ms") Duration connectTimeout,
+        // empty = limiter keys stay on spring.data.redis
+        @DefaultValue List<Node> nodes
+) {
+
+    /**
+     * @param name the shard's place on the ring: renaming a shard moves its clients, a new host doesn't
+     */
+    public record Node(
+            String name,
+            String host,
+            @DefaultValue("6379") int port,
+            String password,
+            @DefaultValue("0") int database
+    ) {}
+}
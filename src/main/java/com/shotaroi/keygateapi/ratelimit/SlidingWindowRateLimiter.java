@@ -0,0 +1,54 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class SlidingWindowRateLimiter extends ScriptRateLimiter {
+
+    private static final long WINDOW_MILLIS = 60_000;
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SCRIPT =
+            CounterKeys.script("redis/sliding_window.lua", List.class);
+
+    private final CounterKeys counterKeys;
+
+    public SlidingWindowRateLimiter(LimiterCallBatcher batcher, CounterKeys counterKeys) {
+        super(batcher);
+        this.counterKeys = counterKeys;
+    }
+
+    @Override
+    public RateLimitAlgorithm algorithm() {
+        return RateLimitAlgorithm.SLIDING_WINDOW;
+    }
+
+    @Override
+    ScriptCall prepare(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        long nowMillis = System.currentTimeMillis();
+        long elapsed = nowMillis % WINDOW_MILLIS;
+        long minuteBucket = (nowMillis - elapsed) / 1000;
+        CounterKeys.Counter current = counterKeys.minute(apiKeyHash, minuteBucket);
+        CounterKeys.Counter previous = counterKeys.minute(apiKeyHash, minuteBucket - 60);
+
+        // same per-minute counters as the fixed window, so /usage and switching algorithms keep working
+        return new ScriptCall(
+                apiKeyHash,
+                SCRIPT,
+                List.of(current.key(), previous.key()),
+                List.of(
+                        String.valueOf(policy.requestsPerMinute()),
+                        String.valueOf(cost),
+                        String.valueOf(WINDOW_MILLIS),
+                        String.valueOf(elapsed),
+                        current.field(),
+                        previous.field(),
+                        String.valueOf(CounterKeys.expireAt('m', minuteBucket))
+                ),
+                policy.requestsPerMinute()
+        );
+    }
+}
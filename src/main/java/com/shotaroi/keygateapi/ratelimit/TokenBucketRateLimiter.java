@@ -0,0 +1,41 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class TokenBucketRateLimiter extends ScriptRateLimiter {
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/token_bucket.lua"), List.class);
+
+    public TokenBucketRateLimiter(LimiterCallBatcher batcher) {
+        super(batcher);
+    }
+
+    @Override
+    public RateLimitAlgorithm algorithm() {
+        return RateLimitAlgorithm.TOKEN_BUCKET;
+    }
+
+    @Override
+    ScriptCall prepare(String apiKeyHash, RateLimitPolicy policy, int cost) {
+        return new ScriptCall(
+                apiKeyHash,
+                SCRIPT,
+                List.of("tb:" + apiKeyHash),
+                List.of(
+                        String.valueOf(policy.burst()),
+                        String.valueOf(policy.requestsPerMinute()),
+                        String.valueOf(cost),
+                        String.valueOf(System.currentTimeMillis())
+                ),
+                // the headers describe the bucket, so the "limit" is its capacity
+                policy.burst()
+        );
+    }
+}
@@ -0,0 +1,333 @@
+package com.shotaroi.keygateapi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.shotaroi.keygateapi.api.ApiClient;
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps resolved clients in memory so the auth filter doesn't hit Postgres on every request.
+ * Entries are keyed by the compact {@link ApiKeyHash}, so lookups don't need a hex String.
+ * Unknown hashes are cached as well (with a shorter TTL) so key-guessing can't reach the DB.
+ * A key replaced by a rotation resolves to the same client until its grace period ends;
+ * keys of revoked clients resolve to nothing.
+ *
+ * <p>Concurrent misses for one key share a single lookup. When a popular entry expires or the
+ * node has just started, its requests wait for one query instead of each taking a pool
+ * connection. A hit on a client entry past {@code refresh-ahead} of its TTL reloads it in
+ * the background and keeps serving the current value, so busy keys rarely miss at all.
+ * Hit/miss/eviction counters are published as "cache.*" metrics with cache=apiClients.
+ */
+@Component
+public class ApiClientCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiClientCache.class);
+
+    // marker for "no client with this hash"
+    private static final ApiPrincipal MISSING = new ApiPrincipal(null, "", "", null, null);
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final ApiClientRepository repo;
+    private final Cache<ApiKeyHash, Entry> cache;
+    private final Timer dbLookups;
+
+    // lookups running right now, one per key
+    private final Map<ApiKeyHash, CompletableFuture<ApiPrincipal>> loads = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final double refreshAhead;
+    private final ExecutorService refresher;
+
+    private final Counter coalesced;
+    private final Counter refreshed;
+    private final Counter refreshFailed;
+    private final Counter refreshDropped;
+
+    public ApiClientCache(ApiClientRepository repo, AuthCacheProperties props, MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(props.maxSize())
+                .expireAfter(new HitOrMissExpiry(props.ttl().toNanos(), props.negativeTtl().toNanos()))
+                .recordStats()
+                .build();
+        this.ttlNanos = props.ttl().toNanos();
+        this.refreshAhead = props.refreshAhead();
+
+        // few threads and a bounded queue: refreshes must not take the pool connections requests need
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, props.refreshThreads());
+        this.refresher = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1024), r -> {
+                    Thread t = new Thread(r, "auth-cache-refresh-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "apiClients");
+
+        this.dbLookups = Timer.builder("keygate.db.lookup.duration")
+                .description("Client lookup latency on cache misses")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(meterRegistry);
+
+        this.coalesced = Counter.builder("keygate.auth.cache.coalesced")
+                .description("Cache misses that waited for another request's lookup of the same key")
+                .register(meterRegistry);
+        this.refreshed = refreshCounter(meterRegistry, "reloaded");
+        this.refreshFailed = refreshCounter(meterRegistry, "failed");
+        this.refreshDropped = refreshCounter(meterRegistry, "dropped");
+    }
+
+    private static Counter refreshCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("keygate.auth.cache.refreshes")
+                .description("Background reloads of entries close to expiry")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public Optional<ApiPrincipal> find(ApiKeyHash apiKeyHash) {
+        Entry entry = cache.getIfPresent(apiKeyHash);
+        ApiPrincipal principal;
+        if (entry == null) {
+            principal = loadOnce(apiKeyHash);
+        } else {
+            principal = entry.principal;
+            if (entry.refreshDue()) {
+                refreshInBackground(apiKeyHash, entry);
+            }
+        }
+        return principal == MISSING ? Optional.empty() : Optional.of(principal);
+    }
+
+    // true if find() would be answered from memory; doesn't count towards hit/miss stats
+    public boolean isCached(ApiKeyHash apiKeyHash) {
+        return cache.asMap().containsKey(apiKeyHash);
+    }
+
+    // the first miss queries Postgres, misses for the same key meanwhile wait for its result
+    private ApiPrincipal loadOnce(ApiKeyHash apiKeyHash) {
+        CompletableFuture<ApiPrincipal> mine = new CompletableFuture<>();
+        CompletableFuture<ApiPrincipal> inFlight = loads.putIfAbsent(apiKeyHash, mine);
+        if (inFlight != null) {
+            coalesced.increment();
+            return await(inFlight);
+        }
+        try {
+            // another lookup may have finished between our miss and taking the slot
+            // (asMap().get doesn't count as a second miss)
+            Entry entry = cache.asMap().get(apiKeyHash);
+            ApiPrincipal principal = (entry != null) ? entry.principal : load(apiKeyHash);
+            if (entry == null) {
+                store(apiKeyHash, mine, principal);
+            }
+            mine.complete(principal);
+            return principal;
+        } catch (Throwable e) {
+            // Errors too (e.g. a linkage error from the driver): the waiters would hang otherwise
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(apiKeyHash, mine);
+        }
+    }
+
+    private void refreshInBackground(ApiKeyHash apiKeyHash, Entry entry) {
+        CompletableFuture<ApiPrincipal> mine = new CompletableFuture<>();
+        if (loads.putIfAbsent(apiKeyHash, mine) != null) {
+            return;
+        }
+        // once per entry, the reload puts a new one
+        entry.refreshAtNanos = NEVER;
+        try {
+            refresher.execute(() -> {
+                try {
+                    ApiPrincipal principal = load(apiKeyHash);
+                    store(apiKeyHash, mine, principal);
+                    mine.complete(principal);
+                    refreshed.increment();
+                } catch (RuntimeException e) {
+                    // the current entry stays until it expires, then a request loads it again
+                    mine.completeExceptionally(e);
+                    refreshFailed.increment();
+                    log.debug("Background reload of a cached client failed", e);
+                } catch (Error e) {
+                    mine.completeExceptionally(e);
+                    refreshFailed.increment();
+                    throw e;
+                } finally {
+                    loads.remove(apiKeyHash, mine);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // refresh queue full: this entry just expires as usual
+            mine.complete(entry.principal);
+            loads.remove(apiKeyHash, mine);
+            refreshDropped.increment();
+        }
+    }
+
+    // skipped when the key was invalidated during the lookup, which may have read the row before the change
+    private void store(ApiKeyHash apiKeyHash, CompletableFuture<ApiPrincipal> load, ApiPrincipal principal) {
+        loads.computeIfPresent(apiKeyHash, (key, current) -> {
+            if (current == load) {
+                cache.put(key, entry(principal, ttlNanos));
+            }
+            return current;
+        });
+    }
+
+    private static ApiPrincipal await(CompletableFuture<ApiPrincipal> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Entry entry(ApiPrincipal principal, long ttlNanos) {
+        // unknown keys aren't worth reloading, and refresh-ahead >= 1 turns it off
+        if (principal == MISSING || refreshAhead <= 0 || refreshAhead >= 1) {
+            return new Entry(principal, NEVER);
+        }
+        return new Entry(principal, System.nanoTime() + (long) (ttlNanos * refreshAhead));
+    }
+
+    private ApiPrincipal load(ApiKeyHash apiKeyHash) {
+        long start = System.nanoTime();
+        try {
+            String hex = apiKeyHash.toHex();
+            return repo.findByApiKeyHashOrPreviousApiKeyHash(hex, hex)
+                    .map(client -> toPrincipal(client, hex))
+                    .orElse(MISSING);
+        } finally {
+            dbLookups.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Puts a client loaded in bulk (warm-up, delta refresh). {@code ttl} replaces the usual
+     * TTL when given. A rotated-out key still in its grace period is cached too.
+     */
+    public void put(ApiClient client, Duration ttl) {
+        put(client.getApiKeyHash(), client, ttl);
+        if (client.hasPreviousKey(Instant.now())) {
+            put(client.getPreviousApiKeyHash(), client, ttl);
+        }
+    }
+
+    private void put(String hex, ApiClient client, Duration ttl) {
+        ApiKeyHash key = ApiKeyHash.fromHex(hex);
+        ApiPrincipal principal = toPrincipal(client, hex);
+        if (ttl == null) {
+            cache.put(key, entry(principal, ttlNanos));
+        } else {
+            cache.policy().expireVariably().orElseThrow().put(key, entry(principal, ttl.toNanos()), ttl);
+        }
+    }
+
+    public void invalidate(String apiKeyHash) {
+        ApiKeyHash key = ApiKeyHash.fromHex(apiKeyHash);
+        // a lookup still running may have read the old row, it won't be cached (see store)
+        loads.remove(key);
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        loads.clear();
+        cache.invalidateAll();
+    }
+
+    // the principal for one of the client's keys; rate limits stay keyed by the current hash,
+    // so the old and new key of a rotation share them
+    static ApiPrincipal toPrincipal(ApiClient client, String keyHash) {
+        if (client.isRevoked()) {
+            return MISSING;
+        }
+        Instant expiresAt = client.getExpiresAt();
+        if (keyHash.equals(client.getPreviousApiKeyHash())) {
+            Instant graceEnd = client.getPreviousKeyExpiresAt();
+            if (graceEnd != null && (expiresAt == null || graceEnd.isBefore(expiresAt))) {
+                expiresAt = graceEnd;
+            }
+        }
+        return new ApiPrincipal(
+                client.getId(),
+                client.getName(),
+                client.getApiKeyHash(),
+                new RateLimitPolicy(
+                        client.getRateLimitAlgorithm(),
+                        client.getRequestsPerMinute(),
+                        client.effectiveBurst(),
+                        client.getFailMode(),
+                        client.quotas()
+                ),
+                expiresAt
+        );
+    }
+
+    // a cached principal, and from when on a hit should reload it in the background
+    private static final class Entry {
+        final ApiPrincipal principal;
+        volatile long refreshAtNanos;
+
+        Entry(ApiPrincipal principal, long refreshAtNanos) {
+            this.principal = principal;
+            this.refreshAtNanos = refreshAtNanos;
+        }
+
+        boolean refreshDue() {
+            long at = refreshAtNanos;
+            return at != NEVER && System.nanoTime() - at >= 0;
+        }
+    }
+
+    private record HitOrMissExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<ApiKeyHash, Entry> {
+
+        @Override
+        public long expireAfterCreate(ApiKeyHash key, Entry value, long currentTime) {
+            return value.principal == MISSING ? negativeTtlNanos : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(ApiKeyHash key, Entry value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ApiKeyHash key, Entry value, long currentTime, long currentDuration) {
+            // reads don't extend the lifetime, otherwise hot keys would never be refreshed
+            return currentDuration;
+        }
+    }
+}
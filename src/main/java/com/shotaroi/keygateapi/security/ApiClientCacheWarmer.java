@@ -0,0 +1,169 @@
+package com.shotaroi.keygateapi.security;
+
+import com.shotaroi.keygateapi.api.ApiClient;
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills {@link ApiClientCache} so a fresh node doesn't send every client's first request to
+ * Postgres. Runs as an ApplicationRunner, so the node only reports ready
+ * (/actuator/health/readiness) once the preload is done.
+ *
+ * <p>The id range is split into {@code parallelism} slices. Each slice is read in keyset pages
+ * of {@code pageSize}, so only one page per slice is in memory at a time. The delta refresh
+ * then polls for rows whose updatedAt moved past the last one it saw.
+ */
+@Component
+public class ApiClientCacheWarmer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiClientCacheWarmer.class);
+
+    // updatedAt is stamped by whichever node saved the row, so re-read a little to cover clock skew
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(5);
+
+    private final ApiClientRepository repo;
+    private final ApiClientCache cache;
+    private final CacheWarmupProperties props;
+
+    // newest updatedAt applied to the cache so far
+    private volatile Instant watermark;
+
+    public ApiClientCacheWarmer(ApiClientRepository repo, ApiClientCache cache, CacheWarmupProperties props) {
+        this.repo = repo;
+        this.cache = cache;
+        this.props = props;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // before loading, so rows changed while we load are picked up by the first refresh
+        watermark = Instant.now();
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            preload();
+        } catch (RuntimeException e) {
+            // a cold cache still works, it just costs DB lookups
+            log.warn("Auth cache preload failed, starting with a cold cache", e);
+        }
+    }
+
+    void preload() {
+        Long first = repo.findMinId();
+        Long last = repo.findMaxId();
+        if (first == null || last == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int slices = Math.max(1, props.parallelism());
+        long step = Math.max(1, (last - first + slices) / slices);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(slices, r -> {
+            Thread t = new Thread(r, "auth-cache-warmup-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        int loaded = 0;
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(slices);
+            for (long afterId = first - 1; afterId < last; afterId += step) {
+                long from = afterId;
+                long to = Math.min(last, afterId + step);
+                futures.add(pool.submit(() -> loadRange(from, to)));
+            }
+            for (Future<Integer> future : futures) {
+                loaded += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Preload slice failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        log.info("Preloaded {} clients into the auth cache in {} ms", loaded, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private int loadRange(long afterId, long lastId) {
+        Duration ttl = warmTtl();
+        int loaded = 0;
+        while (true) {
+            List<ApiClient> page = repo.findIdRange(afterId, lastId, Limit.of(props.pageSize()));
+            for (ApiClient client : page) {
+                cache.put(client, ttl);
+            }
+            loaded += page.size();
+            if (page.size() < props.pageSize()) {
+                return loaded;
+            }
+            afterId = page.getLast().getId();
+        }
+    }
+
+    @Scheduled(
+            fixedDelayString = "${keygate.auth-cache.warmup.refresh-interval-ms:30000}",
+            initialDelayString = "${keygate.auth-cache.warmup.refresh-interval-ms:30000}"
+    )
+    public void refresh() {
+        Instant seen = watermark;
+        if (!props.refreshEnabled() || seen == null) {
+            return;
+        }
+
+        Duration ttl = warmTtl();
+        Instant since = seen.minus(CLOCK_SKEW);
+        long afterId = 0;
+        Instant newest = seen;
+        int refreshed = 0;
+        try {
+            while (true) {
+                List<ApiClient> page = repo.findUpdatedSince(since, afterId, Limit.of(props.pageSize()));
+                for (ApiClient client : page) {
+                    cache.put(client, ttl);
+                    if (client.getUpdatedAt().isAfter(newest)) {
+                        newest = client.getUpdatedAt();
+                    }
+                }
+                refreshed += page.size();
+                if (page.size() < props.pageSize()) {
+                    break;
+                }
+                ApiClient lastRow = page.getLast();
+                since = lastRow.getUpdatedAt();
+                afterId = lastRow.getId();
+            }
+        } catch (RuntimeException e) {
+            // keep the watermark, the next run picks up from the same place
+            log.warn("Auth cache delta refresh failed", e);
+            return;
+        }
+
+        watermark = newest;
+        log.debug("Refreshed {} changed clients in the auth cache", refreshed);
+    }
+
+    private Duration warmTtl() {
+        return props.refreshEnabled() ? props.warmTtl() : null;
+    }
+}
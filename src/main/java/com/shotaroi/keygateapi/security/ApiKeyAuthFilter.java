@@ -1,39 +1,69 @@
 package com.shotaroi.keygateapi.security;
 
-import com.shotaroi.keygateapi.api.ApiClient;
-import com.shotaroi.keygateapi.api.ApiClientRepository;
-import com.shotaroi.keygateapi.errors.ApiError;
+import com.shotaroi.keygateapi.errors.ApiErrorWriter;
+import com.shotaroi.keygateapi.metrics.AuthMetrics;
+import com.shotaroi.keygateapi.metrics.AuthMetrics.Outcome;
+import com.shotaroi.keygateapi.profiling.FilterPhase;
+import com.shotaroi.keygateapi.profiling.FilterPhaseEvent;
+import com.shotaroi.keygateapi.profiling.FilterProfiler;
+import com.shotaroi.keygateapi.ratelimit.QuotaWindow;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
 import com.shotaroi.keygateapi.ratelimit.RedisRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.RouteCosts;
 import com.shotaroi.keygateapi.trace.RequestIdFilter;
+import com.shotaroi.keygateapi.usage.UsageRecorder;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import tools.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
-    private final ApiClientRepository repo;
+    private final ApiClientCache clientCache;
+    private final RevokedKeys revokedKeys;
     private final ApiKeyHasher hasher;
     private final RedisRateLimiter rateLimiter;
-    private final ObjectMapper objectMapper;
+    private final RouteCosts routeCosts;
+    private final ApiErrorWriter errorWriter;
+    private final AuthMetrics metrics;
+    private final UsageRecorder usageRecorder;
+    private final FilterProfiler profiler;
 
-    public ApiKeyAuthFilter(ApiClientRepository repo, ApiKeyHasher hasher, RedisRateLimiter rateLimiter, ObjectMapper objectMapper) {
-        this.repo = repo;
+    public ApiKeyAuthFilter(ApiClientCache clientCache,
+                            RevokedKeys revokedKeys,
+                            ApiKeyHasher hasher,
+                            RedisRateLimiter rateLimiter,
+                            RouteCosts routeCosts,
+                            ApiErrorWriter errorWriter,
+                            AuthMetrics metrics,
+                            UsageRecorder usageRecorder,
+                            FilterProfiler profiler) {
+        this.clientCache = clientCache;
+        this.revokedKeys = revokedKeys;
         this.hasher = hasher;
         this.rateLimiter = rateLimiter;
-        this.objectMapper = objectMapper;
+        this.routeCosts = routeCosts;
+        this.errorWriter = errorWriter;
+        this.metrics = metrics;
+        this.usageRecorder = usageRecorder;
+        this.profiler = profiler;
     }
 
     @Override
@@ -51,6 +81,7 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             return;
         }
 
+        long start = System.nanoTime();
 
         String rawKey = request.getHeader("X-API-KEY");
         if (rawKey == null || rawKey.isBlank()) {
@@ -61,13 +92,37 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
                     "unauthorized",
                     "Missing API key",
                     Map.of("header", "X-API-KEY")
-            );            return;
+            );
+            metrics.record(Outcome.MISSING, null, System.nanoTime() - start);
+            return;
+        }
+
+        // set by RequestIdFilter, goes into the phase events
+        String requestId = (String) request.getAttribute(RequestIdFilter.ATTR);
+
+        FilterPhaseEvent phase = profiler.begin();
+        ApiKeyHash hash = hasher.hash(rawKey);
+        profiler.end(phase, FilterPhase.HASH, requestId);
+
+        // in memory, ahead of the cache: a cached client can be older than its revocation
+        if (revokedKeys.isRevoked(hash)) {
+            writeApiError(
+                    request,
+                    response,
+                    HttpStatus.UNAUTHORIZED.value(),
+                    "unauthorized",
+                    "API key has been revoked",
+                    Map.of()
+            );
+            metrics.record(Outcome.REVOKED, null, System.nanoTime() - start);
+            return;
         }
 
-        String hash = hasher.sha256(rawKey);
-        ApiClient client = repo.findByApiKeyHash(hash).orElse(null);
+        phase = profiler.begin();
+        ApiPrincipal principal = clientCache.find(hash).orElse(null);
+        profiler.end(phase, FilterPhase.LOOKUP, requestId);
 
-        if (client == null) {
+        if (principal == null) {
             writeApiError(
                     request,
                     response,
@@ -75,52 +130,94 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
                     "unauthorized",
                     "Invalid API key",
                     Map.of()
-            );            return;
+            );
+            metrics.record(Outcome.INVALID, null, System.nanoTime() - start);
+            return;
         }
 
-        boolean allowed = rateLimiter.allowRequest(client.getApiKeyHash(), client.getRequestsPerMinute());
+        if (principal.isExpired(Instant.now())) {
+            writeApiError(
+                    request,
+                    response,
+                    HttpStatus.UNAUTHORIZED.value(),
+                    "unauthorized",
+                    "API key has expired",
+                    Map.of("expiredAt", principal.expiresAt().toString())
+            );
+            metrics.record(Outcome.EXPIRED, principal.name(), System.nanoTime() - start);
+            return;
+        }
 
-        long resetSeconds = rateLimiter.secondsUntilReset();
-        int limit = client.getRequestsPerMinute();
+        // expensive routes use up more of the client's limits than cheap ones
+        int cost = routeCosts.costOf(request.getMethod(), path);
 
-        // Since allowRequest() incremented and we exceeded, used will be > limit
-        long used = rateLimiter.currentUsed(client.getApiKeyHash());
-        long remaining = 0;
-        response.setHeader("X-RateLimit-Limit", String.valueOf(limit));
-        response.setHeader("X-RateLimit-Remaining", String.valueOf(remaining));
-        response.setHeader("X-RateLimit-Reset", String.valueOf(resetSeconds));
+        // one Redis round trip gives us the decision and every header value
+        phase = profiler.begin();
+        RateLimitResult result = rateLimiter.check(principal.apiKeyHash(), principal.rateLimit(), cost);
+        profiler.end(phase, FilterPhase.LIMITER, requestId);
 
-        if (!allowed) {
-            response.setHeader("Retry-After", String.valueOf(resetSeconds));
-            response.setHeader("X-RateLimit-Limit", String.valueOf(limit));
-            response.setHeader("X-RateLimit-Remaining", "0");
-            response.setHeader("X-RateLimit-Reset", String.valueOf(resetSeconds));
+        if (result.unavailable()) {
+            // Redis is down and this client is configured to fail closed
+            response.setHeader("Retry-After", String.valueOf(result.resetSeconds()));
             writeApiError(
                     request,
                     response,
-                    HttpStatus.TOO_MANY_REQUESTS.value(),
-                    "rate_limited",
-                    "Too many requests",
-                    Map.of(
-                            "limitPerMinute", limit,
-                            "usedThisMinute", used,
-                            "resetsInSeconds", resetSeconds
-                    )
+                    HttpStatus.SERVICE_UNAVAILABLE.value(),
+                    "rate_limiter_unavailable",
+                    "Rate limiting is temporarily unavailable",
+                    Map.of("retryAfterSeconds", result.resetSeconds())
             );
+            metrics.record(Outcome.UNAVAILABLE, principal.name(), System.nanoTime() - start);
             return;
         }
 
+        response.setHeader("X-RateLimit-Limit", String.valueOf(result.limit()));
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(result.remaining()));
+        response.setHeader("X-RateLimit-Reset", String.valueOf(result.resetSeconds()));
+        if (!principal.rateLimit().quotas().isEmpty()) {
+            // which of the client's limits the numbers above are for
+            response.setHeader("X-RateLimit-Window", result.window().label());
+        }
+        if (!routeCosts.isEmpty()) {
+            // Limit and Remaining are in cost units, this is what the request was charged
+            response.setHeader("X-RateLimit-Cost", String.valueOf(cost));
+        }
+
+        if (!result.allowed()) {
+            response.setHeader("Retry-After", String.valueOf(result.resetSeconds()));
+            writeRateLimited(request, response, principal, result, cost);
+            metrics.record(Outcome.REJECTED, principal.name(), System.nanoTime() - start);
+            return;
+        }
 
-        var principal = new ApiPrincipal(
-                client.getName(),
-                client.getApiKeyHash(),
-                client.getRequestsPerMinute()
-        );
 
         var auth = new UsernamePasswordAuthenticationToken(principal, null, List.of());
         SecurityContextHolder.getContext().setAuthentication(auth);
 
-        filterChain.doFilter(request, response);
+        // only the gateway's own overhead, not the downstream handler
+        metrics.record(Outcome.ALLOWED, principal.name(), System.nanoTime() - start);
+        // in-memory increment, flushed to Postgres in the background
+        usageRecorder.record(principal.clientId());
+
+        String lease = result.concurrencyLease();
+        if (lease == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // the concurrency slot is held until the response is done, also when the handler throws
+        boolean releaseLater = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new LeaseRelease(rateLimiter, principal.apiKeyHash(), lease));
+                releaseLater = true;
+            }
+        } finally {
+            if (!releaseLater) {
+                rateLimiter.release(principal.apiKeyHash(), lease);
+            }
+        }
     }
 
     private long secondsUntilNextMinute() {
@@ -130,6 +227,46 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
         return (left == 0) ? 60 : left;
     }
 
+    // the hot path during a flood, details in a fixed order
+    private void writeRateLimited(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  ApiPrincipal principal,
+                                  RateLimitResult result,
+                                  int cost) throws IOException {
+        writeApiError(
+                request,
+                response,
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                "rate_limited",
+                rateLimitedMessage(result),
+                rateLimitedDetails(principal, result, cost)
+        );
+    }
+
+    // shared with the reactive filter
+    static String rateLimitedMessage(RateLimitResult result) {
+        return result.window() == QuotaWindow.CONCURRENT ? "Too many concurrent requests" : "Too many requests";
+    }
+
+    static Map<String, Object> rateLimitedDetails(ApiPrincipal principal, RateLimitResult result, int cost) {
+        Map<String, Object> details = new LinkedHashMap<>(8);
+        details.put("limitPerMinute", principal.requestsPerMinute());
+        if (result.window() == QuotaWindow.MINUTE) {
+            details.put("usedThisMinute", result.used());
+        } else {
+            // another of the client's limits rejected the request
+            details.put("window", result.window().label());
+            details.put("limit", result.limit());
+            details.put("used", result.used());
+        }
+        if (cost != 1) {
+            details.put("cost", cost);
+        }
+        details.put("resetsInSeconds", result.resetSeconds());
+        return details;
+    }
+
+    // streamed from pre-encoded templates, no databinding (see ApiErrorWriter)
     private void writeApiError(HttpServletRequest request,
                                HttpServletResponse response,
                                int status,
@@ -137,30 +274,56 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
                                String message,
                                Map<String, Object> details) throws IOException {
         String requestId = (String) request.getAttribute(RequestIdFilter.ATTR);
-
-        Map<String, Object> merged = new java.util.HashMap<>(details);
         if (requestId != null) {
-            merged.put("requestId", requestId);
             // ensure header is always present even if something weird happens
             response.setHeader(RequestIdFilter.HEADER, requestId);
         }
 
-        ApiError body = new ApiError(
-                Instant.now(),
-                status,
-                error,
-                message,
-                request.getRequestURI(),
-                merged
-        );
-
+        FilterPhaseEvent phase = profiler.begin();
         response.resetBuffer();
-        response.setStatus(status);
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
+        errorWriter.write(response, status, error, message, request.getRequestURI(), details, requestId);
+        profiler.end(phase, FilterPhase.ERROR_WRITE, requestId);
+    }
+
+    // releases the concurrency slot of an async request once it completes, times out or fails
+    private static final class LeaseRelease implements AsyncListener {
+        private final RedisRateLimiter rateLimiter;
+        private final String apiKeyHash;
+        private final String lease;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        LeaseRelease(RedisRateLimiter rateLimiter, String apiKeyHash, String lease) {
+            this.rateLimiter = rateLimiter;
+            this.apiKeyHash = apiKeyHash;
+            this.lease = lease;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
 
-        objectMapper.writeValue(response.getWriter(), body);
-        response.flushBuffer();
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // async restarted on the same request, keep listening
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                rateLimiter.release(apiKeyHash, lease);
+            }
+        }
     }
 
 
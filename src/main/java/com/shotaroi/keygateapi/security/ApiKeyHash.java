@@ -0,0 +1,53 @@
+package com.shotaroi.keygateapi.security;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.HexFormat;
+
+/**
+ * A 32-byte key hash held as four longs: no array, cheap equals/hashCode,
+ * and 48 bytes on the heap instead of a 64-char hex String.
+ */
+public record ApiKeyHash(long w0, long w1, long w2, long w3) {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final HexFormat HEX = HexFormat.of();
+
+    static ApiKeyHash of(byte[] digest) {
+        return new ApiKeyHash(
+                (long) LONGS.get(digest, 0),
+                (long) LONGS.get(digest, 8),
+                (long) LONGS.get(digest, 16),
+                (long) LONGS.get(digest, 24)
+        );
+    }
+
+    public static ApiKeyHash fromHex(String hex) {
+        if (hex.length() != 64) {
+            throw new IllegalArgumentException("Expected 64 hex chars, got " + hex.length());
+        }
+        return new ApiKeyHash(
+                HexFormat.fromHexDigitsToLong(hex, 0, 16),
+                HexFormat.fromHexDigitsToLong(hex, 16, 32),
+                HexFormat.fromHexDigitsToLong(hex, 32, 48),
+                HexFormat.fromHexDigitsToLong(hex, 48, 64)
+        );
+    }
+
+    // same format as the api_key_hash column
+    public String toHex() {
+        return HEX.toHexDigits(w0) + HEX.toHexDigits(w1) + HEX.toHexDigits(w2) + HEX.toHexDigits(w3);
+    }
+
+    @Override
+    public int hashCode() {
+        // the words are already uniformly distributed
+        return Long.hashCode(w0);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
@@ -1,21 +1,171 @@
 package com.shotaroi.keygateapi.security;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.util.HexFormat;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Hashes raw API keys. Digest/MAC instances and scratch buffers are reused per thread,
+ * so {@link #hash(String)} only allocates the returned {@link ApiKeyHash}.
+ *
+ * <p>Plain SHA-256 by default; HMAC-SHA256 with a server-side pepper when
+ * {@code keygate.key-hash.pepper} is set.
+ */
 @Component
 public class ApiKeyHasher {
 
+    private static final int DIGEST_LENGTH = 32;
+    // longer keys (or non-ASCII ones) take the slow path through getBytes
+    private static final int MAX_INLINE_KEY_LENGTH = 256;
+    private static final int MAX_POOLED = 256;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final byte[] pepper;
+
+    private final ThreadLocal<State> perThread = ThreadLocal.withInitial(this::newState);
+    // virtual threads are one per request, so thread locals wouldn't be reused; pool instead
+    private final Queue<State> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public ApiKeyHasher() {
+        this(new KeyHashProperties(""));
+    }
+
+    @Autowired
+    public ApiKeyHasher(KeyHashProperties props) {
+        this.pepper = props.pepper().isEmpty() ? null : props.pepper().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hex form, as stored in the api_key_hash column.
+     */
     public String sha256(String raw) {
+        State state = acquire();
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(raw.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(digest);
-        } catch (Exception e) {
-            throw new RuntimeException("Hash failed", e);
+            state.hash(raw);
+            char[] hex = state.hex;
+            byte[] out = state.output;
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                hex[i * 2] = HEX_DIGITS[(out[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX_DIGITS[out[i] & 0xF];
+            }
+            return new String(hex);
+        } finally {
+            release(state);
+        }
+    }
+
+    /**
+     * Compact form for cache lookups on the request path.
+     */
+    public ApiKeyHash hash(String raw) {
+        State state = acquire();
+        try {
+            state.hash(raw);
+            return ApiKeyHash.of(state.output);
+        } finally {
+            release(state);
+        }
+    }
+
+    private State acquire() {
+        if (!Thread.currentThread().isVirtual()) {
+            return perThread.get();
+        }
+        State state = pool.poll();
+        if (state == null) {
+            return newState();
+        }
+        pooled.decrementAndGet();
+        return state;
+    }
+
+    private void release(State state) {
+        if (!Thread.currentThread().isVirtual()) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(state);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    private State newState() {
+        try {
+            if (pepper == null) {
+                return new State(MessageDigest.getInstance("SHA-256"), null);
+            }
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(pepper, "HmacSHA256"));
+            return new State(null, mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Hash algorithm not available", e);
+        }
+    }
+
+    private static final class State {
+        final MessageDigest digest;
+        final Mac mac;
+        final byte[] input = new byte[MAX_INLINE_KEY_LENGTH];
+        final byte[] output = new byte[DIGEST_LENGTH];
+        final char[] hex = new char[DIGEST_LENGTH * 2];
+
+        State(MessageDigest digest, Mac mac) {
+            this.digest = digest;
+            this.mac = mac;
+        }
+
+        // leaves the result in `output`
+        void hash(String raw) {
+            int length = encodeAscii(raw);
+            try {
+                if (length >= 0) {
+                    update(input, length);
+                } else {
+                    byte[] bytes = raw.getBytes(StandardCharsets.UTF_8);
+                    update(bytes, bytes.length);
+                }
+                if (mac != null) {
+                    mac.doFinal(output, 0);
+                } else {
+                    digest.digest(output, 0, DIGEST_LENGTH);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Hash failed", e);
+            }
+        }
+
+        private void update(byte[] bytes, int length) {
+            if (mac != null) {
+                mac.update(bytes, 0, length);
+            } else {
+                digest.update(bytes, 0, length);
+            }
+        }
+
+        // UTF-8 of an ASCII string is the chars themselves; -1 if we can't take the fast path
+        private int encodeAscii(String raw) {
+            int length = raw.length();
+            if (length > MAX_INLINE_KEY_LENGTH) {
+                return -1;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = raw.charAt(i);
+                if (c >= 0x80) {
+                    return -1;
+                }
+                input[i] = (byte) c;
+            }
+            return length;
         }
     }
 }
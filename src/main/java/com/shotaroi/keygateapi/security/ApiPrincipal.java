@@ -1,7 +1,22 @@
 package com.shotaroi.keygateapi.security;
 
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+
+import java.time.Instant;
+
 public record ApiPrincipal(
+        Long clientId,
         String name,
         String apiKeyHash,
-        int requestsPerMinute
-) {}
+        RateLimitPolicy rateLimit,
+        Instant expiresAt // of the key this principal was found by, null = never
+) {
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+
+    public int requestsPerMinute() {
+        return rateLimit.requestsPerMinute();
+    }
+}
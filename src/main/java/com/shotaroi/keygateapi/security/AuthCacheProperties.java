@@ -0,0 +1,19 @@
+package com.shotaroi.keygateapi.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "keygate.auth-cache")
+public record AuthCacheProperties(
+        // upper bound on cached hashes (valid + invalid together)
+        @DefaultValue("100000") long maxSize,
+        // how long a resolved client is trusted before going back to the DB
+        @DefaultValue("60s") Duration ttl,
+        // invalid keys are cached too, but only briefly
+        @DefaultValue("10s") Duration negativeTtl,
+        // share of the TTL after which a hit reloads the client in the background (0 or 1 = off)
+        @DefaultValue("0.8") double refreshAhead,
+        @DefaultValue("2") int refreshThreads
+) {}
@@ -0,0 +1,56 @@
+package com.shotaroi.keygateapi.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free membership test for key hashes. Never misses a key that was added;
+ * answers "maybe" for others at about the rate it was sized for, so callers confirm hits
+ * against an exact set.
+ */
+final class BloomFilter {
+
+    private static final int MAX_BITS = 1 << 30;
+
+    private final AtomicLongArray words;
+    private final int mask;
+    private final int hashes;
+
+    BloomFilter(int expectedKeys, double falsePositiveRate) {
+        int n = Math.max(1, expectedKeys);
+        double optimalBits = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        int bits = 64;
+        while (bits < optimalBits && bits < MAX_BITS) {
+            bits <<= 1;
+        }
+        this.words = new AtomicLongArray(bits >>> 6);
+        this.mask = bits - 1;
+        this.hashes = (int) Math.max(1, Math.min(16, Math.round((double) bits / n * Math.log(2))));
+    }
+
+    void add(ApiKeyHash key) {
+        long h1 = key.w1();
+        long h2 = key.w2() | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (int) ((h1 + i * h2) & mask);
+            words.accumulateAndGet(bit >>> 6, 1L << bit, BloomFilter::or);
+        }
+    }
+
+    boolean mightContain(ApiKeyHash key) {
+        // the hash words are already uniformly distributed, used as is for double hashing
+        // (w0 drives hashCode, so the exact set behind this sees an independent hash)
+        long h1 = key.w1();
+        long h2 = key.w2() | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (int) ((h1 + i * h2) & mask);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long or(long a, long b) {
+        return a | b;
+    }
+}
@@ -0,0 +1,20 @@
+package com.shotaroi.keygateapi.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "keygate.auth-cache.warmup")
+public record CacheWarmupProperties(
+        // load every client into the cache before the node reports ready
+        @DefaultValue("false") boolean enabled,
+        // rows per query; memory held at once is about parallelism * pageSize clients
+        @DefaultValue("1000") int pageSize,
+        // id ranges loaded at the same time (each one holds a DB connection while loading)
+        @DefaultValue("4") int parallelism,
+        // poll for clients changed since the last poll (interval: refresh-interval-ms)
+        @DefaultValue("false") boolean refreshEnabled,
+        // with the refresh on, bulk-loaded entries stay this long since changes reach them anyway
+        @DefaultValue("1h") Duration warmTtl
+) {}
@@ -0,0 +1,159 @@
+package com.shotaroi.keygateapi.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells every node's {@link ApiClientCache} when a client changed (created, limits edited,
+ * key revoked), over Redis pub/sub on the connection the app already has.
+ *
+ * <p>A message is just {@code "<version> <apiKeyHash>"}. Each change bumps a version counter
+ * in Redis and is kept in a capped changelog. Pub/sub drops messages while a subscriber
+ * is disconnected. So a node that sees a gap in the versions, or finds the counter ahead
+ * of it on its periodic check, replays the changelog. If it is further behind than the
+ * changelog goes, it clears its whole cache.
+ */
+@Component
+public class ClientChangeBus implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientChangeBus.class);
+
+    static final String CHANNEL = "keygate:clients:changes";
+    private static final String VERSION_KEY = "keygate:clients:version";
+    private static final String CHANGELOG_KEY = "keygate:clients:changelog";
+
+    private static final RedisScript<Long> PUBLISH =
+            RedisScript.of(new ClassPathResource("redis/client_change.lua"), Long.class);
+
+    private final StringRedisTemplate redis;
+    private final ApiClientCache cache;
+    private final InvalidationProperties props;
+
+    // newest version applied here; read at startup, -1 if Redis couldn't be reached then
+    private final AtomicLong appliedVersion = new AtomicLong(-1);
+
+    public ClientChangeBus(StringRedisTemplate redis,
+                           ApiClientCache cache,
+                           InvalidationProperties props,
+                           RedisMessageListenerContainer listenerContainer) {
+        this.redis = redis;
+        this.cache = cache;
+        this.props = props;
+        if (props.enabled()) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+            // before any message can arrive, so a gap in the first ones is replayed like any other
+            try {
+                resync();
+            } catch (RuntimeException e) {
+                log.warn("Could not read the client change version, taking it from the first check", e);
+            }
+        }
+    }
+
+    /**
+     * Drops the client from the cache on every node. The local cache is invalidated right away,
+     * even if Redis can't be reached.
+     */
+    public void publish(String apiKeyHash) {
+        cache.invalidate(apiKeyHash);
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            redis.execute(
+                    PUBLISH,
+                    List.of(VERSION_KEY, CHANGELOG_KEY),
+                    CHANNEL,
+                    apiKeyHash,
+                    String.valueOf(props.changelogSize())
+            );
+        } catch (RuntimeException e) {
+            // other nodes catch up when their cache entry expires
+            log.warn("Could not publish client change, other nodes see it after their cache TTL", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int space = body.indexOf(' ');
+        if (space < 0) {
+            return;
+        }
+        long version = Long.parseLong(body, 0, space, 10);
+        cache.invalidate(body.substring(space + 1));
+
+        long applied = appliedVersion.get();
+        if (version == applied + 1 && appliedVersion.compareAndSet(applied, version)) {
+            return;
+        }
+        if (version > applied) {
+            // something in between never arrived (or we don't know where we are yet)
+            resync();
+        }
+    }
+
+    // catches messages lost while the subscription was reconnecting
+    @Scheduled(fixedDelayString = "${keygate.auth-cache.invalidation.resync-interval-ms:5000}")
+    public void checkVersion() {
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            resync();
+        } catch (RuntimeException e) {
+            log.debug("Client change version check failed", e);
+        }
+    }
+
+    synchronized void resync() {
+        String stored = redis.opsForValue().get(VERSION_KEY);
+        long current = (stored != null) ? Long.parseLong(stored) : 0;
+        long applied = appliedVersion.get();
+
+        if (applied < 0) {
+            // first look: the cache is still empty or was filled after these changes, nothing to replay
+            appliedVersion.compareAndSet(applied, current);
+            return;
+        }
+        if (current <= applied) {
+            return;
+        }
+
+        Set<TypedTuple<String>> changes = redis.opsForZSet().rangeByScoreWithScores(CHANGELOG_KEY, applied + 1, current);
+        long oldest = Long.MAX_VALUE;
+        if (changes != null) {
+            for (TypedTuple<String> change : changes) {
+                oldest = Math.min(oldest, change.getScore().longValue());
+            }
+        }
+
+        if (oldest > applied + 1) {
+            // the changelog was trimmed past what we missed
+            log.info("Missed client changes {}..{}, clearing the auth cache", applied + 1, current);
+            cache.invalidateAll();
+        } else {
+            for (TypedTuple<String> change : changes) {
+                String member = change.getValue();
+                cache.invalidate(member.substring(member.indexOf(':') + 1));
+            }
+            log.debug("Replayed {} missed client changes", changes.size());
+        }
+        appliedVersion.accumulateAndGet(current, Math::max);
+    }
+}
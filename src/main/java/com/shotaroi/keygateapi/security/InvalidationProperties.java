@@ -0,0 +1,12 @@
+package com.shotaroi.keygateapi.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "keygate.auth-cache.invalidation")
+public record InvalidationProperties(
+        // publish client changes to the other nodes and apply theirs
+        @DefaultValue("true") boolean enabled,
+        // changes kept for nodes that missed messages; further behind than this clears the whole cache
+        @DefaultValue("10000") int changelogSize
+) {}
@@ -0,0 +1,11 @@
+package com.shotaroi.keygateapi.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "keygate.key-hash")
+public record KeyHashProperties(
+        // server-side secret; when set, keys are hashed with HMAC-SHA256 instead of plain SHA-256.
+        // Changing it invalidates every stored key hash, so set it before issuing keys.
+        @DefaultValue("") String pepper
+) {}
@@ -0,0 +1,227 @@
+package com.shotaroi.keygateapi.security;
+
+import com.shotaroi.keygateapi.errors.ApiErrorWriter;
+import com.shotaroi.keygateapi.metrics.AuthMetrics;
+import com.shotaroi.keygateapi.metrics.AuthMetrics.Outcome;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.ReactiveRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.RouteCosts;
+import com.shotaroi.keygateapi.trace.RequestIdFilter;
+import com.shotaroi.keygateapi.usage.UsageRecorder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@link ApiKeyAuthFilter} for the reactive stack: same checks, headers and error bodies.
+ * Cache hits and the limiter call never block; a cache miss runs the JPA lookup on
+ * boundedElastic so the event loop keeps serving other connections.
+ *
+ * <p>Not a bean, for the same reason as ReactiveRequestIdFilter.
+ */
+public class ReactiveApiKeyAuthFilter implements WebFilter {
+
+    private static final MediaType JSON_UTF8 = new MediaType(MediaType.APPLICATION_JSON, StandardCharsets.UTF_8);
+
+    private final ApiClientCache clientCache;
+    private final RevokedKeys revokedKeys;
+    private final ApiKeyHasher hasher;
+    private final ReactiveRateLimiter rateLimiter;
+    private final RouteCosts routeCosts;
+    private final ApiErrorWriter errorWriter;
+    private final AuthMetrics metrics;
+    private final UsageRecorder usageRecorder;
+
+    public ReactiveApiKeyAuthFilter(ApiClientCache clientCache,
+                                    RevokedKeys revokedKeys,
+                                    ApiKeyHasher hasher,
+                                    ReactiveRateLimiter rateLimiter,
+                                    RouteCosts routeCosts,
+                                    ApiErrorWriter errorWriter,
+                                    AuthMetrics metrics,
+                                    UsageRecorder usageRecorder) {
+        this.clientCache = clientCache;
+        this.revokedKeys = revokedKeys;
+        this.hasher = hasher;
+        this.rateLimiter = rateLimiter;
+        this.routeCosts = routeCosts;
+        this.errorWriter = errorWriter;
+        this.metrics = metrics;
+        this.usageRecorder = usageRecorder;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().value();
+
+        if (path.startsWith("/public")
+                || path.startsWith("/clients")
+                || path.startsWith("/actuator")) {
+            return chain.filter(exchange);
+        }
+
+        long start = System.nanoTime();
+
+        String rawKey = exchange.getRequest().getHeaders().getFirst("X-API-KEY");
+        if (rawKey == null || rawKey.isBlank()) {
+            metrics.record(Outcome.MISSING, null, System.nanoTime() - start);
+            return writeApiError(
+                    exchange,
+                    HttpStatus.UNAUTHORIZED,
+                    "unauthorized",
+                    "Missing API key",
+                    Map.of("header", "X-API-KEY")
+            );
+        }
+
+        ApiKeyHash hash = hasher.hash(rawKey);
+        if (revokedKeys.isRevoked(hash)) {
+            metrics.record(Outcome.REVOKED, null, System.nanoTime() - start);
+            return writeApiError(exchange, HttpStatus.UNAUTHORIZED, "unauthorized", "API key has been revoked", Map.of());
+        }
+
+        return lookup(hash).flatMap(found -> {
+            if (found.isEmpty()) {
+                metrics.record(Outcome.INVALID, null, System.nanoTime() - start);
+                return writeApiError(exchange, HttpStatus.UNAUTHORIZED, "unauthorized", "Invalid API key", Map.of());
+            }
+            ApiPrincipal principal = found.get();
+            if (principal.isExpired(Instant.now())) {
+                metrics.record(Outcome.EXPIRED, principal.name(), System.nanoTime() - start);
+                return writeApiError(
+                        exchange,
+                        HttpStatus.UNAUTHORIZED,
+                        "unauthorized",
+                        "API key has expired",
+                        Map.of("expiredAt", principal.expiresAt().toString())
+                );
+            }
+            int cost = routeCosts.costOf(
+                    exchange.getRequest().getMethod().name(),
+                    exchange.getRequest().getPath().pathWithinApplication()
+            );
+            return rateLimiter.check(principal.apiKeyHash(), principal.rateLimit(), cost)
+                    .flatMap(result -> decide(exchange, chain, principal, result, cost, start));
+        });
+    }
+
+    private Mono<Optional<ApiPrincipal>> lookup(ApiKeyHash hash) {
+        if (clientCache.isCached(hash)) {
+            return Mono.just(clientCache.find(hash));
+        }
+        return Mono.fromCallable(() -> clientCache.find(hash))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Void> decide(ServerWebExchange exchange,
+                              WebFilterChain chain,
+                              ApiPrincipal principal,
+                              RateLimitResult result,
+                              int cost,
+                              long start) {
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+
+        if (result.unavailable()) {
+            headers.set("Retry-After", String.valueOf(result.resetSeconds()));
+            metrics.record(Outcome.UNAVAILABLE, principal.name(), System.nanoTime() - start);
+            return writeApiError(
+                    exchange,
+                    HttpStatus.SERVICE_UNAVAILABLE,
+                    "rate_limiter_unavailable",
+                    "Rate limiting is temporarily unavailable",
+                    Map.of("retryAfterSeconds", result.resetSeconds())
+            );
+        }
+
+        headers.set("X-RateLimit-Limit", String.valueOf(result.limit()));
+        headers.set("X-RateLimit-Remaining", String.valueOf(result.remaining()));
+        headers.set("X-RateLimit-Reset", String.valueOf(result.resetSeconds()));
+        if (!principal.rateLimit().quotas().isEmpty()) {
+            headers.set("X-RateLimit-Window", result.window().label());
+        }
+        if (!routeCosts.isEmpty()) {
+            headers.set("X-RateLimit-Cost", String.valueOf(cost));
+        }
+
+        if (!result.allowed()) {
+            headers.set("Retry-After", String.valueOf(result.resetSeconds()));
+            metrics.record(Outcome.REJECTED, principal.name(), System.nanoTime() - start);
+            return writeRateLimited(exchange, principal, result, cost);
+        }
+
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, List.of());
+
+        metrics.record(Outcome.ALLOWED, principal.name(), System.nanoTime() - start);
+        usageRecorder.record(principal.clientId());
+
+        Mono<Void> downstream = chain.filter(exchange)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth));
+
+        String lease = result.concurrencyLease();
+        if (lease == null) {
+            return downstream;
+        }
+        // complete, error and cancel (client went away) all give the concurrency slot back
+        return downstream.doFinally(signal -> rateLimiter.release(principal.apiKeyHash(), lease).subscribe());
+    }
+
+    private Mono<Void> writeRateLimited(ServerWebExchange exchange, ApiPrincipal principal, RateLimitResult result, int cost) {
+        return writeApiError(
+                exchange,
+                HttpStatus.TOO_MANY_REQUESTS,
+                "rate_limited",
+                ApiKeyAuthFilter.rateLimitedMessage(result),
+                ApiKeyAuthFilter.rateLimitedDetails(principal, result, cost)
+        );
+    }
+
+    // pre-encoded templates, as in ApiKeyAuthFilter; written straight into the response buffer
+    private Mono<Void> writeApiError(ServerWebExchange exchange,
+                                     HttpStatus status,
+                                     String error,
+                                     String message,
+                                     Map<String, Object> details) {
+        ServerHttpResponse response = exchange.getResponse();
+        String requestId = exchange.getAttribute(RequestIdFilter.ATTR);
+        if (requestId != null) {
+            response.getHeaders().set(RequestIdFilter.HEADER, requestId);
+        }
+
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(JSON_UTF8);
+
+        DataBuffer buffer = response.bufferFactory().allocateBuffer(256);
+        try {
+            errorWriter.writeTo(
+                    buffer.asOutputStream(),
+                    status.value(),
+                    error,
+                    message,
+                    exchange.getRequest().getPath().value(),
+                    details,
+                    requestId
+            );
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            return Mono.error(e);
+        }
+        return response.writeWith(Mono.just(buffer));
+    }
+}
@@ -0,0 +1,15 @@
+package com.shotaroi.keygateapi.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "keygate.revocation")
+public record RevocationProperties(
+        // sizes each node's bloom filter; more revoked keys than this only raise its false-positive rate
+        @DefaultValue("100000") int expectedKeys,
+        @DefaultValue("0.01") double falsePositiveRate,
+        // how long a revocation stays in Redis; has to outlast every auth cache TTL (warm-ttl too)
+        @DefaultValue("24h") Duration retention
+) {}
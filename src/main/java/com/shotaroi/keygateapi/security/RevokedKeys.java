@@ -0,0 +1,154 @@
+package com.shotaroi.keygateapi.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Recently revoked keys, checked on every request before the client cache. A cached client
+ * may be up to a cache TTL old, and this check takes effect as soon as a revocation reaches
+ * the node.
+ *
+ * <p>Revocations are kept in a Redis sorted set (hash scored by revocation time) for
+ * {@code keygate.revocation.retention}, and announced on {@link #CHANNEL}. After that
+ * window every cache has reloaded the client from Postgres and sees it as revoked. Each node
+ * holds the set as a bloom filter in front of an exact set. Almost every request is a
+ * valid key, and it is answered by a few bit reads, with no hash set lookup. The whole set
+ * is re-read periodically, which covers missed messages and drops expired entries.
+ */
+@Component
+public class RevokedKeys implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(RevokedKeys.class);
+
+    static final String CHANNEL = "keygate:keys:revoked";
+    private static final String KEY = "keygate:revoked";
+
+    private final StringRedisTemplate redis;
+    private final RevocationProperties props;
+
+    private volatile Snapshot current;
+    // revocations since the last reload started, added to the new snapshot after the swap
+    private final Queue<ApiKeyHash> sinceReload = new ConcurrentLinkedQueue<>();
+    // revoked here while Redis was unreachable (hash -> revocation time), shared by the next reload
+    private final Map<String, Long> unshared = new ConcurrentHashMap<>();
+
+    public RevokedKeys(StringRedisTemplate redis,
+                       RevocationProperties props,
+                       RedisMessageListenerContainer listenerContainer) {
+        this.redis = redis;
+        this.props = props;
+        this.current = new Snapshot(props.expectedKeys(), props.falsePositiveRate());
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public boolean isRevoked(ApiKeyHash apiKeyHash) {
+        return current.contains(apiKeyHash);
+    }
+
+    /**
+     * Rejects the key on this node right away, and on the others once the message reaches them.
+     */
+    public void revoke(String apiKeyHash) {
+        add(ApiKeyHash.fromHex(apiKeyHash));
+        long revokedAt = System.currentTimeMillis();
+        try {
+            share(apiKeyHash, revokedAt);
+        } catch (RuntimeException e) {
+            // kept here until a reload gets it into Redis; until then other nodes only see it
+            // once their cached entry expires (the client is revoked in Postgres)
+            unshared.put(apiKeyHash, revokedAt);
+            log.warn("Could not share key revocation with other nodes, retrying on the next resync", e);
+        }
+    }
+
+    private void share(String apiKeyHash, long revokedAt) {
+        redis.opsForZSet().add(KEY, apiKeyHash, revokedAt);
+        redis.convertAndSend(CHANNEL, apiKeyHash);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        add(ApiKeyHash.fromHex(new String(message.getBody(), StandardCharsets.UTF_8)));
+    }
+
+    private void add(ApiKeyHash apiKeyHash) {
+        // queue first: a reload that swaps in between still drains it into the new snapshot
+        sinceReload.add(apiKeyHash);
+        current.add(apiKeyHash);
+    }
+
+    // runs once right after startup, then every interval
+    @Scheduled(fixedDelayString = "${keygate.revocation.resync-interval-ms:30000}")
+    public void resync() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.debug("Could not reload revoked keys, keeping the current set", e);
+        }
+    }
+
+    synchronized void reload() {
+        // not cleared up front: a revocation added locally but not yet in the sorted set we are
+        // about to read would be in neither the snapshot nor the queue
+        for (Map.Entry<String, Long> entry : unshared.entrySet()) {
+            share(entry.getKey(), entry.getValue());
+            unshared.remove(entry.getKey(), entry.getValue());
+        }
+
+        long cutoff = System.currentTimeMillis() - props.retention().toMillis();
+        redis.opsForZSet().removeRangeByScore(KEY, Double.NEGATIVE_INFINITY, cutoff);
+        Set<String> revoked = redis.opsForZSet().rangeByScore(KEY, cutoff, Double.POSITIVE_INFINITY);
+        int size = (revoked != null) ? revoked.size() : 0;
+
+        Snapshot fresh = new Snapshot(Math.max(props.expectedKeys(), 2 * size), props.falsePositiveRate());
+        if (revoked != null) {
+            for (String hex : revoked) {
+                fresh.add(ApiKeyHash.fromHex(hex));
+            }
+        }
+        // everything queued so far, some of it already in the sorted set (adding twice is
+        // harmless), then whatever came in during the swap
+        drainInto(fresh);
+        current = fresh;
+        drainInto(fresh);
+    }
+
+    private void drainInto(Snapshot snapshot) {
+        ApiKeyHash late;
+        while ((late = sinceReload.poll()) != null) {
+            snapshot.add(late);
+        }
+    }
+
+    private static final class Snapshot {
+        private final BloomFilter bloom;
+        private final Set<ApiKeyHash> exact = ConcurrentHashMap.newKeySet();
+
+        Snapshot(int expectedKeys, double falsePositiveRate) {
+            this.bloom = new BloomFilter(expectedKeys, falsePositiveRate);
+        }
+
+        boolean contains(ApiKeyHash apiKeyHash) {
+            return bloom.mightContain(apiKeyHash) && exact.contains(apiKeyHash);
+        }
+
+        void add(ApiKeyHash apiKeyHash) {
+            exact.add(apiKeyHash);
+            bloom.add(apiKeyHash);
+        }
+    }
+}
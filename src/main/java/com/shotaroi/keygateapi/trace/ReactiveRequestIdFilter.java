@@ -0,0 +1,39 @@
+package com.shotaroi.keygateapi.trace;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * {@link RequestIdFilter} for the reactive stack. Not a bean on purpose: WebFlux would pick
+ * it up as a global filter as well, so ReactiveSecurityConfig adds it to the security chain.
+ */
+public class ReactiveRequestIdFilter implements WebFilter {
+
+    private final RequestIdGenerator generator;
+    private final int maxLength;
+
+    public ReactiveRequestIdFilter(RequestIdGenerator generator, RequestIdProperties props) {
+        this.generator = generator;
+        this.maxLength = props.maxLength();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        String incoming = headers.getFirst(RequestIdFilter.HEADER);
+        String requestId = (incoming != null && RequestIds.isValid(incoming, maxLength))
+                ? incoming
+                : generator.next();
+
+        exchange.getAttributes().put(RequestIdFilter.ATTR, requestId);
+        exchange.getResponse().getHeaders().set(RequestIdFilter.HEADER, requestId);
+
+        // there's no thread-bound MDC on an event loop, so the id travels in the Reactor context
+        return chain.filter(exchange)
+                .contextWrite(Context.of(RequestIdFilter.MDC_KEY, requestId));
+    }
+}
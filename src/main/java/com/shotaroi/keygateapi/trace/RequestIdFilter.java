@@ -5,28 +5,42 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.MDC;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.UUID;
 
+/**
+ * Gives every request an id: the caller's X-Request-Id if it passes {@link RequestIds#isValid},
+ * otherwise a new one from the {@link RequestIdGenerator}. The id goes into the request, the
+ * logs (MDC) and the response. {@link TraceContext#of} builds the trace context from it when needed.
+ */
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RequestIdFilter extends OncePerRequestFilter {
 
     public static final String HEADER = "X-Request-Id";
     public static final String ATTR = "requestId";
     public static final String MDC_KEY = "requestId";
 
+    private final RequestIdGenerator generator;
+    private final int maxLength;
+
+    public RequestIdFilter(RequestIdGenerator generator, RequestIdProperties props) {
+        this.generator = generator;
+        this.maxLength = props.maxLength();
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
         String incoming = request.getHeader(HEADER);
-        String requestId = (incoming != null && !incoming.isBlank())
-                ? incoming.trim()
-                : UUID.randomUUID().toString();
+        String requestId = (incoming != null && RequestIds.isValid(incoming, maxLength))
+                ? incoming
+                : generator.next();
 
         // store so everyone else can read it
         request.setAttribute(ATTR, requestId);
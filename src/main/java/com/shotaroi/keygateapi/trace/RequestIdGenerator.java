@@ -0,0 +1,11 @@
+package com.shotaroi.keygateapi.trace;
+
+/**
+ * Makes the id of a request that arrived without a usable X-Request-Id. Called once per such
+ * request on the request thread, so implementations must be thread-safe and shouldn't block.
+ */
+@FunctionalInterface
+public interface RequestIdGenerator {
+
+    String next();
+}
@@ -0,0 +1,19 @@
+package com.shotaroi.keygateapi.trace;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "keygate.request-id")
+public record RequestIdProperties(
+        @DefaultValue("TIME_ORDERED") Generator generator,
+        // longer incoming ids, or ones with other characters than RequestIds allows, are replaced
+        @DefaultValue("64") int maxLength
+) {
+
+    public enum Generator {
+        // UUIDv7 from a per-thread random, see TimeOrderedRequestIdGenerator
+        TIME_ORDERED,
+        // UUID.randomUUID(): unguessable, but every call goes through one SecureRandom
+        RANDOM
+    }
+}
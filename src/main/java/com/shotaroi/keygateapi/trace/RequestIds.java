@@ -0,0 +1,31 @@
+package com.shotaroi.keygateapi.trace;
+
+/**
+ * Checks a client-supplied X-Request-Id before it goes into logs, headers and error bodies.
+ */
+public final class RequestIds {
+
+    private RequestIds() {}
+
+    /**
+     * 1 to {@code maxLength} chars of {@code [A-Za-z0-9._:-]}. That covers UUIDs, ULIDs and
+     * most tracer ids, and keeps out whitespace, quotes and anything that could forge a log line.
+     */
+    public static boolean isValid(String id, int maxLength) {
+        int length = id.length();
+        if (length == 0 || length > maxLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z')
+                    || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == ':';
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
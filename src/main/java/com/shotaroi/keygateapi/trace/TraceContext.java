@@ -0,0 +1,191 @@
+package com.shotaroi.keygateapi.trace;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * W3C trace context for one request, to put on calls this gateway makes further down
+ * ({@link #traceparent()}). It's kept as four numbers, and the header is only built when a
+ * call asks for it.
+ *
+ * <p>An incoming {@code traceparent} is continued: same trace id and sampled flag, with this
+ * hop as the new parent. Otherwise a trace starts here. Its trace id is the request id when
+ * that is a UUID, which generated ids always are, so logs and traces can be joined on it.
+ *
+ * <p>Most requests never call out, so the filters don't build one. {@link #of} does on first
+ * use and keeps it on the request.
+ */
+public final class TraceContext {
+
+    public static final String HEADER = "traceparent";
+    // request/exchange attribute, filled in by of()
+    public static final String ATTR = "traceContext";
+
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int TRACEPARENT_LENGTH = 55;
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final boolean sampled;
+
+    private TraceContext(long traceIdHigh, long traceIdLow, long spanId, boolean sampled) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    public static TraceContext of(HttpServletRequest request) {
+        if (request.getAttribute(ATTR) instanceof TraceContext trace) {
+            return trace;
+        }
+        TraceContext trace = continueOrStart(request.getHeader(HEADER), (String) request.getAttribute(RequestIdFilter.ATTR));
+        request.setAttribute(ATTR, trace);
+        return trace;
+    }
+
+    public static TraceContext of(ServerWebExchange exchange) {
+        return (TraceContext) exchange.getAttributes().computeIfAbsent(ATTR, key -> continueOrStart(
+                exchange.getRequest().getHeaders().getFirst(HEADER),
+                exchange.getAttribute(RequestIdFilter.ATTR)));
+    }
+
+    public static TraceContext continueOrStart(String traceparent, String requestId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long span = nonZero(random.nextLong());
+
+        if (traceparent != null && isValidTraceparent(traceparent)) {
+            return new TraceContext(
+                    HexFormat.fromHexDigitsToLong(traceparent, 3, 19),
+                    HexFormat.fromHexDigitsToLong(traceparent, 19, 35),
+                    span,
+                    (HexFormat.fromHexDigits(traceparent, 53, 55) & 0x01) != 0
+            );
+        }
+        if (requestId != null && isUuid(requestId)) {
+            long high = HexFormat.fromHexDigitsToLong(requestId, 0, 8) << 32
+                    | HexFormat.fromHexDigitsToLong(requestId, 9, 13) << 16
+                    | HexFormat.fromHexDigitsToLong(requestId, 14, 18);
+            long low = HexFormat.fromHexDigitsToLong(requestId, 19, 23) << 48
+                    | HexFormat.fromHexDigitsToLong(requestId, 24, 36);
+            if ((high | low) != 0) {
+                return new TraceContext(high, low, span, true);
+            }
+        }
+        return new TraceContext(random.nextLong(), nonZero(random.nextLong()), span, true);
+    }
+
+    public String traceId() {
+        byte[] out = new byte[32];
+        writeHex(out, 0, traceIdHigh, 16);
+        writeHex(out, 16, traceIdLow, 16);
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+
+    // this hop's span id, the parent of whatever is called next
+    public String spanId() {
+        byte[] out = new byte[16];
+        writeHex(out, 0, spanId, 16);
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+
+    public boolean sampled() {
+        return sampled;
+    }
+
+    /**
+     * {@code 00-{trace id}-{span id}-{flags}}, for outgoing requests.
+     */
+    public String traceparent() {
+        byte[] out = new byte[TRACEPARENT_LENGTH];
+        out[0] = '0';
+        out[1] = '0';
+        out[2] = '-';
+        writeHex(out, 3, traceIdHigh, 16);
+        writeHex(out, 19, traceIdLow, 16);
+        out[35] = '-';
+        writeHex(out, 36, spanId, 16);
+        out[52] = '-';
+        out[53] = '0';
+        out[54] = (byte) (sampled ? '1' : '0');
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return traceparent();
+    }
+
+    // version 00 layout; later versions may append fields, which we ignore, 00 itself may not
+    static boolean isValidTraceparent(String header) {
+        if (header.length() < TRACEPARENT_LENGTH
+                || (header.length() > TRACEPARENT_LENGTH && header.charAt(TRACEPARENT_LENGTH) != '-')) {
+            return false;
+        }
+        if (header.length() > TRACEPARENT_LENGTH && header.startsWith("00")) {
+            return false;
+        }
+        if (header.charAt(2) != '-' || header.charAt(35) != '-' || header.charAt(52) != '-') {
+            return false;
+        }
+        // the spec only allows lowercase hex here
+        if (!isLowerHex(header, 0, 2) || header.startsWith("ff")) {
+            return false;
+        }
+        if (!isLowerHex(header, 3, 35) || !isLowerHex(header, 36, 52) || !isLowerHex(header, 53, 55)) {
+            return false;
+        }
+        // all-zero trace and parent ids are invalid
+        return !isZero(header, 3, 35) && !isZero(header, 36, 52);
+    }
+
+    private static boolean isUuid(String id) {
+        return id.length() == 36
+                && id.charAt(8) == '-' && id.charAt(13) == '-' && id.charAt(18) == '-' && id.charAt(23) == '-'
+                && isHex(id, 0, 8) && isHex(id, 9, 13) && isHex(id, 14, 18) && isHex(id, 19, 23) && isHex(id, 24, 36);
+    }
+
+    private static boolean isHex(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!HexFormat.isHexDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLowerHex(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long nonZero(long value) {
+        return value != 0 ? value : 1;
+    }
+
+    private static void writeHex(byte[] out, int at, long value, int digits) {
+        for (int i = at + digits - 1; i >= at; i--) {
+            out[i] = DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.shotaroi.keygateapi.usage;
+
+import com.shotaroi.keygateapi.ratelimit.QuotaWindow;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.ReactiveRateLimiter;
+import com.shotaroi.keygateapi.security.ApiPrincipal;
+import com.shotaroi.keygateapi.usage.UsageController.UsageHistoryResponse;
+import com.shotaroi.keygateapi.usage.UsageController.UsageResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+
+// same endpoints and bodies as UsageController, for the reactive profile
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUsageController {
+
+    private final ReactiveRateLimiter rateLimiter;
+    private final UsageHistoryService historyService;
+
+    public ReactiveUsageController(ReactiveRateLimiter rateLimiter, UsageHistoryService historyService) {
+        this.rateLimiter = rateLimiter;
+        this.historyService = historyService;
+    }
+
+    @GetMapping("/usage")
+    public Mono<UsageResponse> usage(Authentication auth) {
+        ApiPrincipal principal = (ApiPrincipal) auth.getPrincipal();
+
+        return rateLimiter.peek(principal.apiKeyHash(), principal.rateLimit())
+                .flatMap(binding -> {
+                    Mono<RateLimitResult> minute = binding.window() == QuotaWindow.MINUTE
+                            ? Mono.just(binding)
+                            : rateLimiter.peek(principal.apiKeyHash(), principal.rateLimit().withoutQuotas());
+                    return minute.map(m -> UsageResponse.of(principal, m, binding));
+                });
+    }
+
+    @GetMapping("/usage/history")
+    public Mono<UsageHistoryResponse> history(
+            Authentication auth,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "HOUR") UsageGranularity granularity
+    ) {
+        ApiPrincipal principal = (ApiPrincipal) auth.getPrincipal();
+
+        // JDBC query, keep it off the event loop
+        return Mono.fromCallable(() -> historyService.history(principal, from, to, granularity))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
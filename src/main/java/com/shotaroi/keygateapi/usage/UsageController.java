@@ -1,44 +1,103 @@
 package com.shotaroi.keygateapi.usage;
 
+import com.shotaroi.keygateapi.ratelimit.QuotaWindow;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
 import com.shotaroi.keygateapi.ratelimit.RedisRateLimiter;
 import com.shotaroi.keygateapi.security.ApiPrincipal;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Instant;
+import java.util.List;
+
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UsageController {
 
     private final RedisRateLimiter rateLimiter;
+    private final UsageHistoryService historyService;
 
-    public UsageController(RedisRateLimiter rateLimiter) {
+    public UsageController(RedisRateLimiter rateLimiter, UsageHistoryService historyService) {
         this.rateLimiter = rateLimiter;
+        this.historyService = historyService;
     }
 
     public record UsageResponse(
             String clientName,
+            RateLimitAlgorithm algorithm,
             int limitPerMinute,
             long usedThisMinute,
             long remainingThisMinute,
+            long resetsInSeconds,
+            // only for clients with per-second/hour/day or concurrency limits
+            RateLimitPolicy.Quotas quotas,
+            BindingLimit binding
+    ) {
+
+        static UsageResponse of(ApiPrincipal principal, RateLimitResult minute, RateLimitResult binding) {
+            boolean quotas = !principal.rateLimit().quotas().isEmpty();
+            return new UsageResponse(
+                    principal.name(),
+                    principal.rateLimit().algorithm(),
+                    principal.requestsPerMinute(),
+                    minute.used(),
+                    minute.remaining(),
+                    minute.resetSeconds(),
+                    quotas ? principal.rateLimit().quotas() : null,
+                    quotas ? BindingLimit.of(binding) : null
+            );
+        }
+    }
+
+    // the limit with the least room left, i.e. the one the next request would hit first
+    public record BindingLimit(
+            QuotaWindow window,
+            int limit,
+            long used,
+            long remaining,
             long resetsInSeconds
+    ) {
+
+        static BindingLimit of(RateLimitResult result) {
+            return new BindingLimit(result.window(), result.limit(), result.used(), result.remaining(), result.resetSeconds());
+        }
+    }
+
+    public record UsageHistoryResponse(
+            String clientName,
+            UsageGranularity granularity,
+            Instant from,
+            Instant to,
+            List<UsageStore.UsagePoint> points
     ) {}
 
     @GetMapping("/usage")
     public UsageResponse usage(Authentication auth) {
         ApiPrincipal principal = (ApiPrincipal) auth.getPrincipal();
 
-        long used = rateLimiter.currentUsed(principal.apiKeyHash());
-        int limit = principal.requestsPerMinute();
+        // read-only, this call is not counted against the limit a second time
+        RateLimitResult binding = rateLimiter.peek(principal.apiKeyHash(), principal.rateLimit());
+        RateLimitResult minute = binding.window() == QuotaWindow.MINUTE
+                ? binding
+                : rateLimiter.peek(principal.apiKeyHash(), principal.rateLimit().withoutQuotas());
 
-        long remaining = Math.max(0, (long) limit - used);
-        long reset = rateLimiter.secondsUntilReset();
+        return UsageResponse.of(principal, minute, binding);
+    }
 
-        return new UsageResponse(
-                principal.name(),
-                limit,
-                used,
-                remaining,
-                reset
-        );
+    // persisted counts, lag behind live traffic by up to one flush interval
+    @GetMapping("/usage/history")
+    public UsageHistoryResponse history(
+            Authentication auth,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "HOUR") UsageGranularity granularity
+    ) {
+        return historyService.history((ApiPrincipal) auth.getPrincipal(), from, to, granularity);
     }
 }
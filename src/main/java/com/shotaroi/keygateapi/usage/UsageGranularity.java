@@ -0,0 +1,18 @@
+package com.shotaroi.keygateapi.usage;
+
+public enum UsageGranularity {
+    MINUTE("minute"),
+    HOUR("hour"),
+    DAY("day");
+
+    // unit name for Postgres date_trunc
+    private final String truncUnit;
+
+    UsageGranularity(String truncUnit) {
+        this.truncUnit = truncUnit;
+    }
+
+    public String truncUnit() {
+        return truncUnit;
+    }
+}
@@ -0,0 +1,50 @@
+package com.shotaroi.keygateapi.usage;
+
+import com.shotaroi.keygateapi.security.ApiPrincipal;
+import com.shotaroi.keygateapi.usage.UsageController.UsageHistoryResponse;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+// range checks + query for /usage/history, shared by the servlet and reactive controllers
+@Service
+public class UsageHistoryService {
+
+    private final UsageStore usageStore;
+    private final UsageProperties props;
+
+    public UsageHistoryService(UsageStore usageStore, UsageProperties props) {
+        this.usageStore = usageStore;
+        this.props = props;
+    }
+
+    public UsageHistoryResponse history(ApiPrincipal principal, Instant from, Instant to, UsageGranularity granularity) {
+        Instant end = (to != null) ? to : Instant.now();
+        Instant start = (from != null) ? from : end.minus(Duration.ofDays(1));
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+
+        ChronoUnit unit = switch (granularity) {
+            case MINUTE -> ChronoUnit.MINUTES;
+            case HOUR -> ChronoUnit.HOURS;
+            case DAY -> ChronoUnit.DAYS;
+        };
+        long points = unit.between(start, end) + 1;
+        if (points > props.maxHistoryPoints()) {
+            throw new IllegalArgumentException(
+                    "Range too large: " + points + " " + granularity.truncUnit() + " buckets, max is " + props.maxHistoryPoints()
+            );
+        }
+
+        return new UsageHistoryResponse(
+                principal.name(),
+                granularity,
+                start,
+                end,
+                usageStore.history(principal.clientId(), granularity, start, end)
+        );
+    }
+}
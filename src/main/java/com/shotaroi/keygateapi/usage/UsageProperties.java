@@ -0,0 +1,16 @@
+package com.shotaroi.keygateapi.usage;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "keygate.usage")
+public record UsageProperties(
+        // how long per-minute rows are kept before being folded into hourly ones
+        @DefaultValue("48h") Duration minuteRetention,
+        // how long hourly rows are kept before being folded into daily ones
+        @DefaultValue("90d") Duration hourRetention,
+        // upper bound on buckets returned by /usage/history
+        @DefaultValue("5000") int maxHistoryPoints
+) {}
@@ -0,0 +1,110 @@
+package com.shotaroi.keygateapi.usage;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts admitted requests per client per minute in memory. A scheduled flush writes them
+ * to Postgres in batches, so the request thread never waits on the DB.
+ *
+ * <p>A past minute's counter is only dropped by the flush after the one that first saw the
+ * minute as past. A request thread that looked the counter up just before the minute ended
+ * can still increment it in between, and that count is then picked up instead of lost.
+ */
+@Component
+public class UsageRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(UsageRecorder.class);
+
+    private record UsageKey(long clientId, long minute) {}
+
+    private final Map<UsageKey, LongAdder> pending = new ConcurrentHashMap<>();
+    private final UsageStore store;
+    private final UsageProperties props;
+    private final Clock clock;
+
+    // the current minute as the last flush saw it; guarded by this
+    private long lastFlushMinute = Long.MIN_VALUE;
+
+    public UsageRecorder(UsageStore store, UsageProperties props) {
+        this(store, props, Clock.systemUTC());
+    }
+
+    UsageRecorder(UsageStore store, UsageProperties props, Clock clock) {
+        this.store = store;
+        this.props = props;
+        this.clock = clock;
+    }
+
+    public void record(long clientId) {
+        UsageKey key = new UsageKey(clientId, clock.millis() / 60_000);
+        LongAdder counter = pending.get(key);
+        if (counter == null) {
+            counter = pending.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${keygate.usage.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        long currentMinute = clock.millis() / 60_000;
+        // minutes that were already over at the last flush
+        long retireBefore = lastFlushMinute;
+        lastFlushMinute = currentMinute;
+        List<UsageStore.MinuteCount> batch = new ArrayList<>();
+
+        pending.forEach((key, counter) -> {
+            // sumThenReset keeps increments that race with it for the next flush
+            long count = counter.sumThenReset();
+            if (key.minute() < retireBefore && pending.remove(key, counter)) {
+                // a late increment may have landed between the reset and the remove
+                count += counter.sumThenReset();
+            }
+            if (count > 0) {
+                batch.add(new UsageStore.MinuteCount(key.clientId(), Instant.ofEpochSecond(key.minute() * 60), count));
+            }
+        });
+
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            store.addMinuteCounts(batch);
+        } catch (RuntimeException e) {
+            // put the counts back and try again on the next flush
+            for (UsageStore.MinuteCount c : batch) {
+                pending.computeIfAbsent(new UsageKey(c.clientId(), c.minute().getEpochSecond() / 60), k -> new LongAdder())
+                        .add(c.count());
+            }
+            log.warn("Usage flush failed, {} buckets kept for retry", batch.size(), e);
+        }
+    }
+
+    // hourly; the fold queries are idempotent, so a skipped or repeated run is harmless
+    @Scheduled(cron = "${keygate.usage.compaction-cron:0 5 * * * *}")
+    public void compact() {
+        try {
+            if (!store.compact(clock.instant(), props.minuteRetention(), props.hourRetention())) {
+                log.debug("Usage compaction running on another node, skipped");
+            }
+        } catch (RuntimeException e) {
+            log.warn("Usage compaction failed", e);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
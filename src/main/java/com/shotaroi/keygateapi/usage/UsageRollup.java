@@ -0,0 +1,39 @@
+package com.shotaroi.keygateapi.usage;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Written with plain SQL by UsageStore; the entity is here so the schema is managed like api_clients.
+@Entity
+@Table(
+        name = "usage_rollups",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_usage_rollups_bucket",
+                // also the index for range reads by client
+                columnNames = {"client_id", "granularity", "bucket_start"}
+        )
+)
+@Getter
+@NoArgsConstructor
+public class UsageRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long clientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private UsageGranularity granularity;
+
+    @Column(nullable = false)
+    private Instant bucketStart;
+
+    @Column(nullable = false)
+    private long requestCount;
+}
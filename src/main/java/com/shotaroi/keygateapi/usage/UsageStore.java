@@ -0,0 +1,121 @@
+package com.shotaroi.keygateapi.usage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Plain-SQL access to usage_rollups. Every request is counted in exactly one row at a time:
+ * compaction moves counts from finer rows into coarser ones, and reads sum across granularities.
+ */
+@Repository
+public class UsageStore {
+
+    // any constant works, it only has to be the same on every node
+    private static final long COMPACTION_LOCK_ID = 0x6b67_7573_6167_6531L;
+
+    private static final String UPSERT = """
+            INSERT INTO usage_rollups (client_id, granularity, bucket_start, request_count)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (client_id, granularity, bucket_start)
+            DO UPDATE SET request_count = usage_rollups.request_count + EXCLUDED.request_count
+            """;
+
+    // moves old rows of one granularity into the next coarser one, in a single statement
+    private static final String FOLD = """
+            WITH moved AS (
+                DELETE FROM usage_rollups
+                WHERE granularity = '%1$s' AND bucket_start < ?
+                RETURNING client_id, bucket_start, request_count
+            )
+            INSERT INTO usage_rollups (client_id, granularity, bucket_start, request_count)
+            SELECT client_id, '%2$s', date_trunc('%3$s', bucket_start AT TIME ZONE 'UTC') AT TIME ZONE 'UTC', sum(request_count)
+            FROM moved
+            GROUP BY 1, 3
+            ON CONFLICT (client_id, granularity, bucket_start)
+            DO UPDATE SET request_count = usage_rollups.request_count + EXCLUDED.request_count
+            """;
+
+    private static final String HISTORY = """
+            SELECT date_trunc('%1$s', bucket_start AT TIME ZONE 'UTC') AS bucket, sum(request_count) AS requests
+            FROM usage_rollups
+            WHERE client_id = ? AND granularity IN (%2$s) AND bucket_start >= ? AND bucket_start < ?
+            GROUP BY 1
+            ORDER BY 1
+            """;
+
+    public record MinuteCount(long clientId, Instant minute, long count) {}
+
+    public record UsagePoint(Instant bucketStart, long requests) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    public UsageStore(JdbcTemplate jdbc, TransactionTemplate tx) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+    }
+
+    public void addMinuteCounts(List<MinuteCount> counts) {
+        jdbc.batchUpdate(UPSERT, counts, 500, (ps, c) -> {
+            ps.setLong(1, c.clientId());
+            ps.setString(2, UsageGranularity.MINUTE.name());
+            ps.setObject(3, c.minute().atOffset(ZoneOffset.UTC));
+            ps.setLong(4, c.count());
+        });
+    }
+
+    /**
+     * Folds minute rows older than {@code minuteRetention} into hours and hour rows older than
+     * {@code hourRetention} into days. Only one node does it at a time.
+     *
+     * @return false if another node held the lock
+     */
+    public boolean compact(Instant now, Duration minuteRetention, Duration hourRetention) {
+        Boolean done = tx.execute(status -> {
+            Boolean locked = jdbc.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, COMPACTION_LOCK_ID);
+            if (!Boolean.TRUE.equals(locked)) {
+                return false;
+            }
+            Instant hourCutoff = now.minus(minuteRetention).truncatedTo(ChronoUnit.HOURS);
+            Instant dayCutoff = now.minus(hourRetention).truncatedTo(ChronoUnit.DAYS);
+
+            fold(UsageGranularity.MINUTE, UsageGranularity.HOUR, hourCutoff);
+            fold(UsageGranularity.HOUR, UsageGranularity.DAY, dayCutoff);
+            return true;
+        });
+        return Boolean.TRUE.equals(done);
+    }
+
+    public List<UsagePoint> history(long clientId, UsageGranularity granularity, Instant from, Instant to) {
+        // rows at this granularity or finer that haven't been compacted yet
+        String granularities = Arrays.stream(UsageGranularity.values())
+                .filter(g -> g.ordinal() <= granularity.ordinal())
+                .map(g -> "'" + g.name() + "'")
+                .collect(Collectors.joining(", "));
+
+        return jdbc.query(
+                HISTORY.formatted(granularity.truncUnit(), granularities),
+                (rs, row) -> new UsagePoint(
+                        rs.getObject("bucket", LocalDateTime.class).toInstant(ZoneOffset.UTC),
+                        rs.getLong("requests")
+                ),
+                clientId,
+                from.atOffset(ZoneOffset.UTC),
+                to.atOffset(ZoneOffset.UTC)
+        );
+    }
+
+    private void fold(UsageGranularity from, UsageGranularity into, Instant cutoff) {
+        jdbc.update(FOLD.formatted(from.name(), into.name(), into.truncUnit()), cutoff.atOffset(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,16 @@
+-- Announces a change to one client: bumps the change version, keeps it in a capped
+-- changelog for nodes that missed the message, and publishes it.
+--
+-- KEYS[1] = change version counter
+-- KEYS[2] = changelog, sorted set of "version:hash" scored by version
+-- ARGV[1] = pub/sub channel
+-- ARGV[2] = api key hash (hex)
+-- ARGV[3] = changelog entries to keep
+--
+-- Returns the new version
+
+local version = redis.call('INCR', KEYS[1])
+redis.call('ZADD', KEYS[2], version, version .. ':' .. ARGV[2])
+redis.call('ZREMRANGEBYRANK', KEYS[2], 0, -tonumber(ARGV[3]) - 1)
+redis.call('PUBLISH', ARGV[1], version .. ' ' .. ARGV[2])
+return version
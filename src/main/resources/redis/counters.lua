@@ -0,0 +1,65 @@
+-- Window counters, put in front of every script that counts requests (see CounterKeys).
+-- A counter is a key plus a field:
+--   field == ''  legacy layout, one string key per window (rl:{hash}:{windowStart})
+--   otherwise    compact layout, one hash per client (rl:{base64 hash}), one field per window
+--
+-- Compact fields are a window letter (s, m, h, d) plus the window start in base 36. There's
+-- no TTL per field, so when a new window starts the ones that are over are deleted, and the
+-- key's TTL is pushed out to cover the newest one.
+
+-- seconds a field outlives its window start; a minute is read again as the sliding window's "previous"
+local counter_lifetimes = {s = 1 + 10, m = 120 + 10, h = 3600 + 10, d = 86400 + 10}
+
+local function counter_get(key, field)
+    if field == '' then
+        return tonumber(redis.call('GET', key) or '0')
+    end
+    return tonumber(redis.call('HGET', key, field) or '0')
+end
+
+local function counter_prune(key, now)
+    for _, field in ipairs(redis.call('HKEYS', key)) do
+        -- upper case: what migrate_counter.lua copied into that window so far
+        local lifetime = counter_lifetimes[string.lower(string.sub(field, 1, 1))]
+        local start = tonumber(string.sub(field, 2), 36)
+        if lifetime and start and start + lifetime < now then
+            redis.call('HDEL', key, field)
+        end
+    end
+end
+
+-- adds `by` and returns the new count; expire_at (epoch seconds) is when this window's count can go
+local function counter_add(key, field, by, expire_at)
+    if field == '' then
+        local used = redis.call('INCRBY', key, by)
+        if used == by then
+            redis.call('EXPIREAT', key, expire_at)
+        end
+        return used
+    end
+
+    local used = redis.call('HINCRBY', key, field, by)
+    if used == by then
+        counter_prune(key, tonumber(redis.call('TIME')[1]))
+        -- -1 = no TTL yet
+        if redis.call('EXPIRETIME', key) < expire_at then
+            redis.call('EXPIREAT', key, expire_at)
+        end
+    end
+    return used
+end
+
+-- gives back part of a count; skipped when the window is already gone, so nothing negative is left behind
+local function counter_release(key, field, amount)
+    if field == '' then
+        if redis.call('EXISTS', key) == 0 then
+            return 0
+        end
+        return redis.call('DECRBY', key, amount)
+    end
+    if redis.call('HEXISTS', key, field) == 0 then
+        return 0
+    end
+    return redis.call('HINCRBY', key, field, -amount)
+end
+
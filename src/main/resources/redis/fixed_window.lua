@@ -0,0 +1,40 @@
+-- Fixed one-minute window, evaluated in a single round trip.
+--
+-- KEYS[1] = counter for the current window (see counters.lua)
+-- ARGV[1] = limit for the window
+-- ARGV[2] = cost of this request (0 = just read the counter)
+-- ARGV[3] = window end (epoch seconds)
+-- ARGV[4] = now (epoch seconds, caller clock so it matches the key)
+-- ARGV[5] = counter field ('' = legacy key)
+--
+-- Returns {allowed, used, remaining, resetSeconds}
+
+local limit = tonumber(ARGV[1])
+local cost = tonumber(ARGV[2])
+local window_end = tonumber(ARGV[3])
+local now = tonumber(ARGV[4])
+local field = ARGV[5]
+
+-- only admitted requests are counted, so a rejected expensive call leaves the rest for cheaper ones
+local used = counter_get(KEYS[1], field)
+
+local allowed = 0
+if used + cost <= limit then
+    allowed = 1
+    if cost > 0 then
+        -- kept a little past the window so late readers still see it
+        used = counter_add(KEYS[1], field, cost, window_end + 10)
+    end
+end
+
+local remaining = limit - used
+if remaining < 0 then
+    remaining = 0
+end
+
+local reset = window_end - now
+if reset < 1 then
+    reset = 1
+end
+
+return {allowed, used, remaining, reset}
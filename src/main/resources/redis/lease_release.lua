@@ -0,0 +1,8 @@
+-- Gives back the unspent part of a lease. Skipped when the counter is
+-- already gone, so we never leave a negative key without a TTL behind.
+--
+-- KEYS[1] = counter the lease was taken from
+-- ARGV[1] = unspent amount
+-- ARGV[2] = counter field ('' = legacy key)
+
+return counter_release(KEYS[1], ARGV[2], tonumber(ARGV[1]))
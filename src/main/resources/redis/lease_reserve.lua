@@ -0,0 +1,25 @@
+-- Reserves a block of the current fixed window for one gateway node.
+-- Never grants past the limit, so the sum of all leases stays within it.
+--
+-- KEYS[1] = counter for the current window (see counters.lua)
+-- ARGV[1] = limit for the window
+-- ARGV[2] = requested block size
+-- ARGV[3] = window end (epoch seconds)
+-- ARGV[4] = counter field ('' = legacy key)
+--
+-- Returns {granted, usedAfterGrant}
+
+local limit = tonumber(ARGV[1])
+local block = tonumber(ARGV[2])
+local window_end = tonumber(ARGV[3])
+local field = ARGV[4]
+
+local used = counter_get(KEYS[1], field)
+local granted = math.min(block, limit - used)
+if granted <= 0 then
+    return {0, used}
+end
+
+used = counter_add(KEYS[1], field, granted, window_end + 10)
+
+return {granted, used}
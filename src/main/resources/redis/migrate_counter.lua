@@ -0,0 +1,36 @@
+-- Copies what one legacy counter gained since the last pass into its client's compact hash
+-- (see counters.lua). Both keys belong to the same client, so they're on the same shard.
+--
+-- Nodes still on the legacy layout keep reading and writing the legacy key, so it stays until
+-- the cut-over. The count copied so far sits next to the window's field, under the same name
+-- with the window letter in upper case ('M' for 'm'), and is pruned along with it.
+--
+-- KEYS[1] = legacy counter (rl:{hash}:{windowStart} or rl:{hash}:s|h|d:{windowStart})
+-- KEYS[2] = compact hash (rl:{base64 hash})
+-- ARGV[1] = field for that window
+-- ARGV[2] = when the window's count can go (epoch seconds)
+-- ARGV[3] = '1' to delete the legacy key after copying (no legacy writers left)
+--
+-- Returns how much the compact count changed
+
+local field = ARGV[1]
+local copied_field = string.upper(string.sub(field, 1, 1)) .. string.sub(field, 2)
+
+local used = tonumber(redis.call('GET', KEYS[1]) or '0')
+local copied = tonumber(redis.call('HGET', KEYS[2], copied_field) or '0')
+local delta = used - copied
+
+if delta > 0 then
+    counter_add(KEYS[2], field, delta, tonumber(ARGV[2]))
+elseif delta < 0 then
+    -- a legacy node gave back part of a lease
+    counter_release(KEYS[2], field, -delta)
+end
+if delta ~= 0 and redis.call('EXISTS', KEYS[2]) == 1 then
+    redis.call('HSET', KEYS[2], copied_field, used)
+end
+
+if ARGV[3] == '1' then
+    redis.call('DEL', KEYS[1])
+end
+return delta
@@ -0,0 +1,104 @@
+-- Per-second, hourly and daily quotas plus a concurrency cap, checked in the same script call
+-- as the client's per-minute algorithm. QuotaScripts puts that algorithm's script in front of
+-- this one as `local function per_minute() ... end`. Its KEYS and ARGV come first, unchanged.
+--
+-- After the algorithm's k keys and a args:
+-- KEYS[k+1..k+3] = second, hour and day counters (see counters.lua)
+-- KEYS[k+4]      = requests in flight (cc:{hash}), a sorted set of lease id -> expiry (epoch ms)
+-- ARGV[a+1]      = per-minute limit, as reported in headers
+-- ARGV[a+2..a+4] = limit per second, hour and day (0 = none)
+-- ARGV[a+5]      = max concurrent requests (0 = none)
+-- ARGV[a+6]      = cost of this request (0 = just read)
+-- ARGV[a+7]      = now (epoch ms)
+-- ARGV[a+8]      = lease id for the concurrency slot
+-- ARGV[a+9]      = lease ttl (ms), for leases whose release never arrives
+-- ARGV[a+10..a+12] = second, hour and day counter fields ('' = legacy keys)
+-- ARGV[#ARGV-1]  = k
+-- ARGV[#ARGV]    = a
+--
+-- Returns {allowed, used, remaining, resetSeconds, limit, window} for the binding limit: the one
+-- that rejected, or else the one with the least room left. window is a QuotaWindow ordinal:
+-- 0 second, 1 minute, 2 hour, 3 day, 4 concurrent.
+
+local k = tonumber(ARGV[#ARGV - 1])
+local a = tonumber(ARGV[#ARGV])
+
+local minute_limit = tonumber(ARGV[a + 1])
+local max_concurrent = tonumber(ARGV[a + 5])
+local cost = tonumber(ARGV[a + 6])
+local now_ms = tonumber(ARGV[a + 7])
+local lease = ARGV[a + 8]
+local lease_ttl = tonumber(ARGV[a + 9])
+local now = math.floor(now_ms / 1000)
+
+local function reply(allowed, used, limit, reset, window)
+    local remaining = limit - used
+    if remaining < 0 then
+        remaining = 0
+    end
+    return {allowed, used, remaining, reset, limit, window}
+end
+
+local lengths = {1, 3600, 86400}
+local ordinals = {0, 2, 3}
+local windows = {}
+for i = 1, 3 do
+    local limit = tonumber(ARGV[a + 1 + i])
+    if limit > 0 then
+        local window_end = now - (now % lengths[i]) + lengths[i]
+        windows[#windows + 1] = {
+            key = KEYS[k + i],
+            field = ARGV[a + 9 + i],
+            limit = limit,
+            used = counter_get(KEYS[k + i], ARGV[a + 9 + i]),
+            window_end = window_end,
+            reset = math.max(1, window_end - now),
+            ordinal = ordinals[i]
+        }
+    end
+end
+
+-- nothing is charged unless every limit has room
+for _, w in ipairs(windows) do
+    if w.used + cost > w.limit then
+        return reply(0, w.used, w.limit, w.reset, w.ordinal)
+    end
+end
+
+local in_flight = 0
+if max_concurrent > 0 then
+    redis.call('ZREMRANGEBYSCORE', KEYS[k + 4], '-inf', now_ms)
+    in_flight = redis.call('ZCARD', KEYS[k + 4])
+    if cost > 0 and in_flight >= max_concurrent then
+        -- a slot frees up whenever a request finishes, there's no window to wait for
+        return reply(0, in_flight, max_concurrent, 1, 4)
+    end
+end
+
+local minute = per_minute()
+if minute[1] == 0 then
+    return {0, minute[2], minute[3], minute[4], minute_limit, 1}
+end
+
+if cost > 0 then
+    for _, w in ipairs(windows) do
+        -- kept a little past the window so late readers still see it
+        w.used = counter_add(w.key, w.field, cost, w.window_end + 10)
+    end
+    if max_concurrent > 0 then
+        redis.call('ZADD', KEYS[k + 4], now_ms + lease_ttl, lease)
+        redis.call('PEXPIRE', KEYS[k + 4], lease_ttl)
+        in_flight = in_flight + 1
+    end
+end
+
+local binding = {minute[1], minute[2], minute[3], minute[4], minute_limit, 1}
+for _, w in ipairs(windows) do
+    if w.limit - w.used < binding[3] then
+        binding = reply(1, w.used, w.limit, w.reset, w.ordinal)
+    end
+end
+if max_concurrent > 0 and max_concurrent - in_flight < binding[3] then
+    binding = reply(1, in_flight, max_concurrent, 1, 4)
+end
+return binding
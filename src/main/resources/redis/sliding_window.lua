@@ -0,0 +1,63 @@
+-- Sliding window counter: the previous minute is weighted by how much of it
+-- still overlaps the last 60 seconds, so a client can't get 2x its limit
+-- across a minute boundary. Only admitted requests are counted.
+--
+-- KEYS[1] = counter for the current minute (see counters.lua)
+-- KEYS[2] = counter for the previous minute
+-- ARGV[1] = limit per minute
+-- ARGV[2] = cost of this request (0 = just read)
+-- ARGV[3] = window length (ms)
+-- ARGV[4] = time elapsed in the current window (ms)
+-- ARGV[5] = current minute's counter field ('' = legacy keys)
+-- ARGV[6] = previous minute's counter field
+-- ARGV[7] = when the current minute's counter can go (epoch seconds)
+--
+-- Returns {allowed, used, remaining, resetSeconds}
+
+local limit = tonumber(ARGV[1])
+local cost = tonumber(ARGV[2])
+local window = tonumber(ARGV[3])
+local elapsed = tonumber(ARGV[4])
+local current_field = ARGV[5]
+local previous_field = ARGV[6]
+local expire_at = tonumber(ARGV[7])
+
+local current = counter_get(KEYS[1], current_field)
+local previous = counter_get(KEYS[2], previous_field)
+
+local weight = (window - elapsed) / window
+local estimate = math.floor(previous * weight) + current
+
+local allowed = 0
+if estimate + cost <= limit then
+    allowed = 1
+    if cost > 0 then
+        -- expire_at is past the next window too, where it is read as "previous"
+        current = counter_add(KEYS[1], current_field, cost, expire_at)
+        estimate = estimate + cost
+    end
+end
+
+local remaining = limit - estimate
+if remaining < 0 then
+    remaining = 0
+end
+
+-- when rejected: how long until the previous window has decayed enough to fit this request
+local wait = window - elapsed
+if allowed == 0 and previous > 0 then
+    local room = limit - current - cost
+    if room >= 0 then
+        local needed = window * (1 - room / previous)
+        if needed > elapsed and needed < window then
+            wait = needed - elapsed
+        end
+    end
+end
+
+local reset = math.ceil(wait / 1000)
+if reset < 1 then
+    reset = 1
+end
+
+return {allowed, estimate, remaining, reset}
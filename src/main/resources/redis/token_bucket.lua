@@ -0,0 +1,58 @@
+-- Token bucket: refills at requestsPerMinute, holds at most `burst` tokens.
+--
+-- KEYS[1] = bucket state (tb:{hash}), a hash with fields tokens / ts
+-- ARGV[1] = capacity (burst)
+-- ARGV[2] = refill rate (tokens per minute)
+-- ARGV[3] = cost of this request (0 = just read)
+-- ARGV[4] = now (epoch ms)
+--
+-- Returns {allowed, used, remaining, resetSeconds}
+
+local capacity = tonumber(ARGV[1])
+local per_minute = tonumber(ARGV[2])
+local cost = tonumber(ARGV[3])
+local now = tonumber(ARGV[4])
+
+local rate = per_minute / 60000.0
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil or ts == nil then
+    tokens = capacity
+    ts = now
+end
+
+-- clocks of different nodes can disagree a little; never refill backwards
+if now > ts then
+    tokens = math.min(capacity, tokens + (now - ts) * rate)
+    ts = now
+end
+
+local allowed = 0
+if tokens >= cost then
+    allowed = 1
+    if cost > 0 then
+        tokens = tokens - cost
+        redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(ts))
+        -- once it would be full again the state carries no information
+        redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 1000)
+    end
+end
+
+local remaining = math.floor(tokens)
+local used = capacity - remaining
+
+local wait
+if allowed == 1 then
+    wait = (capacity - tokens) / rate
+else
+    wait = (cost - tokens) / rate
+end
+
+local reset = math.ceil(wait / 1000)
+if allowed == 0 and reset < 1 then
+    reset = 1
+end
+
+return {allowed, used, remaining, reset}
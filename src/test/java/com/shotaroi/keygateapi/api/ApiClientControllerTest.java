@@ -0,0 +1,60 @@
+package com.shotaroi.keygateapi.api;
+
+import com.shotaroi.keygateapi.api.ApiClientController.UpdateClientRequest;
+import com.shotaroi.keygateapi.ratelimit.FailMode;
+import com.shotaroi.keygateapi.security.ApiKeyHasher;
+import com.shotaroi.keygateapi.security.ApiKeyService;
+import com.shotaroi.keygateapi.security.ClientChangeBus;
+import com.shotaroi.keygateapi.security.RevokedKeys;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ApiClientControllerTest {
+
+    private final ApiClientRepository repo = mock(ApiClientRepository.class);
+    private final ApiClient client = new ApiClient();
+
+    private final ApiClientController controller = new ApiClientController(new ApiClientService(
+            repo,
+            mock(ApiKeyService.class),
+            new ApiKeyHasher(),
+            mock(ClientChangeBus.class),
+            mock(RevokedKeys.class)
+    ));
+
+    ApiClientControllerTest() {
+        client.setId(1L);
+        client.setName("client");
+        client.setApiKeyHash("hash");
+        client.setRequestsPerMinute(60);
+        client.setFailMode(FailMode.CLOSED);
+        when(repo.findById(1L)).thenReturn(Optional.of(client));
+        when(repo.save(any(ApiClient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void patchingOnlyTheFailModeChangesIt() {
+        client.setFailMode(FailMode.LOCAL);
+
+        var response = controller.update(1L, new UpdateClientRequest(
+                null, null, null, null, FailMode.CLOSED, null, null, null, null, null));
+
+        assertThat(response.failMode()).isEqualTo(FailMode.CLOSED);
+        assertThat(client.getFailMode()).isEqualTo(FailMode.CLOSED);
+    }
+
+    @Test
+    void patchingOnlyTheBurstKeepsTheFailMode() {
+        var response = controller.update(1L, new UpdateClientRequest(
+                null, null, null, 20, null, null, null, null, null, null));
+
+        assertThat(response.burst()).isEqualTo(20);
+        assertThat(response.failMode()).isEqualTo(FailMode.CLOSED);
+    }
+}
@@ -0,0 +1,46 @@
+package com.shotaroi.keygateapi.bench;
+
+import com.shotaroi.keygateapi.security.ApiKeyHash;
+import com.shotaroi.keygateapi.security.ApiKeyHasher;
+import com.shotaroi.keygateapi.security.ApiKeyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ApiKeyHasherBenchmark {
+
+    private ApiKeyHasher hasher;
+    private String rawKey;
+
+    @Setup
+    public void setUp() {
+        hasher = new ApiKeyHasher();
+        rawKey = new ApiKeyService().generateRawKey();
+    }
+
+    @Benchmark
+    public String sha256() {
+        return hasher.sha256(rawKey);
+    }
+
+    // what the auth filter uses: no hex String, only the 4-long key
+    @Benchmark
+    public ApiKeyHash hash() {
+        return hasher.hash(rawKey);
+    }
+}
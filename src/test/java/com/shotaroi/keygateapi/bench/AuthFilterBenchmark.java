@@ -0,0 +1,110 @@
+package com.shotaroi.keygateapi.bench;
+
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import com.shotaroi.keygateapi.security.ApiKeyAuthFilter;
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import com.shotaroi.keygateapi.trace.RequestIdFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request auth path in isolation: client cache hit + in-memory limiter.
+ * The 401 case measures writeApiError's JSON serialization, 429 the pre-encoded template.
+ * hotKeyRejected is a client the HotKeyDetector has blocked, so the limiter isn't called at all.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AuthFilterBenchmark {
+
+    private final FilterChain noop = (req, res) -> {
+    };
+
+    private ApiKeyAuthFilter allowing;
+    private ApiKeyAuthFilter rejecting;
+    private ApiKeyAuthFilter shielded;
+    private MockHttpServletRequest withKey;
+    private MockHttpServletRequest withoutKey;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ApiClientRepository repo = GatewayFixtures.repository(hash -> Optional.of(GatewayFixtures.client(hash, 300)));
+
+        allowing = GatewayFixtures.authFilter(repo,
+                GatewayFixtures.rateLimiter(a -> new GatewayFixtures.FixedLimiter(a, true), registry), registry);
+        rejecting = GatewayFixtures.authFilter(repo,
+                GatewayFixtures.rateLimiter(a -> new GatewayFixtures.FixedLimiter(a, false), registry), registry);
+        shielded = GatewayFixtures.authFilter(repo,
+                GatewayFixtures.rateLimiter(a -> new GatewayFixtures.FixedLimiter(a, false), true, registry), registry);
+
+        withKey = request();
+        withKey.addHeader("X-API-KEY", "bench-api-key-0123456789abcdefghijklmnopq");
+        withoutKey = request();
+        response = new MockHttpServletResponse();
+
+        // warm the client caches so we measure hits, not the first DB lookup
+        allowed();
+        rateLimited();
+        // enough rejections from the limiter to get the key blocked locally
+        for (int i = 0; i < 100; i++) {
+            hotKeyRejected();
+        }
+    }
+
+    @Benchmark
+    public int allowed() throws Exception {
+        return run(allowing, withKey);
+    }
+
+    @Benchmark
+    public int missingKey() throws Exception {
+        return run(allowing, withoutKey);
+    }
+
+    @Benchmark
+    public int rateLimited() throws Exception {
+        return run(rejecting, withKey);
+    }
+
+    @Benchmark
+    public int hotKeyRejected() throws Exception {
+        return run(shielded, withKey);
+    }
+
+    private int run(ApiKeyAuthFilter filter, MockHttpServletRequest request) throws Exception {
+        response.reset();
+        try {
+            filter.doFilter(request, response, noop);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response.getStatus();
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hello");
+        request.setAttribute(RequestIdFilter.ATTR, "bench-request-id");
+        return request;
+    }
+}
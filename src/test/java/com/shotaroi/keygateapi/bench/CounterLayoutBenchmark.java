@@ -0,0 +1,144 @@
+package com.shotaroi.keygateapi.bench;
+
+import com.shotaroi.keygateapi.ratelimit.CounterFormat;
+import com.shotaroi.keygateapi.ratelimit.FailMode;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.RedisRateLimiter;
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limiter calls against a real Redis, with the legacy and the compact counter layout. Reports
+ * ops/s as usual, and prints Redis memory per active client: once after every client has sent
+ * one request, and once more after the run, when the per-second quota has left its keys behind.
+ *
+ * <p>Needs Redis on {@code bench.redis.host}:{@code bench.redis.port} (localhost:6379).
+ * It uses database {@code bench.redis.database} (15) and FLUSHes it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class CounterLayoutBenchmark {
+
+    @Param({"LEGACY", "COMPACT"})
+    public CounterFormat format;
+
+    // per-minute window only, or with per-second, hourly and daily quotas on top
+    @Param({"false", "true"})
+    public boolean quotas;
+
+    @Param("10000")
+    public int clients;
+
+    private LettuceConnectionFactory factory;
+    private StringRedisTemplate redis;
+    private RedisRateLimiter limiter;
+    private RateLimitPolicy policy;
+    private String[] hashes;
+    private long baseline;
+
+    @Setup
+    public void setUp() {
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(
+                System.getProperty("bench.redis.host", "localhost"),
+                Integer.getInteger("bench.redis.port", 6379)
+        );
+        server.setDatabase(Integer.getInteger("bench.redis.database", 15));
+        factory = new LettuceConnectionFactory(server);
+        factory.afterPropertiesSet();
+        factory.start();
+        redis = new StringRedisTemplate(factory);
+        flush();
+
+        limiter = GatewayFixtures.redisRateLimiter(redis, format, new SimpleMeterRegistry());
+        // limits nobody reaches, so every call charges the counters; CLOSED so a dead Redis fails loudly
+        policy = new RateLimitPolicy(
+                RateLimitAlgorithm.FIXED_WINDOW,
+                100_000_000,
+                100_000_000,
+                FailMode.CLOSED,
+                quotas ? new RateLimitPolicy.Quotas(1_000_000, 1_000_000_000, 1_000_000_000, 0) : RateLimitPolicy.Quotas.NONE
+        );
+
+        SplittableRandom random = new SplittableRandom(42);
+        hashes = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            byte[] hash = new byte[32];
+            random.nextBytes(hash);
+            hashes[i] = HexFormat.of().formatHex(hash);
+        }
+
+        // the scripts are cached by the first call, so it goes before the baseline
+        check(hashes[0]);
+        baseline = usedMemory();
+        for (String hash : hashes) {
+            check(hash);
+        }
+        report("one request per client");
+    }
+
+    @Benchmark
+    public RateLimitResult check() {
+        return limiter.check(hashes[ThreadLocalRandom.current().nextInt(clients)], policy);
+    }
+
+    @TearDown
+    public void tearDown() {
+        report("after the run");
+        flush();
+        factory.destroy();
+    }
+
+    private void check(String hash) {
+        if (!limiter.check(hash, policy).allowed()) {
+            throw new IllegalStateException("Limiter call failed, is Redis running?");
+        }
+    }
+
+    private void report(String when) {
+        long keys = redis.execute((RedisCallback<Long>) connection -> connection.serverCommands().dbSize());
+        System.out.printf("%n%s%s, %s: %d keys, %.0f bytes of Redis memory per active client%n",
+                format, quotas ? " + quotas" : "", when, keys, (double) (usedMemory() - baseline) / clients);
+    }
+
+    private long usedMemory() {
+        Properties info = redis.execute((RedisCallback<Properties>) connection -> connection.serverCommands().info("memory"));
+        return Long.parseLong(info.getProperty("used_memory"));
+    }
+
+    private void flush() {
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+    }
+}
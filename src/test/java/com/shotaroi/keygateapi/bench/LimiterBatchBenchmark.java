@@ -0,0 +1,129 @@
+package com.shotaroi.keygateapi.bench;
+
+import com.shotaroi.keygateapi.ratelimit.BatchProperties;
+import com.shotaroi.keygateapi.ratelimit.CounterFormat;
+import com.shotaroi.keygateapi.ratelimit.FailMode;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.RedisRateLimiter;
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limiter calls against a real Redis, one EVALSHA per request vs. batched through
+ * {@code LimiterCallBatcher}. Besides ops/s it prints how many clients Redis has connected before
+ * and after the run: batching should add {@code dispatchers} connections, not one per batch.
+ *
+ * <p>Needs Redis on {@code bench.redis.host}:{@code bench.redis.port} (localhost:6379).
+ * It uses database {@code bench.redis.database} (15) and FLUSHes it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class LimiterBatchBenchmark {
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    @Param({"1", "2"})
+    public int dispatchers;
+
+    @Param("10000")
+    public int clients;
+
+    private LettuceConnectionFactory factory;
+    private StringRedisTemplate redis;
+    private RedisRateLimiter limiter;
+    private RateLimitPolicy policy;
+    private String[] hashes;
+    private long connectedBefore;
+
+    @Setup
+    public void setUp() {
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(
+                System.getProperty("bench.redis.host", "localhost"),
+                Integer.getInteger("bench.redis.port", 6379)
+        );
+        server.setDatabase(Integer.getInteger("bench.redis.database", 15));
+        factory = new LettuceConnectionFactory(server);
+        factory.afterPropertiesSet();
+        factory.start();
+        redis = new StringRedisTemplate(factory);
+        flush();
+        connectedBefore = connectedClients();
+
+        limiter = GatewayFixtures.redisRateLimiter(
+                redis,
+                CounterFormat.COMPACT,
+                new BatchProperties(batched, 128, Duration.ofNanos(200_000), 65_536, dispatchers, Duration.ofSeconds(1)),
+                new SimpleMeterRegistry()
+        );
+        // limits nobody reaches, so every call charges the counters; CLOSED so a dead Redis fails loudly
+        policy = new RateLimitPolicy(RateLimitAlgorithm.FIXED_WINDOW, 100_000_000, 100_000_000, FailMode.CLOSED, RateLimitPolicy.Quotas.NONE);
+
+        SplittableRandom random = new SplittableRandom(42);
+        hashes = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            byte[] hash = new byte[32];
+            random.nextBytes(hash);
+            hashes[i] = HexFormat.of().formatHex(hash);
+        }
+        if (!limiter.check(hashes[0], policy).allowed()) {
+            throw new IllegalStateException("Limiter call failed, is Redis running?");
+        }
+    }
+
+    @Benchmark
+    public RateLimitResult check() {
+        return limiter.check(hashes[ThreadLocalRandom.current().nextInt(clients)], policy);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nbatched=%s, dispatchers=%d: %d Redis clients connected before, %d after the run%n",
+                batched, dispatchers, connectedBefore, connectedClients());
+        flush();
+        factory.destroy();
+    }
+
+    private long connectedClients() {
+        Properties info = redis.execute((RedisCallback<Properties>) connection -> connection.serverCommands().info("clients"));
+        return Long.parseLong(info.getProperty("connected_clients"));
+    }
+
+    private void flush() {
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+    }
+}
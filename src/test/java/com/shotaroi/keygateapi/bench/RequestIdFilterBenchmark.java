@@ -0,0 +1,88 @@
+package com.shotaroi.keygateapi.bench;
+
+import com.shotaroi.keygateapi.trace.RequestIdFilter;
+import com.shotaroi.keygateapi.trace.RequestIdGenerator;
+import com.shotaroi.keygateapi.trace.RequestIdProperties;
+import com.shotaroi.keygateapi.trace.TimeOrderedRequestIdGenerator;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request id handling with and without an incoming X-Request-Id, and the two generators on
+ * their own. Run with {@code -t 16} (JMH threads) to see UUID.randomUUID() contend on its
+ * shared SecureRandom.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestIdFilterBenchmark {
+
+    private final FilterChain noop = (req, res) -> {
+    };
+
+    private final RequestIdGenerator timeOrdered = new TimeOrderedRequestIdGenerator();
+    private final RequestIdGenerator random = () -> UUID.randomUUID().toString();
+
+    private RequestIdFilter filter;
+    private MockHttpServletRequest withoutId;
+    private MockHttpServletRequest withId;
+    private MockHttpServletRequest withBadId;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        filter = new RequestIdFilter(timeOrdered, new RequestIdProperties(RequestIdProperties.Generator.TIME_ORDERED, 64));
+        withoutId = new MockHttpServletRequest("GET", "/hello");
+        withId = new MockHttpServletRequest("GET", "/hello");
+        withId.addHeader(RequestIdFilter.HEADER, "client-supplied-request-id");
+        withId.addHeader("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        withBadId = new MockHttpServletRequest("GET", "/hello");
+        withBadId.addHeader(RequestIdFilter.HEADER, "forged\nlog line");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public Object generated() throws Exception {
+        filter.doFilter(withoutId, response, noop);
+        return withoutId.getAttribute(RequestIdFilter.ATTR);
+    }
+
+    @Benchmark
+    public Object propagated() throws Exception {
+        filter.doFilter(withId, response, noop);
+        return withId.getAttribute(RequestIdFilter.ATTR);
+    }
+
+    @Benchmark
+    public Object replaced() throws Exception {
+        filter.doFilter(withBadId, response, noop);
+        return withBadId.getAttribute(RequestIdFilter.ATTR);
+    }
+
+    @Benchmark
+    public String timeOrderedId() {
+        return timeOrdered.next();
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return random.next();
+    }
+}
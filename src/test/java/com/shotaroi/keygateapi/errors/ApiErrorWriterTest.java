@@ -0,0 +1,91 @@
+package com.shotaroi.keygateapi.errors;
+
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The writer's bytes must be exactly what Jackson writes for the same {@link ApiError}.
+ */
+class ApiErrorWriterTest {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+    private static final Instant NOW = Instant.parse("2026-03-01T12:34:56.789012Z");
+
+    private final ApiErrorWriter writer = new ApiErrorWriter(JSON, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void rateLimitedMatchesJackson() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("limitPerMinute", 5);
+        details.put("usedThisMinute", 6L);
+        details.put("resetsInSeconds", 17L);
+
+        assertSameBytes(429, "rate_limited", "Too many requests", "/hello", details, "req-1");
+        // second call comes from the cached template
+        assertSameBytes(429, "rate_limited", "Too many requests", "/hello", details, "req-2");
+    }
+
+    @Test
+    void emptyDetailsAndNoRequestIdMatchJackson() {
+        assertSameBytes(401, "unauthorized", "Invalid API key", "/hello", Map.of(), "req-1");
+        assertSameBytes(401, "unauthorized", "Invalid API key", "/hello", Map.of(), null);
+    }
+
+    @Test
+    void nestedDetailsMatchJackson() {
+        Map<String, Object> fieldErrors = new LinkedHashMap<>();
+        fieldErrors.put("name", "must not be blank");
+        fieldErrors.put("requestsPerMinute", "must be greater than or equal to 1");
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("fieldErrors", fieldErrors);
+        details.put("scopes", List.of("read", "write"));
+        details.put("strict", true);
+
+        assertSameBytes(400, "validation_error", "Validation failed", "/clients", details, "req-1");
+    }
+
+    @Test
+    void escapingMatchesJackson() {
+        assertSameBytes(
+                400,
+                "bad_request",
+                "quote \" backslash \\ tab \t newline \n bell \u0007 é 日本 😀",
+                "/usage/history/\u001f",
+                Map.of("header", "X-API-KEY \"x\""),
+                "req-1"
+        );
+    }
+
+    @Test
+    void fallsBackToJacksonForOtherValues() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("when", Instant.EPOCH);
+        details.put("missing", null);
+
+        assertSameBytes(500, "internal_error", null, "/hello", details, "req-1");
+    }
+
+    private void assertSameBytes(int status, String error, String message, String path,
+                                 Map<String, Object> details, String requestId) {
+        Map<String, Object> merged = new LinkedHashMap<>(details);
+        if (requestId != null) {
+            merged.put("requestId", requestId);
+        }
+        byte[] expected = JSON.writeValueAsBytes(new ApiError(NOW, status, error, message, path, merged));
+
+        byte[] actual = writer.toBytes(status, error, message, path, details, requestId);
+
+        assertThat(new String(actual, StandardCharsets.UTF_8)).isEqualTo(new String(expected, StandardCharsets.UTF_8));
+        assertThat(actual).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,52 @@
+package com.shotaroi.keygateapi.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency, throughput and limiter accuracy of the MVC auth filter under skewed load, with
+ * healthy and flaky stand-ins for Redis and Postgres (see {@link LoadHarness} for what is real
+ * and what isn't). The report is printed for each run. Compare it before and after a change
+ * to the filter or the limiter.
+ *
+ * <p>Run with {@code ./mvnw test -Pload-test -Dtest=AuthFilterLoadTest}; see {@link LoadScenario}
+ * for the {@code -Dload.*} overrides.
+ */
+@Tag("load")
+class AuthFilterLoadTest {
+
+    @Test
+    void healthyBackendsAdmitExactlyEachClientsLimit() throws Exception {
+        LoadReport report = LoadHarness.run(LoadScenario.defaults().withRedisFailureRate(0).withDbFailureRate(0));
+        report.print("healthy Redis and Postgres");
+
+        assertThat(report.errors()).isZero();
+        assertThat(report.unavailable()).isZero();
+        assertThat(report.overAdmitted()).isZero();
+        assertThat(report.underAdmitted()).isZero();
+    }
+
+    @Test
+    void flakyRedisFallsBackWithoutErrors() throws Exception {
+        LoadReport report = LoadHarness.run(LoadScenario.defaults().withRedisFailureRate(0.05).withDbFailureRate(0));
+        report.print("5% of Redis calls fail");
+
+        // fail mode LOCAL: the breaker opens and this node limits on its own, nothing surfaces as an error
+        assertThat(report.errors()).isZero();
+        assertThat(report.unavailable()).isZero();
+        // Redis' window plus the local one, and one more local window if the run crosses a minute
+        assertThat(report.worstClientRatio()).isLessThanOrEqualTo(3.0);
+    }
+
+    @Test
+    void flakyPostgresOnlyFailsCacheMisses() throws Exception {
+        LoadReport report = LoadHarness.run(LoadScenario.defaults().withRedisFailureRate(0).withDbFailureRate(0.01));
+        report.print("1% of Postgres lookups fail");
+
+        // a failed lookup isn't cached, the client's next request tries again
+        assertThat(report.errors()).isLessThan(report.requests() / 100);
+        assertThat(report.overAdmitted()).isZero();
+    }
+}
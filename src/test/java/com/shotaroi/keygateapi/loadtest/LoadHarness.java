@@ -0,0 +1,271 @@
+package com.shotaroi.keygateapi.loadtest;
+
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.RateLimiter;
+import com.shotaroi.keygateapi.security.ApiKeyAuthFilter;
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Calls {@link ApiKeyAuthFilter#doFilter} directly with many concurrent requests, wired by
+ * {@link GatewayFixtures}: real client cache, {@code RedisRateLimiter}, breaker, local fallback and
+ * hot-key blocking. Redis and Postgres are in-memory stand-ins with injected latency and
+ * failures. The Redis stand-in replaces the limiter scripts, shards and batcher, and there
+ * is no Spring context or security filter chain in front. Keys are drawn with Zipf skew, so a few clients send most of the traffic and hit
+ * their limits, and the long tail mostly misses the cache once.
+ *
+ * <p>The Redis stand-in is one fixed window spanning the whole run. The exact number of
+ * requests each client should get through is therefore known in advance:
+ * {@code min(sent, limit)}.
+ */
+final class LoadHarness {
+
+    private static final FilterChain DOWNSTREAM = (req, res) -> { };
+
+    private final LoadScenario scenario;
+    private final ApiKeyAuthFilter filter;
+    private final String[] keys;
+    private final double[] popularity;
+
+    private LoadHarness(LoadScenario scenario) {
+        this.scenario = scenario;
+        this.keys = new String[scenario.clients()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "load-key-" + i;
+        }
+        this.popularity = zipfCdf(scenario.clients(), scenario.skew());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FakeRedis redis = new FakeRedis(scenario);
+        this.filter = GatewayFixtures.authFilter(
+                postgres(scenario),
+                GatewayFixtures.rateLimiter(algorithm -> new FakeRedisLimiter(algorithm, redis), scenario.hotKeys(), registry),
+                registry
+        );
+    }
+
+    /**
+     * Warms up a throwaway stack, then measures a fresh one (cold caches, empty counters).
+     */
+    static LoadReport run(LoadScenario scenario) throws Exception {
+        if (scenario.warmupRequests() > 0) {
+            new LoadHarness(scenario).drive(scenario.warmupRequests());
+        }
+        return new LoadHarness(scenario).drive(scenario.requests());
+    }
+
+    private LoadReport drive(int total) throws Exception {
+        long[] latencies = new long[total];
+        AtomicInteger next = new AtomicInteger();
+        AtomicIntegerArray sent = new AtomicIntegerArray(keys.length);
+        AtomicIntegerArray admitted = new AtomicIntegerArray(keys.length);
+        LongAdder rejected = new LongAdder();
+        LongAdder unauthorized = new LongAdder();
+        LongAdder unavailable = new LongAdder();
+        LongAdder errors = new LongAdder();
+
+        // closed loop: each worker sends its next request as soon as the last one is answered
+        Callable<Void> worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < total) {
+                int client = pickClient();
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hello");
+                request.addHeader("X-API-KEY", keys[client]);
+                MockHttpServletResponse response = new MockHttpServletResponse();
+
+                long start = System.nanoTime();
+                int status;
+                try {
+                    filter.doFilter(request, response, DOWNSTREAM);
+                    status = response.getStatus();
+                } catch (Exception e) {
+                    // an injected Postgres failure on a cache miss ends up as a 500
+                    status = 500;
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+                latencies[i] = System.nanoTime() - start;
+
+                sent.incrementAndGet(client);
+                switch (status) {
+                    case 200 -> admitted.incrementAndGet(client);
+                    case 429 -> rejected.increment();
+                    case 401 -> unauthorized.increment();
+                    case 503 -> unavailable.increment();
+                    default -> errors.increment();
+                }
+            }
+            return null;
+        };
+
+        long start = System.nanoTime();
+        try (ExecutorService pool = Executors.newFixedThreadPool(scenario.concurrency())) {
+            List<Future<Void>> futures = new ArrayList<>(scenario.concurrency());
+            for (int t = 0; t < scenario.concurrency(); t++) {
+                futures.add(pool.submit(worker));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long allowed = 0;
+        long expected = 0;
+        long over = 0;
+        long under = 0;
+        double worst = 0;
+        int limit = scenario.limitPerClient();
+        for (int c = 0; c < keys.length; c++) {
+            int a = admitted.get(c);
+            int e = Math.min(sent.get(c), limit);
+            allowed += a;
+            expected += e;
+            over += Math.max(0, a - limit);
+            under += Math.max(0, e - a);
+            worst = Math.max(worst, (double) a / limit);
+        }
+
+        long[] sorted = LoadReport.sorted(latencies);
+        return new LoadReport(
+                total,
+                elapsed,
+                LoadReport.percentile(sorted, 0.50),
+                LoadReport.percentile(sorted, 0.99),
+                LoadReport.percentile(sorted, 0.999),
+                sorted[sorted.length - 1],
+                allowed,
+                rejected.sum(),
+                unauthorized.sum(),
+                unavailable.sum(),
+                errors.sum(),
+                expected,
+                over,
+                under,
+                worst
+        );
+    }
+
+    private int pickClient() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int low = 0;
+        int high = popularity.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (popularity[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // cumulative share of traffic of clients 0..i, client i getting 1 / (i + 1)^skew
+    private static double[] zipfCdf(int clients, double skew) {
+        double[] cdf = new double[clients];
+        double sum = 0;
+        for (int i = 0; i < clients; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < clients; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    // Postgres stand-in: a bounded connection pool, query latency and the odd failed query;
+    // every key belongs to a client with the scenario's limit
+    private static ApiClientRepository postgres(LoadScenario scenario) {
+        Semaphore connections = new Semaphore(scenario.dbPoolSize(), true);
+        return GatewayFixtures.repository(hash -> {
+            connections.acquireUninterruptibly();
+            try {
+                pause(scenario.dbLatency(), Duration.ZERO);
+                if (ThreadLocalRandom.current().nextDouble() < scenario.dbFailureRate()) {
+                    throw new DataAccessResourceFailureException("injected Postgres failure");
+                }
+            } finally {
+                connections.release();
+            }
+            return Optional.of(GatewayFixtures.client(hash, scenario.limitPerClient()));
+        });
+    }
+
+    private static void pause(Duration latency, Duration jitter) {
+        long nanos = latency.toNanos();
+        if (!jitter.isZero()) {
+            nanos += ThreadLocalRandom.current().nextLong(jitter.toNanos() + 1);
+        }
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    /**
+     * Redis stand-in: one counter per key for the whole run, charged and checked atomically
+     * like the fixed window script, after one simulated round trip.
+     */
+    private static final class FakeRedis {
+        private final LoadScenario scenario;
+        private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        FakeRedis(LoadScenario scenario) {
+            this.scenario = scenario;
+        }
+
+        RateLimitResult charge(String apiKeyHash, int limit, int cost) {
+            pause(scenario.redisLatency(), scenario.redisJitter());
+            if (ThreadLocalRandom.current().nextDouble() < scenario.redisFailureRate()) {
+                throw new RedisConnectionFailureException("injected Redis failure");
+            }
+
+            AtomicLong counter = counters.computeIfAbsent(apiKeyHash, k -> new AtomicLong());
+            while (true) {
+                long used = counter.get();
+                if (used + cost > limit) {
+                    return new RateLimitResult(false, limit, used, 0, 60);
+                }
+                if (counter.compareAndSet(used, used + cost)) {
+                    return new RateLimitResult(true, limit, used + cost, limit - used - cost, 60);
+                }
+            }
+        }
+    }
+
+    private record FakeRedisLimiter(RateLimitAlgorithm algorithm, FakeRedis redis) implements RateLimiter {
+
+        @Override
+        public RateLimitResult tryAcquire(String apiKeyHash, RateLimitPolicy policy, int cost) {
+            return redis.charge(apiKeyHash, policy.requestsPerMinute(), cost);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.shotaroi.keygateapi.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * What a {@link LoadHarness} run measured: gateway latency percentiles, throughput, how the
+ * requests were answered, and how close each client's admitted count came to its limit.
+ */
+record LoadReport(
+        int requests,
+        long elapsedNanos,
+        long p50Nanos,
+        long p99Nanos,
+        long p999Nanos,
+        long maxNanos,
+        long allowed,
+        long rejected,
+        long unauthorized,
+        long unavailable,
+        long errors,
+        long expectedAllowed,   // sum over clients of min(sent, limit)
+        long overAdmitted,      // allowed beyond a client's limit
+        long underAdmitted,     // turned away although the client was under its limit
+        double worstClientRatio // highest allowed / limit of any client
+) {
+
+    static long percentile(long[] sortedNanos, double p) {
+        int index = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, index))];
+    }
+
+    static long[] sorted(long[] nanos) {
+        long[] copy = nanos.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    double throughput() {
+        return requests / (elapsedNanos / 1e9);
+    }
+
+    // 1.0 = every client got exactly min(sent, limit)
+    double accuracy() {
+        return expectedAllowed == 0 ? 1.0 : 1.0 - (double) (overAdmitted + underAdmitted) / expectedAllowed;
+    }
+
+    void print(String label) {
+        System.out.printf("%n== %s ==%n", label);
+        System.out.printf("%,d requests in %.2fs -> %,.0f req/s%n", requests, elapsedNanos / 1e9, throughput());
+        System.out.printf("latency p50 %s  p99 %s  p99.9 %s  max %s%n",
+                micros(p50Nanos), micros(p99Nanos), micros(p999Nanos), micros(maxNanos));
+        System.out.printf("200: %,d  429: %,d  401: %,d  503: %,d  errors: %,d%n",
+                allowed, rejected, unauthorized, unavailable, errors);
+        System.out.printf("accuracy %.4f  (over-admitted %,d, under-admitted %,d, worst client %.2fx its limit)%n",
+                accuracy(), overAdmitted, underAdmitted, worstClientRatio);
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%,dµs", nanos / 1_000);
+    }
+}
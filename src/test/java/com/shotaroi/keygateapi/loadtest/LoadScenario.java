@@ -0,0 +1,84 @@
+package com.shotaroi.keygateapi.loadtest;
+
+import java.time.Duration;
+
+/**
+ * Knobs for one {@link LoadHarness} run. Any of them can be overridden from the command line
+ * as {@code -Dload.<name>}, durations in microseconds:
+ *
+ * <pre>
+ * ./mvnw test -Pload-test -Dload.requests=1000000 -Dload.clients=20000 -Dload.redisLatencyUs=1000
+ * </pre>
+ */
+record LoadScenario(
+        int requests,            // measured requests
+        int warmupRequests,      // sent first through a separate stack, for the JIT
+        int clients,             // distinct API keys
+        double skew,             // Zipf exponent of key popularity, 0 = uniform
+        int limitPerClient,      // requestsPerMinute of every client
+        int concurrency,         // worker threads, like Tomcat's request pool
+        Duration redisLatency,
+        Duration redisJitter,    // up to this much more, uniformly at random
+        double redisFailureRate,
+        Duration dbLatency,
+        int dbPoolSize,
+        double dbFailureRate,
+        boolean hotKeys
+) {
+
+    static LoadScenario defaults() {
+        return new LoadScenario(
+                200_000,
+                50_000,
+                5_000,
+                1.1,
+                100,
+                64,
+                Duration.ofNanos(200_000),
+                Duration.ofNanos(300_000),
+                0,
+                Duration.ofMillis(2),
+                20,
+                0,
+                true
+        ).withSystemOverrides();
+    }
+
+    LoadScenario withRedisFailureRate(double rate) {
+        return new LoadScenario(requests, warmupRequests, clients, skew, limitPerClient, concurrency,
+                redisLatency, redisJitter, rate, dbLatency, dbPoolSize, dbFailureRate, hotKeys);
+    }
+
+    LoadScenario withDbFailureRate(double rate) {
+        return new LoadScenario(requests, warmupRequests, clients, skew, limitPerClient, concurrency,
+                redisLatency, redisJitter, redisFailureRate, dbLatency, dbPoolSize, rate, hotKeys);
+    }
+
+    private LoadScenario withSystemOverrides() {
+        return new LoadScenario(
+                Integer.getInteger("load.requests", requests),
+                Integer.getInteger("load.warmupRequests", warmupRequests),
+                Integer.getInteger("load.clients", clients),
+                doubleProperty("load.skew", skew),
+                Integer.getInteger("load.limitPerClient", limitPerClient),
+                Integer.getInteger("load.concurrency", concurrency),
+                micros("load.redisLatencyUs", redisLatency),
+                micros("load.redisJitterUs", redisJitter),
+                doubleProperty("load.redisFailureRate", redisFailureRate),
+                micros("load.dbLatencyUs", dbLatency),
+                Integer.getInteger("load.dbPoolSize", dbPoolSize),
+                doubleProperty("load.dbFailureRate", dbFailureRate),
+                Boolean.parseBoolean(System.getProperty("load.hotKeys", String.valueOf(hotKeys)))
+        );
+    }
+
+    private static double doubleProperty(String name, double fallback) {
+        String value = System.getProperty(name);
+        return value != null ? Double.parseDouble(value) : fallback;
+    }
+
+    private static Duration micros(String name, Duration fallback) {
+        String value = System.getProperty(name);
+        return value != null ? Duration.ofNanos(Long.parseLong(value) * 1_000) : fallback;
+    }
+}
@@ -0,0 +1,214 @@
+package com.shotaroi.keygateapi.loadtest;
+
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.RateLimiter;
+import com.shotaroi.keygateapi.security.ApiKeyAuthFilter;
+import com.shotaroi.keygateapi.security.ReactiveApiKeyAuthFilter;
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MVC filter on Tomcat's default thread pool vs. the WebFlux filter on a handful of
+ * event-loop threads, with every request held open by a slow downstream (a slow client
+ * or backend). Postgres and Redis latency are simulated as in {@link VirtualThreadLoadTest}.
+ *
+ * <p>Run with {@code ./mvnw test -Pload-test}.
+ */
+@Tag("load")
+class ReactiveLoadTest {
+
+    private static final int REQUESTS = 20_000;
+    private static final int CLIENTS = 1_000;
+
+    // Tomcat's default server.tomcat.threads.max
+    private static final int PLATFORM_THREADS = 200;
+    // what -Dreactor.netty.ioWorkerCount=4 gives the reactive profile
+    private static final int EVENT_LOOP_THREADS = 4;
+    private static final int DB_POOL_SIZE = 20;
+
+    private static final Duration DB_LATENCY = Duration.ofMillis(5);
+    private static final Duration REDIS_LATENCY = Duration.ofMillis(2);
+    private static final Duration DOWNSTREAM_LATENCY = Duration.ofMillis(100);
+
+    @Test
+    void eventLoopHoldsMoreSlowConnectionsThanThreadPerRequest() throws Exception {
+        double mvc = runMvc();
+        double reactive = runReactive();
+
+        System.out.printf("reactive / mvc throughput: %.1fx%n", reactive / mvc);
+        assertThat(reactive).isGreaterThan(mvc);
+    }
+
+    private double runMvc() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ApiKeyAuthFilter filter = GatewayFixtures.authFilter(
+                repository(),
+                GatewayFixtures.rateLimiter(SleepingLimiter::new, registry),
+                registry
+        );
+
+        InFlight inFlight = new InFlight();
+        FilterChain downstream = (req, res) -> {
+            inFlight.enter();
+            try {
+                Thread.sleep(DOWNSTREAM_LATENCY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.exit();
+            }
+        };
+
+        AtomicInteger ok = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService pool = Executors.newFixedThreadPool(PLATFORM_THREADS)) {
+            List<Future<?>> futures = new ArrayList<>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                String apiKey = "key-" + (i % CLIENTS);
+                futures.add(pool.submit(() -> {
+                    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hello");
+                    request.addHeader("X-API-KEY", apiKey);
+                    MockHttpServletResponse response = new MockHttpServletResponse();
+                    try {
+                        filter.doFilter(request, response, downstream);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                    if (response.getStatus() == 200) {
+                        ok.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        return report("mvc (" + PLATFORM_THREADS + " threads)", start, ok.get(), inFlight.peak());
+    }
+
+    private double runReactive() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReactiveApiKeyAuthFilter filter = GatewayFixtures.reactiveAuthFilter(
+                repository(),
+                GatewayFixtures.reactiveRateLimiter(REDIS_LATENCY, registry),
+                registry
+        );
+
+        Scheduler eventLoop = Schedulers.newParallel("event-loop", EVENT_LOOP_THREADS);
+        InFlight inFlight = new InFlight();
+        // the handler waits without holding a thread, like a slow write on a Netty channel
+        WebFilterChain downstream = exchange -> Mono.delay(DOWNSTREAM_LATENCY, eventLoop)
+                .doOnSubscribe(s -> inFlight.enter())
+                .doFinally(s -> inFlight.exit())
+                .then();
+
+        AtomicInteger ok = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            Flux.range(0, REQUESTS)
+                    .flatMap(i -> {
+                        MockServerWebExchange exchange = MockServerWebExchange.from(
+                                MockServerHttpRequest.get("/hello").header("X-API-KEY", "key-" + (i % CLIENTS))
+                        );
+                        return Mono.defer(() -> filter.filter(exchange, downstream))
+                                .subscribeOn(eventLoop)
+                                .doOnSuccess(v -> {
+                                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                                    if (status == null || status.value() == 200) {
+                                        ok.incrementAndGet();
+                                    }
+                                });
+                    }, REQUESTS)
+                    .blockLast();
+        } finally {
+            eventLoop.dispose();
+        }
+        return report("reactive (" + EVENT_LOOP_THREADS + " event loops)", start, ok.get(), inFlight.peak());
+    }
+
+    private static double report(String label, long start, int ok, int peakInFlight) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double throughput = REQUESTS / seconds;
+        System.out.printf("%-28s %,8d requests in %6.2fs -> %,10.0f req/s, peak %,6d open%n",
+                label, REQUESTS, seconds, throughput, peakInFlight);
+        assertThat(ok).isEqualTo(REQUESTS);
+        return throughput;
+    }
+
+    // Postgres stand-in, same as VirtualThreadLoadTest
+    private static ApiClientRepository repository() {
+        Semaphore connections = new Semaphore(DB_POOL_SIZE, true);
+        return GatewayFixtures.repository(hash -> {
+            connections.acquireUninterruptibly();
+            try {
+                Thread.sleep(DB_LATENCY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                connections.release();
+            }
+            return Optional.of(GatewayFixtures.client(hash, Integer.MAX_VALUE));
+        });
+    }
+
+    private static final class InFlight {
+        private final AtomicInteger current = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+
+        void enter() {
+            peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+        }
+
+        void exit() {
+            current.decrementAndGet();
+        }
+
+        int peak() {
+            return peak.get();
+        }
+    }
+
+    // blocking Redis stand-in for the MVC side
+    private record SleepingLimiter(RateLimitAlgorithm algorithm) implements RateLimiter {
+
+        @Override
+        public RateLimitResult tryAcquire(String apiKeyHash, RateLimitPolicy policy, int cost) {
+            try {
+                Thread.sleep(REDIS_LATENCY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new RateLimitResult(true, policy.requestsPerMinute(), 1, policy.requestsPerMinute() - 1, 60);
+        }
+    }
+}
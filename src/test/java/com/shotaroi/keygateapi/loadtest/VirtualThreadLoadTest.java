@@ -0,0 +1,140 @@
+package com.shotaroi.keygateapi.loadtest;
+
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.RateLimiter;
+import com.shotaroi.keygateapi.security.ApiKeyAuthFilter;
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the auth filter + a slow downstream handler on Tomcat's default platform pool
+ * and on virtual threads, with simulated Redis and Postgres latency.
+ *
+ * <p>Run with {@code ./mvnw test -Pload-test}.
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+
+    private static final int REQUESTS = 20_000;
+    private static final int CLIENTS = 1_000;
+
+    // Tomcat's default server.tomcat.threads.max
+    private static final int PLATFORM_THREADS = 200;
+    // matches maximum-pool-size in application-virtual.yml
+    private static final int DB_POOL_SIZE = 20;
+
+    private static final Duration DB_LATENCY = Duration.ofMillis(5);
+    private static final Duration REDIS_LATENCY = Duration.ofMillis(2);
+    private static final Duration DOWNSTREAM_LATENCY = Duration.ofMillis(20);
+
+    @Test
+    void virtualThreadsSustainMoreThroughputUnderIoLatency() throws Exception {
+        double platform;
+        try (ExecutorService pool = Executors.newFixedThreadPool(PLATFORM_THREADS)) {
+            platform = run("platform (" + PLATFORM_THREADS + " threads)", pool);
+        }
+
+        double virtual;
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            virtual = run("virtual", pool);
+        }
+
+        System.out.printf("virtual / platform throughput: %.1fx%n", virtual / platform);
+        assertThat(virtual).isGreaterThan(platform);
+    }
+
+    private double run(String label, ExecutorService pool) throws Exception {
+        // fresh filter per run so both start with a cold client cache
+        ApiKeyAuthFilter filter = newFilter();
+        FilterChain downstream = (req, res) -> sleep(DOWNSTREAM_LATENCY);
+
+        AtomicInteger ok = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(REQUESTS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            String apiKey = "key-" + (i % CLIENTS);
+            futures.add(pool.submit(() -> {
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hello");
+                request.addHeader("X-API-KEY", apiKey);
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                try {
+                    filter.doFilter(request, response, downstream);
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+                if (response.getStatus() == 200) {
+                    ok.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        double throughput = REQUESTS / seconds;
+        System.out.printf("%-24s %,8d requests in %6.2fs -> %,10.0f req/s%n", label, REQUESTS, seconds, throughput);
+        assertThat(ok.get()).isEqualTo(REQUESTS);
+        return throughput;
+    }
+
+    private static ApiKeyAuthFilter newFilter() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        // Postgres stand-in: a bounded "connection pool" plus query latency
+        Semaphore connections = new Semaphore(DB_POOL_SIZE, true);
+        ApiClientRepository repo = GatewayFixtures.repository(hash -> {
+            connections.acquireUninterruptibly();
+            try {
+                sleep(DB_LATENCY);
+            } finally {
+                connections.release();
+            }
+            return Optional.of(GatewayFixtures.client(hash, Integer.MAX_VALUE));
+        });
+
+        return GatewayFixtures.authFilter(repo, GatewayFixtures.rateLimiter(SleepingLimiter::new, registry), registry);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Redis stand-in: always allows, after one round trip of latency
+    private record SleepingLimiter(RateLimitAlgorithm algorithm) implements RateLimiter {
+
+        @Override
+        public RateLimitResult tryAcquire(String apiKeyHash, RateLimitPolicy policy, int cost) {
+            sleep(REDIS_LATENCY);
+            return new RateLimitResult(true, policy.requestsPerMinute(), 1, policy.requestsPerMinute() - 1, 60);
+        }
+    }
+}
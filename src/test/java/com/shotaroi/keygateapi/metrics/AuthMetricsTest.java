@@ -0,0 +1,48 @@
+package com.shotaroi.keygateapi.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AuthMetrics metrics =
+            new AuthMetrics(registry, new MetricsProperties(List.of("partner"), 2, Duration.ofMinutes(10)));
+
+    @Test
+    void busierClientsTakeOverTheAutoTags() {
+        assertThat(metrics.clientTag("early-1")).isEqualTo("early-1");
+        assertThat(metrics.clientTag("early-2")).isEqualTo("early-2");
+
+        String tag = null;
+        for (int i = 0; i < 150; i++) {
+            tag = metrics.clientTag("busy");
+        }
+
+        assertThat(tag).isEqualTo("busy");
+        // one of the early ones gave up its tag
+        assertThat(List.of(metrics.clientTag("early-1"), metrics.clientTag("early-2"))).contains("other");
+    }
+
+    @Test
+    void quietClientsStayOtherOnceTheTagsAreTaken() {
+        metrics.clientTag("a");
+        metrics.clientTag("b");
+
+        assertThat(metrics.clientTag("c")).isEqualTo("other");
+        assertThat(metrics.clientTag("partner")).isEqualTo("partner");
+    }
+
+    @Test
+    void clientNamesCantPassForReservedTags() {
+        assertThat(metrics.clientTag("none")).isEqualTo("_none");
+        assertThat(metrics.clientTag("other")).isEqualTo("_other");
+        assertThat(AuthMetrics.escape("_x")).isEqualTo("__x");
+        assertThat(metrics.clientTag(null)).isEqualTo("none");
+    }
+}
@@ -0,0 +1,71 @@
+package com.shotaroi.keygateapi.profiling;
+
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FilterProfilerTest {
+
+    private final FilterProfiler profiler = GatewayFixtures.profiler();
+
+    @Test
+    void recordsPhasesOnlyWhileARecordingRuns() {
+        time(FilterPhase.HASH);
+
+        profiler.start(Duration.ofMinutes(1), false);
+        time(FilterPhase.HASH);
+        time(FilterPhase.HASH);
+        time(FilterPhase.LIMITER);
+
+        ProfileReport running = profiler.report();
+        assertThat(running.recording()).isTrue();
+        assertThat(running.phases().get("hash").count()).isEqualTo(2);
+        assertThat(running.phases().get("limiter").count()).isEqualTo(1);
+        assertThat(running.phases().get("lookup").count()).isZero();
+
+        ProfileReport stopped = profiler.stop();
+        time(FilterPhase.HASH);
+
+        // the last recording's numbers stay readable, nothing more is added to them
+        assertThat(stopped.recording()).isFalse();
+        assertThat(profiler.report().phases().get("hash").count()).isEqualTo(2);
+    }
+
+    @Test
+    void endsByItselfAfterTheDuration() throws InterruptedException {
+        profiler.start(Duration.ofMillis(20), false);
+        Thread.sleep(50);
+        time(FilterPhase.LOOKUP);
+
+        ProfileReport report = profiler.report();
+        assertThat(report.recording()).isFalse();
+        assertThat(report.phases().get("lookup").count()).isZero();
+    }
+
+    @Test
+    void refusesToStartWhileOneIsRunning() {
+        profiler.start(Duration.ofMinutes(1), false);
+
+        assertThatThrownBy(() -> profiler.start(Duration.ofMinutes(1), false))
+                .isInstanceOf(IllegalStateException.class);
+
+        profiler.stop();
+        assertThat(profiler.start(Duration.ofMinutes(1), false).recording()).isTrue();
+    }
+
+    @Test
+    void cutsTheDurationToTheConfiguredMaximum() {
+        ProfileReport report = profiler.start(Duration.ofHours(5), false);
+
+        assertThat(Duration.between(report.startedAt(), report.endsAt())).isEqualTo(Duration.ofMinutes(10));
+    }
+
+    private void time(FilterPhase phase) {
+        FilterPhaseEvent event = profiler.begin();
+        profiler.end(event, phase, "req-1");
+    }
+}
@@ -0,0 +1,72 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void spreadsKeysEvenly() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(shards("a", "b", "c", "d"), 160);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor(key(i)), 1, Integer::sum);
+        }
+
+        assertThat(counts).hasSize(4);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(KEYS / 4 * 3 / 4, KEYS / 4 * 5 / 4));
+    }
+
+    @Test
+    void addingAShardOnlyMovesKeysToIt() {
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(shards("a", "b", "c", "d"), 160);
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(shards("a", "b", "c", "d", "e"), 160);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String was = before.nodeFor(key(i));
+            String is = after.nodeFor(key(i));
+            if (!was.equals(is)) {
+                assertThat(is).isEqualTo("e");
+                moved++;
+            }
+        }
+
+        // ideally 1/5 of the keys
+        assertThat(moved).isBetween(KEYS / 10, KEYS * 3 / 10);
+    }
+
+    @Test
+    void removingAShardOnlyMovesItsKeys() {
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(shards("a", "b", "c", "d"), 160);
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(shards("a", "b", "d"), 160);
+
+        for (int i = 0; i < KEYS; i++) {
+            String was = before.nodeFor(key(i));
+            if (!was.equals("c")) {
+                assertThat(after.nodeFor(key(i))).isEqualTo(was);
+            }
+        }
+    }
+
+    private static Map<String, String> shards(String... names) {
+        Map<String, String> shards = new LinkedHashMap<>();
+        for (String name : names) {
+            shards.put(name, name);
+        }
+        return shards;
+    }
+
+    // limiter keys are routed by the hex SHA-256 of the API key
+    private static String key(int i) {
+        return String.format("%064x", (long) i * 0x9e3779b97f4a7c15L);
+    }
+}
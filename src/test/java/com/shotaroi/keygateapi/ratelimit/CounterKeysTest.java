@@ -0,0 +1,42 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CounterKeysTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private final CounterKeys legacy = new CounterKeys(new CounterProperties(CounterFormat.LEGACY, false, 1000, null));
+    private final CounterKeys compact = new CounterKeys(new CounterProperties(CounterFormat.COMPACT, false, 1000, null));
+
+    @Test
+    void legacyCountersAreOneKeyPerWindow() {
+        assertThat(legacy.minute(HASH, 1_700_000_040)).isEqualTo(new CounterKeys.Counter("rl:" + HASH + ":1700000040", ""));
+        assertThat(legacy.window(HASH, 'd', 1_699_920_000)).isEqualTo(new CounterKeys.Counter("rl:" + HASH + ":d:1699920000", ""));
+    }
+
+    @Test
+    void compactCountersShareOneKeyPerClient() {
+        CounterKeys.Counter minute = compact.minute(HASH, 1_700_000_040);
+        CounterKeys.Counter day = compact.window(HASH, 'd', 1_699_920_000);
+
+        assertThat(minute.key()).isEqualTo(day.key()).hasSize(3 + 43).doesNotContain("=");
+        assertThat(minute.key().indexOf(':', 3)).isEqualTo(-1);
+        assertThat(minute.field()).isEqualTo("m" + Long.toString(1_700_000_040, 36));
+        assertThat(day.field()).startsWith("d");
+    }
+
+    @Test
+    void parsesLegacyKeysOnly() {
+        assertThat(CounterKeys.parseLegacy(legacy.minute(HASH, 1_700_000_040).key()))
+                .isEqualTo(new CounterKeys.LegacyCounter(HASH, 'm', 1_700_000_040));
+        assertThat(CounterKeys.parseLegacy(legacy.window(HASH, 's', 1_700_000_041).key()))
+                .isEqualTo(new CounterKeys.LegacyCounter(HASH, 's', 1_700_000_041));
+
+        assertThat(CounterKeys.parseLegacy(compact.minute(HASH, 1_700_000_040).key())).isNull();
+        assertThat(CounterKeys.parseLegacy("rl:" + HASH + ":x:1700000040")).isNull();
+        assertThat(CounterKeys.parseLegacy("rl:not-a-hash:1700000040")).isNull();
+    }
+}
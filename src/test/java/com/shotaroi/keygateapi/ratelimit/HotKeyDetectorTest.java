@@ -0,0 +1,66 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import com.shotaroi.keygateapi.support.GatewayFixtures.FixedLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTest {
+
+    private static final String KEY = "hash";
+
+    private final HotKeyDetector detector =
+            new HotKeyDetector(new HotKeyProperties(true, 3, 1024, 4, 100), new SimpleMeterRegistry());
+
+    @Test
+    void blocksOnlyRequestsCostingMoreThanWhatWasLeft() {
+        // fixed_window.lua rejecting a cost-10 call with 55 of 60 used: {allowed, used, remaining, reset}
+        reject(RateLimitResult.fromScriptReply(60, List.of(0L, 55L, 5L, 30L)));
+
+        assertThat(detector.blockedResult(KEY, 1)).isNull();
+        assertThat(detector.blockedResult(KEY, 5)).isNull();
+        RateLimitResult blocked = detector.blockedResult(KEY, 10);
+        assertThat(blocked).isNotNull();
+        assertThat(blocked.allowed()).isFalse();
+        assertThat(blocked.remaining()).isEqualTo(5);
+    }
+
+    @Test
+    void sameForAMinuteRejectionFromTheQuotaScript() {
+        // quotas.lua passes the minute's reply on, plus {limit, window ordinal 1}
+        reject(RateLimitResult.fromQuotaReply(List.of(0L, 55L, 5L, 30L, 60L, 1L), "lease"));
+
+        assertThat(detector.blockedResult(KEY, 5)).isNull();
+        assertThat(detector.blockedResult(KEY, 10)).isNotNull();
+    }
+
+    @Test
+    void fullWindowBlocksEveryRequest() {
+        RateLimitResult rejected = new FixedLimiter(RateLimitAlgorithm.FIXED_WINDOW, false)
+                .tryAcquire(KEY, RateLimitPolicy.fixedWindow(60), 1);
+        reject(rejected);
+
+        RateLimitResult blocked = detector.blockedResult(KEY, 1);
+        assertThat(blocked).isNotNull();
+        assertThat(blocked.remaining()).isZero();
+        assertThat(blocked.limit()).isEqualTo(60);
+    }
+
+    @Test
+    void quotaAndConcurrencyRejectionsDontBlock() {
+        // day quota full, then concurrency cap reached
+        reject(RateLimitResult.fromQuotaReply(List.of(0L, 1000L, 0L, 3600L, 1000L, 3L), null));
+        reject(RateLimitResult.fromQuotaReply(List.of(0L, 5L, 0L, 1L, 5L, 4L), null));
+
+        assertThat(detector.blockedResult(KEY, 1)).isNull();
+    }
+
+    private void reject(RateLimitResult result) {
+        for (int i = 0; i < 5; i++) {
+            detector.onResult(KEY, result);
+        }
+    }
+}
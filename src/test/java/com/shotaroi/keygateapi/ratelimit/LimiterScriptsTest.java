@@ -0,0 +1,144 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The limiter scripts against a real Redis on {@code test.redis.host}:{@code test.redis.port}
+ * (localhost:6379), database {@code test.redis.database} (15). Every test uses fresh keys.
+ */
+@Tag("redis")
+class LimiterScriptsTest {
+
+    private final LettuceConnectionFactory factory;
+    private final StringRedisTemplate redis;
+
+    LimiterScriptsTest() {
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(
+                System.getProperty("test.redis.host", "localhost"),
+                Integer.getInteger("test.redis.port", 6379)
+        );
+        server.setDatabase(Integer.getInteger("test.redis.database", 15));
+        factory = new LettuceConnectionFactory(server);
+        factory.afterPropertiesSet();
+        factory.start();
+        redis = new StringRedisTemplate(factory);
+    }
+
+    @AfterEach
+    void closeRedis() {
+        factory.destroy();
+    }
+
+    @Test
+    void rejectedExpensiveCallLeavesTheRestForCheapOnes() throws InterruptedException {
+        awayFromMinuteBoundary();
+        for (CounterFormat format : CounterFormat.values()) {
+            for (RateLimitPolicy.Quotas quotas : new RateLimitPolicy.Quotas[]{
+                    RateLimitPolicy.Quotas.NONE,
+                    new RateLimitPolicy.Quotas(0, 10_000, 0, 0)
+            }) {
+                RedisRateLimiter limiter = GatewayFixtures.redisRateLimiter(redis, format, new SimpleMeterRegistry());
+                RateLimitPolicy policy = new RateLimitPolicy(RateLimitAlgorithm.FIXED_WINDOW, 60, 60, FailMode.CLOSED, quotas);
+                String hash = newHash();
+
+                assertThat(limiter.check(hash, policy, 55).allowed()).isTrue();
+
+                RateLimitResult rejected = limiter.check(hash, policy, 10);
+                assertThat(rejected.allowed()).as("%s %s", format, quotas).isFalse();
+                assertThat(rejected.window()).isEqualTo(QuotaWindow.MINUTE);
+                assertThat(rejected.used()).isEqualTo(55);
+                assertThat(rejected.remaining()).isEqualTo(5);
+
+                RateLimitResult cheap = limiter.check(hash, policy, 5);
+                assertThat(cheap.allowed()).as("%s %s", format, quotas).isTrue();
+                assertThat(cheap.remaining()).isZero();
+                assertThat(limiter.check(hash, policy, 1).allowed()).isFalse();
+            }
+        }
+    }
+
+    @Test
+    void rejectionsAreNotCounted() throws InterruptedException {
+        awayFromMinuteBoundary();
+        RedisRateLimiter limiter = GatewayFixtures.redisRateLimiter(redis, CounterFormat.COMPACT, new SimpleMeterRegistry());
+        RateLimitPolicy policy = new RateLimitPolicy(RateLimitAlgorithm.FIXED_WINDOW, 3, 3, FailMode.CLOSED, RateLimitPolicy.Quotas.NONE);
+        String hash = newHash();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.check(hash, policy).allowed()).isTrue();
+        }
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.check(hash, policy).allowed()).isFalse();
+        }
+
+        RateLimitResult peeked = limiter.peek(hash, policy);
+        assertThat(peeked.used()).isEqualTo(3);
+        assertThat(peeked.remaining()).isZero();
+    }
+
+    @Test
+    void legacyCountersAreCopiedUntilTheCutOverAndOnlyThenDeleted() throws InterruptedException {
+        awayFromMinuteBoundary();
+        String hash = newHash();
+        long now = Instant.now().getEpochSecond();
+        String legacyKey = GatewayFixtures.counterKeys(CounterFormat.LEGACY).minute(hash, now - (now % 60)).key();
+        RedisRateLimiter compact = GatewayFixtures.redisRateLimiter(redis, CounterFormat.COMPACT, new SimpleMeterRegistry());
+        RateLimitPolicy policy = new RateLimitPolicy(RateLimitAlgorithm.FIXED_WINDOW, 60, 60, FailMode.CLOSED, RateLimitPolicy.Quotas.NONE);
+
+        redis.opsForValue().set(legacyKey, "10", Duration.ofMinutes(2));
+        CounterMigrator rollingOut = migrator(null);
+        rollingOut.migrate();
+        // an old node keeps counting on the legacy key
+        redis.opsForValue().increment(legacyKey, 5);
+        rollingOut.migrate();
+        rollingOut.migrate();
+
+        assertThat(compact.peek(hash, policy).used()).isEqualTo(15);
+        assertThat(redis.hasKey(legacyKey)).isTrue();
+
+        migrator(Instant.now().minusSeconds(1)).migrate();
+
+        assertThat(redis.hasKey(legacyKey)).isFalse();
+        assertThat(compact.peek(hash, policy).used()).isEqualTo(15);
+    }
+
+    private CounterMigrator migrator(Instant legacyCutover) {
+        CounterProperties props = new CounterProperties(CounterFormat.COMPACT, true, 1000, legacyCutover);
+        RedisShards shards = new RedisShards(
+                new ShardProperties(160, Duration.ofMillis(100), Duration.ofMillis(250), List.of()),
+                redis,
+                Optional.empty(),
+                new SimpleMeterRegistry()
+        );
+        return new CounterMigrator(shards, new CounterKeys(props), props);
+    }
+
+    private static String newHash() {
+        return UUID.randomUUID().toString().replace("-", "") + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    // a test that runs into the next minute would see the counters start over
+    private static void awayFromMinuteBoundary() throws InterruptedException {
+        int second = LocalTime.now(ZoneOffset.UTC).getSecond();
+        if (second >= 55) {
+            Thread.sleep((61 - second) * 1000L);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// checks the KEYS/ARGV layout against the header of redis/quotas.lua, 1-based like Lua
+class QuotaScriptsTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private final CounterKeys legacy = new CounterKeys(new CounterProperties(CounterFormat.LEGACY, false, 1000, null));
+    private final RateLimitPolicy policy = new RateLimitPolicy(
+            RateLimitAlgorithm.FIXED_WINDOW, 60, 60, FailMode.LOCAL, new RateLimitPolicy.Quotas(5, 100, 1000, 3));
+
+    @Test
+    void quotaKeysAndArgsFollowTheMinuteOnes() {
+        ScriptCall minute = new FixedWindowRateLimiter(null, legacy).prepare(HASH, policy, 2);
+        long before = System.currentTimeMillis();
+        ScriptCall wrapped = QuotaScripts.wrap(minute, legacy, HASH, policy, 2, "lease-1", Duration.ofSeconds(60));
+        long after = System.currentTimeMillis();
+
+        List<String> keys = wrapped.keys();
+        List<String> args = wrapped.args();
+        int k = Integer.parseInt(argv(args, args.size() - 1));
+        int a = Integer.parseInt(argv(args, args.size()));
+        assertThat(k).isEqualTo(1);
+        assertThat(a).isEqualTo(5);
+
+        // the algorithm's own KEYS and ARGV come first, unchanged
+        assertThat(keys.subList(0, k)).isEqualTo(minute.keys());
+        assertThat(args.subList(0, a)).isEqualTo(minute.args());
+
+        assertThat(keys).hasSize(k + 4);
+        assertThat(key(keys, k + 1)).startsWith("rl:" + HASH + ":s:");
+        assertThat(key(keys, k + 2)).startsWith("rl:" + HASH + ":h:");
+        assertThat(key(keys, k + 3)).startsWith("rl:" + HASH + ":d:");
+        assertThat(key(keys, k + 4)).isEqualTo("cc:" + HASH);
+
+        assertThat(args).hasSize(a + 14);
+        assertThat(argv(args, a + 1)).isEqualTo("60");
+        assertThat(List.of(argv(args, a + 2), argv(args, a + 3), argv(args, a + 4))).containsExactly("5", "100", "1000");
+        assertThat(argv(args, a + 5)).isEqualTo("3");
+        assertThat(argv(args, a + 6)).isEqualTo("2");
+        assertThat(Long.parseLong(argv(args, a + 7))).isBetween(before, after);
+        assertThat(argv(args, a + 8)).isEqualTo("lease-1");
+        assertThat(argv(args, a + 9)).isEqualTo("60000");
+        // legacy keys have no fields
+        assertThat(List.of(argv(args, a + 10), argv(args, a + 11), argv(args, a + 12))).containsOnly("");
+
+        assertThat(wrapped.limit()).isEqualTo(60);
+        assertThat(wrapped.lease()).isEqualTo("lease-1");
+        assertThat(wrapped.script().getScriptAsString())
+                .startsWith("local function per_minute()\n" + minute.script().getScriptAsString());
+    }
+
+    @Test
+    void kAndATrackTheAlgorithm() {
+        CounterKeys compact = new CounterKeys(new CounterProperties(CounterFormat.COMPACT, false, 1000, null));
+        ScriptCall minute = new SlidingWindowRateLimiter(null, compact).prepare(HASH, policy, 1);
+        ScriptCall wrapped = QuotaScripts.wrap(minute, compact, HASH, policy, 1, null, Duration.ofSeconds(60));
+
+        List<String> args = wrapped.args();
+        int k = Integer.parseInt(argv(args, args.size() - 1));
+        int a = Integer.parseInt(argv(args, args.size()));
+        assertThat(k).isEqualTo(minute.keys().size()).isEqualTo(2);
+        assertThat(a).isEqualTo(minute.args().size()).isEqualTo(7);
+
+        // one hash per client: every counter is a field of the minute's key
+        assertThat(key(wrapped.keys(), k + 1)).isEqualTo(key(wrapped.keys(), 1));
+        assertThat(argv(args, a + 10)).startsWith("s");
+        assertThat(argv(args, a + 11)).startsWith("h");
+        assertThat(argv(args, a + 12)).startsWith("d");
+        assertThat(argv(args, a + 8)).isEmpty();
+        assertThat(wrapped.lease()).isNull();
+    }
+
+    @Test
+    void oneCombinedScriptPerAlgorithm() {
+        ScriptCall first = QuotaScripts.wrap(new FixedWindowRateLimiter(null, legacy).prepare(HASH, policy, 1),
+                legacy, HASH, policy, 1, null, Duration.ofSeconds(60));
+        ScriptCall second = QuotaScripts.wrap(new FixedWindowRateLimiter(null, legacy).prepare("other", policy, 1),
+                legacy, "other", policy, 1, null, Duration.ofSeconds(60));
+
+        assertThat(second.script()).isSameAs(first.script());
+    }
+
+    private static String key(List<String> keys, int luaIndex) {
+        return keys.get(luaIndex - 1);
+    }
+
+    private static String argv(List<String> args, int luaIndex) {
+        return args.get(luaIndex - 1);
+    }
+}
@@ -0,0 +1,43 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitResultTest {
+
+    @Test
+    void quotaReplyNamesTheBindingWindow() {
+        // {allowed, used, remaining, resetSeconds, limit, window}, window ordinals as in quotas.lua
+        assertThat(window(0)).isEqualTo(QuotaWindow.SECOND);
+        assertThat(window(1)).isEqualTo(QuotaWindow.MINUTE);
+        assertThat(window(2)).isEqualTo(QuotaWindow.HOUR);
+        assertThat(window(3)).isEqualTo(QuotaWindow.DAY);
+        assertThat(window(4)).isEqualTo(QuotaWindow.CONCURRENT);
+
+        RateLimitResult result = RateLimitResult.fromQuotaReply(List.of(1L, 40L, 60L, 1800L, 100L, 2L), null);
+        assertThat(result.limit()).isEqualTo(100);
+        assertThat(result.used()).isEqualTo(40);
+        assertThat(result.remaining()).isEqualTo(60);
+        assertThat(result.resetSeconds()).isEqualTo(1800);
+        assertThat(result.unavailable()).isFalse();
+    }
+
+    @Test
+    void leaseOnlyComesWithAnAdmittedRequest() {
+        RateLimitResult allowed = RateLimitResult.fromQuotaReply(List.of(1L, 2L, 1L, 1L, 3L, 4L), "lease-1");
+        RateLimitResult rejected = RateLimitResult.fromQuotaReply(List.of(0L, 3L, 0L, 1L, 3L, 4L), "lease-1");
+
+        assertThat(allowed.allowed()).isTrue();
+        assertThat(allowed.concurrencyLease()).isEqualTo("lease-1");
+        // the script didn't take a slot, so there is nothing to release
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.concurrencyLease()).isNull();
+    }
+
+    private static QuotaWindow window(long ordinal) {
+        return RateLimitResult.fromQuotaReply(List.of(0L, 1L, 0L, 1L, 1L, ordinal), null).window();
+    }
+}
@@ -0,0 +1,40 @@
+package com.shotaroi.keygateapi.ratelimit;
+
+import com.shotaroi.keygateapi.ratelimit.RouteCostProperties.Route;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RouteCostsTest {
+
+    private final RouteCosts costs = new RouteCosts(new RouteCostProperties(1, List.of(
+            new Route("/reports/**", null, 10),
+            new Route("/reports/{id}/export", "GET", 50),
+            new Route("/reports/daily", null, 20),
+            new Route("/orders/*", "POST", 5)
+    )));
+
+    @Test
+    void mostSpecificRouteWins() {
+        assertThat(costs.costOf("GET", "/reports/daily")).isEqualTo(20);
+        assertThat(costs.costOf("GET", "/reports/42/export")).isEqualTo(50);
+        assertThat(costs.costOf("POST", "/reports/42/export")).isEqualTo(10);
+        assertThat(costs.costOf("GET", "/reports/42")).isEqualTo(10);
+    }
+
+    @Test
+    void unmatchedRoutesCostTheDefault() {
+        assertThat(costs.costOf("GET", "/hello")).isEqualTo(1);
+        assertThat(costs.costOf("GET", "/orders/7")).isEqualTo(1);
+        assertThat(costs.costOf("POST", "/orders/7")).isEqualTo(5);
+    }
+
+    @Test
+    void rejectsCostsBelowOne() {
+        assertThatThrownBy(() -> new RouteCosts(new RouteCostProperties(1, List.of(new Route("/free", null, 0)))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,117 @@
+package com.shotaroi.keygateapi.security;
+
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ApiClientCacheTest {
+
+    private static final ApiKeyHash KEY = new ApiKeyHash(1, 2, 3, 4);
+    private static final int CALLERS = 50;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch dbAnswers = new CountDownLatch(1);
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private final ApiClientRepository repo = GatewayFixtures.repository(hash -> {
+        queries.incrementAndGet();
+        try {
+            dbAnswers.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Optional.of(GatewayFixtures.client(hash, 60));
+    });
+
+    private final ApiClientCache cache = new ApiClientCache(
+            repo,
+            new AuthCacheProperties(1_000, Duration.ofMinutes(1), Duration.ofSeconds(10), 0.8, 1),
+            registry
+    );
+
+    @Test
+    void concurrentMissesShareOneLookup() throws Exception {
+        try (ExecutorService pool = Executors.newFixedThreadPool(CALLERS)) {
+            List<Future<Optional<ApiPrincipal>>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(pool.submit(() -> cache.find(KEY)));
+            }
+            // hold the query until everyone else is waiting on it
+            awaitCoalesced(CALLERS - 1);
+            dbAnswers.countDown();
+
+            for (Future<Optional<ApiPrincipal>> result : results) {
+                assertThat(result.get()).isPresent();
+            }
+        }
+
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(cache.isCached(KEY)).isTrue();
+    }
+
+    @Test
+    void lookupRacingAnInvalidationIsNotCached() throws Exception {
+        try (ExecutorService pool = Executors.newSingleThreadExecutor()) {
+            Future<Optional<ApiPrincipal>> result = pool.submit(() -> cache.find(KEY));
+            while (queries.get() == 0) {
+                Thread.onSpinWait();
+            }
+            // the row changed while the lookup was running
+            cache.invalidate(KEY.toHex());
+            dbAnswers.countDown();
+
+            assertThat(result.get()).isPresent();
+        }
+
+        assertThat(cache.isCached(KEY)).isFalse();
+    }
+
+    @Test
+    void anErrorInTheLookupReachesTheCallersWaitingOnIt() throws Exception {
+        CountDownLatch failNow = new CountDownLatch(1);
+        ApiClientCache failing = new ApiClientCache(
+                GatewayFixtures.repository(hash -> {
+                    try {
+                        failNow.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new LinkageError("driver class went missing");
+                }),
+                new AuthCacheProperties(1_000, Duration.ofMinutes(1), Duration.ofSeconds(10), 0.8, 1),
+                registry
+        );
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(2)) {
+            Future<Optional<ApiPrincipal>> first = pool.submit(() -> failing.find(KEY));
+            Future<Optional<ApiPrincipal>> second = pool.submit(() -> failing.find(KEY));
+            awaitCoalesced(1);
+            failNow.countDown();
+
+            assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(LinkageError.class);
+            assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(LinkageError.class);
+        }
+    }
+
+    private void awaitCoalesced(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.counter("keygate.auth.cache.coalesced").count() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.shotaroi.keygateapi.security;
+
+import com.shotaroi.keygateapi.api.ApiClient;
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApiClientCacheWarmerTest {
+
+    private final ApiClientRepository repo = mock(ApiClientRepository.class);
+    private final ApiClientCache cache = mock(ApiClientCache.class);
+
+    // findIdRange calls as {afterId, lastId}, and the ids put into the cache; filled from pool threads
+    private final List<long[]> rangeQueries = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> cached = Collections.synchronizedList(new ArrayList<>());
+
+    ApiClientCacheWarmerTest() {
+        doAnswer(inv -> cached.add(inv.<ApiClient>getArgument(0).getId()))
+                .when(cache).put(any(ApiClient.class), any());
+    }
+
+    @Test
+    void slicesCoverEveryIdOnce() {
+        assertPreloads(ids(LongStream.rangeClosed(1, 10)), 4, 1000);
+        assertThat(rangeQueries).extracting(r -> r[0] + ".." + r[1])
+                .containsExactlyInAnyOrder("0..3", "3..6", "6..9", "9..10");
+    }
+
+    @Test
+    void singleRowIsOneSlice() {
+        assertPreloads(ids(LongStream.of(42)), 4, 1000);
+        assertThat(rangeQueries).extracting(r -> r[0] + ".." + r[1]).containsExactly("41..42");
+    }
+
+    @Test
+    void fewerIdsThanSlices() {
+        assertPreloads(ids(LongStream.rangeClosed(7, 9)), 8, 1000);
+        assertThat(rangeQueries).hasSize(3);
+    }
+
+    @Test
+    void sparseIdsStillEndUpInTheirSlices() {
+        // ranges are split by id, not by row count, so most slices here are empty
+        TreeSet<Long> ids = ids(LongStream.of(5, 6, 7, 499_999, 1_000_000));
+        assertPreloads(ids, 4, 1000);
+
+        assertThat(rangeQueries).hasSize(4);
+        assertThat(rangeQueries).allSatisfy(r -> assertThat(r[1] - r[0]).isLessThanOrEqualTo(249_999));
+        assertThat(rangeQueries).anySatisfy(r -> assertThat(r[1]).isEqualTo(1_000_000));
+    }
+
+    @Test
+    void pagesThroughASliceByLastId() {
+        assertPreloads(ids(LongStream.rangeClosed(1, 5)), 1, 2);
+
+        // full pages move the keyset to their last id, the short one ends the slice
+        assertThat(rangeQueries).extracting(r -> r[0]).containsExactly(0L, 2L, 4L);
+    }
+
+    @Test
+    void fullLastPageCostsOneEmptyQuery() {
+        assertPreloads(ids(LongStream.rangeClosed(1, 4)), 1, 2);
+
+        assertThat(rangeQueries).extracting(r -> r[0]).containsExactly(0L, 2L, 4L);
+    }
+
+    @Test
+    void emptyTableLoadsNothing() {
+        warmer(4, 1000, false).preload();
+
+        verify(repo, never()).findIdRange(anyLong(), anyLong(), any());
+        assertThat(cached).isEmpty();
+    }
+
+    @Test
+    void refreshStartsFiveSecondsBeforeTheWatermark() {
+        ApiClientCacheWarmer warmer = warmer(4, 2, true);
+        Instant before = Instant.now();
+        warmer.run(new DefaultApplicationArguments());
+        Instant after = Instant.now();
+
+        Instant changed = after.plusSeconds(30);
+        when(repo.findUpdatedSince(any(), anyLong(), any())).thenReturn(List.of(client(3, changed)));
+        warmer.refresh();
+
+        ArgumentCaptor<Instant> since = ArgumentCaptor.forClass(Instant.class);
+        verify(repo).findUpdatedSince(since.capture(), eq(0L), limit(2));
+        assertThat(since.getValue()).isBetween(before.minusSeconds(5), after.minusSeconds(5));
+        assertThat(cached).containsExactly(3L);
+
+        // the next run picks up from the newest row seen, with the same overlap
+        when(repo.findUpdatedSince(any(), anyLong(), any())).thenReturn(List.of());
+        warmer.refresh();
+        verify(repo).findUpdatedSince(eq(changed.minusSeconds(5)), eq(0L), limit(2));
+    }
+
+    @Test
+    void refreshPagesByUpdatedAtThenId() {
+        ApiClientCacheWarmer warmer = warmer(4, 2, true);
+        warmer.run(new DefaultApplicationArguments());
+
+        Instant t = Instant.now().plusSeconds(10);
+        when(repo.findUpdatedSince(any(), anyLong(), any())).thenReturn(
+                List.of(client(8, t), client(2, t.plusSeconds(1))),
+                List.of(client(5, t.plusSeconds(1)))
+        );
+        warmer.refresh();
+
+        verify(repo).findUpdatedSince(eq(t.plusSeconds(1)), eq(2L), limit(2));
+        assertThat(cached).containsExactly(8L, 2L, 5L);
+    }
+
+    @Test
+    void olderRowsInTheOverlapDontMoveTheWatermarkBack() {
+        ApiClientCacheWarmer warmer = warmer(4, 10, true);
+        warmer.run(new DefaultApplicationArguments());
+        Instant later = Instant.now().plusSeconds(60);
+
+        when(repo.findUpdatedSince(any(), anyLong(), any())).thenReturn(List.of(client(1, later)));
+        warmer.refresh();
+        // re-read from the overlap, older than what was already seen
+        when(repo.findUpdatedSince(any(), anyLong(), any())).thenReturn(List.of(client(1, later.minusSeconds(3))));
+        warmer.refresh();
+        when(repo.findUpdatedSince(any(), anyLong(), any())).thenReturn(List.of());
+        warmer.refresh();
+
+        // the second and third run both start from the newest row
+        verify(repo, times(2)).findUpdatedSince(eq(later.minusSeconds(5)), eq(0L), limit(10));
+    }
+
+    @Test
+    void failedRefreshKeepsTheWatermark() {
+        ApiClientCacheWarmer warmer = warmer(4, 10, true);
+        warmer.run(new DefaultApplicationArguments());
+        Instant changed = Instant.now().plusSeconds(60);
+        when(repo.findUpdatedSince(any(), anyLong(), any())).thenReturn(List.of(client(1, changed)));
+        warmer.refresh();
+
+        when(repo.findUpdatedSince(any(), anyLong(), any())).thenThrow(new IllegalStateException("db down"));
+        warmer.refresh();
+        warmer.refresh();
+
+        verify(repo, times(2)).findUpdatedSince(eq(changed.minusSeconds(5)), eq(0L), limit(10));
+    }
+
+    private void assertPreloads(TreeSet<Long> ids, int parallelism, int pageSize) {
+        when(repo.findMinId()).thenReturn(ids.first());
+        when(repo.findMaxId()).thenReturn(ids.last());
+        when(repo.findIdRange(anyLong(), anyLong(), any())).thenAnswer(inv -> {
+            long afterId = inv.getArgument(0);
+            long lastId = inv.getArgument(1);
+            Limit limit = inv.getArgument(2);
+            rangeQueries.add(new long[]{afterId, lastId});
+            return ids.subSet(afterId, false, lastId, true).stream()
+                    .limit(limit.max())
+                    .map(id -> client(id, Instant.EPOCH))
+                    .toList();
+        });
+
+        warmer(parallelism, pageSize, false).preload();
+
+        assertThat(cached).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    private ApiClientCacheWarmer warmer(int parallelism, int pageSize, boolean refresh) {
+        return new ApiClientCacheWarmer(repo, cache,
+                new CacheWarmupProperties(false, pageSize, parallelism, refresh, Duration.ofHours(1)));
+    }
+
+    private static Limit limit(int max) {
+        return argThat(limit -> limit.max() == max);
+    }
+
+    private static TreeSet<Long> ids(LongStream ids) {
+        return ids.boxed().collect(TreeSet::new, TreeSet::add, TreeSet::addAll);
+    }
+
+    private static ApiClient client(long id, Instant updatedAt) {
+        return ApiClient.builder()
+                .id(id)
+                .name("client-" + id)
+                .apiKeyHash("%064x".formatted(id))
+                .requestsPerMinute(60)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
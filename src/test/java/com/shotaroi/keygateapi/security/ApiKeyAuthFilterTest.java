@@ -0,0 +1,99 @@
+package com.shotaroi.keygateapi.security;
+
+import com.shotaroi.keygateapi.ratelimit.QuotaWindow;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.RedisRateLimiter;
+import com.shotaroi.keygateapi.support.GatewayFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// the concurrency slot an admitted request holds is given back however the request ends
+class ApiKeyAuthFilterTest {
+
+    private static final String LEASE = "lease-1";
+
+    private final RedisRateLimiter rateLimiter = mock(RedisRateLimiter.class);
+    private final ApiKeyAuthFilter filter = GatewayFixtures.authFilter(
+            GatewayFixtures.repository(hash -> Optional.of(GatewayFixtures.client(hash, 60))),
+            rateLimiter,
+            new SimpleMeterRegistry()
+    );
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hello");
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    ApiKeyAuthFilterTest() {
+        request.addHeader("X-API-KEY", "key-1");
+        request.setAsyncSupported(true);
+        // what quotas.lua hands back when it took a slot: the lease comes with the admission
+        when(rateLimiter.check(anyString(), any(RateLimitPolicy.class), anyInt()))
+                .thenReturn(new RateLimitResult(true, 3, 1, 2, 1, false, QuotaWindow.CONCURRENT, LEASE));
+    }
+
+    @Test
+    void releasesTheLeaseOnceTheResponseIsDone() throws Exception {
+        filter.doFilter(request, response, (req, res) -> {
+            // still held while the handler runs
+            verify(rateLimiter, never()).release(anyString(), anyString());
+        });
+
+        verify(rateLimiter).release(anyString(), eq(LEASE));
+    }
+
+    @Test
+    void releasesTheLeaseWhenTheHandlerThrows() {
+        FilterChain failing = (req, res) -> {
+            throw new ServletException("handler failed");
+        };
+
+        assertThatThrownBy(() -> filter.doFilter(request, response, failing)).isInstanceOf(ServletException.class);
+        verify(rateLimiter).release(anyString(), eq(LEASE));
+    }
+
+    @Test
+    void asyncRequestReleasesWhenItCompletes() throws Exception {
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+
+        // the handler returned, but the response isn't done yet
+        verify(rateLimiter, never()).release(anyString(), anyString());
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        verify(rateLimiter).release(anyString(), eq(LEASE));
+    }
+
+    @Test
+    void asyncTimeoutReleasesOnlyOnce() throws Exception {
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+
+        MockAsyncContext async = (MockAsyncContext) request.getAsyncContext();
+        assertThat(async.getListeners()).hasSize(1);
+        AsyncListener listener = async.getListeners().get(0);
+        AsyncEvent event = new AsyncEvent(async, request, response);
+        listener.onTimeout(event);
+        listener.onError(event);
+        async.complete();
+
+        verify(rateLimiter, times(1)).release(anyString(), eq(LEASE));
+    }
+}
@@ -0,0 +1,71 @@
+package com.shotaroi.keygateapi.security;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiKeyHasherTest {
+
+    private final ApiKeyHasher hasher = new ApiKeyHasher();
+
+    @Test
+    void compactHashMatchesTheStoredHexForm() throws Exception {
+        for (String raw : new String[] {"abc", "kg_live_0123456789abcdef", "x".repeat(300)}) {
+            String expected = HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(raw.getBytes(StandardCharsets.UTF_8)));
+
+            // existing api_key_hash rows were written with sha256()
+            assertThat(hasher.sha256(raw)).isEqualTo(expected);
+            assertThat(hasher.hash(raw).toHex()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void wordsAreTheDigestInBigEndianOrder() {
+        // SHA-256("abc")
+        ApiKeyHash hash = hasher.hash("abc");
+
+        assertThat(hash.w0()).isEqualTo(0xba7816bf8f01cfeaL);
+        assertThat(hash.w1()).isEqualTo(0x414140de5dae2223L);
+        assertThat(hash.w2()).isEqualTo(0xb00361a396177a9cL);
+        assertThat(hash.w3()).isEqualTo(0xb410ff61f20015adL);
+        assertThat(hash.hashCode()).isEqualTo(Long.hashCode(0xba7816bf8f01cfeaL));
+    }
+
+    @Test
+    void nonAsciiKeysAreHashedAsUtf8() throws Exception {
+        String raw = "clé-ключ-鍵";
+        String expected = HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(raw.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(hasher.hash(raw).toHex()).isEqualTo(expected);
+        // the fast ASCII path must not leave anything behind for the next key
+        assertThat(hasher.hash("abc").toHex()).isEqualTo(hasher.sha256("abc"));
+    }
+
+    @Test
+    void pepperSwitchesToHmac() throws Exception {
+        ApiKeyHasher peppered = new ApiKeyHasher(new KeyHashProperties("s3cret"));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("s3cret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String expected = HexFormat.of().formatHex(mac.doFinal("abc".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(peppered.sha256("abc")).isEqualTo(expected);
+        assertThat(peppered.hash("abc").toHex()).isEqualTo(expected);
+        assertThat(peppered.sha256("abc")).isNotEqualTo(hasher.sha256("abc"));
+    }
+
+    @Test
+    void hexRoundTrips() {
+        ApiKeyHash hash = hasher.hash("round-trip");
+
+        assertThat(ApiKeyHash.fromHex(hash.toHex())).isEqualTo(hash);
+        assertThat(ApiKeyHash.fromHex(hash.toHex().toUpperCase())).isEqualTo(hash);
+    }
+}
@@ -0,0 +1,46 @@
+package com.shotaroi.keygateapi.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Test
+    void neverMissesAnAddedKey() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        ApiKeyHash[] added = new ApiKeyHash[10_000];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = randomHash();
+            filter.add(added[i]);
+        }
+
+        for (ApiKeyHash hash : added) {
+            assertThat(filter.mightContain(hash)).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositivesStayNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(randomHash());
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(randomHash())) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    private ApiKeyHash randomHash() {
+        return new ApiKeyHash(random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong());
+    }
+}
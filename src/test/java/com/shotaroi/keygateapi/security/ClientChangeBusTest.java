@@ -0,0 +1,161 @@
+package com.shotaroi.keygateapi.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ClientChangeBusTest {
+
+    private static final String VERSION_KEY = "keygate:clients:version";
+    private static final String CHANGELOG_KEY = "keygate:clients:changelog";
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    @SuppressWarnings("unchecked")
+    private final ZSetOperations<String, String> zset = mock(ZSetOperations.class);
+    private final ApiClientCache cache = mock(ApiClientCache.class);
+
+    ClientChangeBusTest() {
+        when(redis.opsForValue()).thenReturn(values);
+        when(redis.opsForZSet()).thenReturn(zset);
+    }
+
+    @Test
+    void readsTheVersionAtStartup() {
+        when(values.get(VERSION_KEY)).thenReturn("7");
+        newBus();
+
+        verify(values).get(VERSION_KEY);
+        verify(zset, never()).rangeByScoreWithScores(anyString(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void inOrderMessageOnlyInvalidatesItsClient() {
+        when(values.get(VERSION_KEY)).thenReturn("7");
+        ClientChangeBus bus = newBus();
+
+        bus.onMessage(message("8 hash-a"), null);
+        bus.onMessage(message("9 hash-b"), null);
+
+        verify(cache).invalidate("hash-a");
+        verify(cache).invalidate("hash-b");
+        // only the startup read
+        verify(values, times(1)).get(VERSION_KEY);
+        verify(cache, never()).invalidateAll();
+    }
+
+    @Test
+    void gapReplaysTheChangelog() {
+        when(values.get(VERSION_KEY)).thenReturn("7", "10");
+        when(zset.rangeByScoreWithScores(CHANGELOG_KEY, 8, 10))
+                .thenReturn(changes("8:hash-a", 8, "9:hash-b", 9, "10:hash-c", 10));
+        ClientChangeBus bus = newBus();
+
+        // 8 and 9 never arrived
+        bus.onMessage(message("10 hash-c"), null);
+
+        verify(cache).invalidate("hash-a");
+        verify(cache).invalidate("hash-b");
+        verify(cache, never()).invalidateAll();
+
+        // caught up: the next one is in order again
+        bus.onMessage(message("11 hash-d"), null);
+        verify(values, times(2)).get(VERSION_KEY);
+        verify(cache).invalidate("hash-d");
+    }
+
+    @Test
+    void gapPastTheTrimmedChangelogClearsTheCache() {
+        when(values.get(VERSION_KEY)).thenReturn("7", "20");
+        // only 15..20 are still kept
+        when(zset.rangeByScoreWithScores(CHANGELOG_KEY, 8, 20))
+                .thenReturn(changes("15:hash-a", 15, "20:hash-b", 20));
+        ClientChangeBus bus = newBus();
+
+        bus.onMessage(message("20 hash-b"), null);
+
+        verify(cache).invalidateAll();
+        verify(cache, never()).invalidate("hash-a");
+
+        bus.onMessage(message("21 hash-c"), null);
+        verify(values, times(2)).get(VERSION_KEY);
+    }
+
+    @Test
+    void staleMessageDoesNotResync() {
+        when(values.get(VERSION_KEY)).thenReturn("7");
+        ClientChangeBus bus = newBus();
+
+        bus.onMessage(message("5 hash-a"), null);
+
+        verify(cache).invalidate("hash-a");
+        verify(values, times(1)).get(VERSION_KEY);
+    }
+
+    @Test
+    void firstResyncAfterRedisWasDownAtStartupReplaysNothing() {
+        when(values.get(VERSION_KEY))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn("12");
+        ClientChangeBus bus = newBus();
+
+        // the cache is newer than whatever happened before we knew the version
+        bus.checkVersion();
+        verify(zset, never()).rangeByScoreWithScores(anyString(), anyDouble(), anyDouble());
+        verify(cache, never()).invalidateAll();
+
+        bus.onMessage(message("13 hash-a"), null);
+        verify(cache).invalidate("hash-a");
+        verify(values, times(2)).get(VERSION_KEY);
+    }
+
+    @Test
+    void disabledBusNeverTouchesRedis() {
+        ClientChangeBus bus = new ClientChangeBus(redis, cache, new InvalidationProperties(false, 100),
+                mock(RedisMessageListenerContainer.class));
+
+        bus.publish("hash-a");
+        bus.checkVersion();
+
+        verify(cache).invalidate("hash-a");
+        verifyNoInteractions(redis);
+    }
+
+    private ClientChangeBus newBus() {
+        return new ClientChangeBus(redis, cache, new InvalidationProperties(true, 100), mock(RedisMessageListenerContainer.class));
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(
+                ClientChangeBus.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    private static Set<TypedTuple<String>> changes(Object... memberAndScore) {
+        Set<TypedTuple<String>> changes = new LinkedHashSet<>();
+        for (int i = 0; i < memberAndScore.length; i += 2) {
+            changes.add(TypedTuple.of((String) memberAndScore[i], ((Integer) memberAndScore[i + 1]).doubleValue()));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,53 @@
+package com.shotaroi.keygateapi.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RevokedKeysTest {
+
+    private static final String HEX = "ab".repeat(32);
+
+    @SuppressWarnings("unchecked")
+    private final ZSetOperations<String, String> zset = mock(ZSetOperations.class);
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private final RevokedKeys revokedKeys;
+
+    RevokedKeysTest() {
+        when(redis.opsForZSet()).thenReturn(zset);
+        revokedKeys = new RevokedKeys(
+                redis,
+                new RevocationProperties(1_000, 0.01, Duration.ofHours(24)),
+                mock(RedisMessageListenerContainer.class)
+        );
+    }
+
+    @Test
+    void revocationRedisMissedSurvivesTheNextReloadAndIsSharedThen() {
+        when(zset.add(anyString(), anyString(), anyDouble()))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(true);
+        // what the reload reads doesn't have it yet
+        when(zset.rangeByScore(anyString(), anyDouble(), anyDouble())).thenReturn(Set.of());
+
+        revokedKeys.revoke(HEX);
+        revokedKeys.reload();
+
+        assertThat(revokedKeys.isRevoked(ApiKeyHash.fromHex(HEX))).isTrue();
+        verify(zset, times(2)).add(eq("keygate:revoked"), eq(HEX), anyDouble());
+    }
+}
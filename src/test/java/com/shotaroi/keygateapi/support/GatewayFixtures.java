@@ -0,0 +1,289 @@
+package com.shotaroi.keygateapi.support;
+
+import com.shotaroi.keygateapi.api.ApiClient;
+import com.shotaroi.keygateapi.api.ApiClientRepository;
+import com.shotaroi.keygateapi.errors.ApiErrorWriter;
+import com.shotaroi.keygateapi.metrics.AuthMetrics;
+import com.shotaroi.keygateapi.metrics.MetricsProperties;
+import com.shotaroi.keygateapi.profiling.FilterProfiler;
+import com.shotaroi.keygateapi.profiling.ProfilingProperties;
+import com.shotaroi.keygateapi.ratelimit.BatchProperties;
+import com.shotaroi.keygateapi.ratelimit.CounterFormat;
+import com.shotaroi.keygateapi.ratelimit.CounterKeys;
+import com.shotaroi.keygateapi.ratelimit.CounterProperties;
+import com.shotaroi.keygateapi.ratelimit.FallbackProperties;
+import com.shotaroi.keygateapi.ratelimit.FixedWindowRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.HotKeyDetector;
+import com.shotaroi.keygateapi.ratelimit.HotKeyProperties;
+import com.shotaroi.keygateapi.ratelimit.LeaseProperties;
+import com.shotaroi.keygateapi.ratelimit.LeasedRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.LimiterCallBatcher;
+import com.shotaroi.keygateapi.ratelimit.LocalRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.QuotaProperties;
+import com.shotaroi.keygateapi.ratelimit.RateLimitAlgorithm;
+import com.shotaroi.keygateapi.ratelimit.RateLimitPolicy;
+import com.shotaroi.keygateapi.ratelimit.RateLimitResult;
+import com.shotaroi.keygateapi.ratelimit.RateLimiter;
+import com.shotaroi.keygateapi.ratelimit.ReactiveRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.RedisCircuitBreaker;
+import com.shotaroi.keygateapi.ratelimit.RedisRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.RedisShards;
+import com.shotaroi.keygateapi.ratelimit.RouteCostProperties;
+import com.shotaroi.keygateapi.ratelimit.RouteCosts;
+import com.shotaroi.keygateapi.ratelimit.ShardProperties;
+import com.shotaroi.keygateapi.ratelimit.SlidingWindowRateLimiter;
+import com.shotaroi.keygateapi.ratelimit.TokenBucketRateLimiter;
+import com.shotaroi.keygateapi.security.ApiClientCache;
+import com.shotaroi.keygateapi.security.ApiKeyAuthFilter;
+import com.shotaroi.keygateapi.security.ApiKeyHasher;
+import com.shotaroi.keygateapi.security.AuthCacheProperties;
+import com.shotaroi.keygateapi.security.ReactiveApiKeyAuthFilter;
+import com.shotaroi.keygateapi.security.RevocationProperties;
+import com.shotaroi.keygateapi.security.RevokedKeys;
+import com.shotaroi.keygateapi.usage.UsageRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds the auth filter and limiter stack by hand, with in-memory stand-ins
+ * for Postgres and Redis. Shared by the load tests and benchmarks.
+ */
+public final class GatewayFixtures {
+
+    // breaker with default settings
+    private static final FallbackProperties FALLBACK = new FallbackProperties(5, Duration.ofSeconds(5), 1);
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+    // every request costs 1
+    private static final RouteCosts NO_ROUTE_COSTS = new RouteCosts(new RouteCostProperties(1, List.of()));
+    private static final CounterKeys COMPACT_COUNTERS = counterKeys(CounterFormat.COMPACT);
+    private static final BatchProperties NO_BATCHING =
+            new BatchProperties(false, 128, Duration.ofNanos(200_000), 65_536, 1, Duration.ofSeconds(1));
+
+    private GatewayFixtures() {
+    }
+
+    public static ApiClient client(String apiKeyHash, int requestsPerMinute) {
+        return ApiClient.builder()
+                .id(1L)
+                .name("test-client")
+                .apiKeyHash(apiKeyHash)
+                .requestsPerMinute(requestsPerMinute)
+                .build();
+    }
+
+    // every hash resolves to a client; the lookup can add latency or bound concurrency
+    public static ApiClientRepository repository(Function<String, Optional<ApiClient>> lookup) {
+        ApiClientRepository repo = mock(ApiClientRepository.class);
+        when(repo.findByApiKeyHashOrPreviousApiKeyHash(anyString(), anyString()))
+                .thenAnswer(inv -> lookup.apply(inv.getArgument(0)));
+        return repo;
+    }
+
+    public static ApiClientCache clientCache(ApiClientRepository repo, MeterRegistry registry) {
+        return new ApiClientCache(
+                repo,
+                new AuthCacheProperties(100_000, Duration.ofMinutes(1), Duration.ofSeconds(10), 0.8, 2),
+                registry
+        );
+    }
+
+    // nothing revoked, no Redis behind it
+    public static RevokedKeys revokedKeys() {
+        return new RevokedKeys(
+                null,
+                new RevocationProperties(1_000, 0.01, Duration.ofHours(24)),
+                mock(RedisMessageListenerContainer.class)
+        );
+    }
+
+    // the same limiter for every algorithm, leases and hot-key blocking off
+    public static RedisRateLimiter rateLimiter(Function<RateLimitAlgorithm, RateLimiter> limiterFor, MeterRegistry registry) {
+        return rateLimiter(limiterFor, false, registry);
+    }
+
+    public static RedisRateLimiter rateLimiter(Function<RateLimitAlgorithm, RateLimiter> limiterFor,
+                                               boolean hotKeys,
+                                               MeterRegistry registry) {
+        return rateLimiter(
+                limiterFor,
+                new RedisCircuitBreaker(FALLBACK, registry),
+                new LocalRateLimiter(FALLBACK),
+                hotKeyDetector(hotKeys, registry),
+                null,
+                COMPACT_COUNTERS,
+                registry
+        );
+    }
+
+    // the real limiter scripts against a real Redis, one call per request (no batching, no leases)
+    public static RedisRateLimiter redisRateLimiter(StringRedisTemplate redis, CounterFormat format, MeterRegistry registry) {
+        return redisRateLimiter(redis, format, NO_BATCHING, registry);
+    }
+
+    public static RedisRateLimiter redisRateLimiter(StringRedisTemplate redis,
+                                                    CounterFormat format,
+                                                    BatchProperties batch,
+                                                    MeterRegistry registry) {
+        RedisShards shards = new RedisShards(
+                new ShardProperties(160, Duration.ofMillis(100), Duration.ofMillis(250), List.of()),
+                redis,
+                Optional.empty(),
+                registry
+        );
+        LimiterCallBatcher batcher = new LimiterCallBatcher(
+                shards,
+                batch,
+                registry
+        );
+        CounterKeys counterKeys = counterKeys(format);
+        List<RateLimiter> limiters = List.of(
+                new FixedWindowRateLimiter(batcher, counterKeys),
+                new SlidingWindowRateLimiter(batcher, counterKeys),
+                new TokenBucketRateLimiter(batcher)
+        );
+
+        return rateLimiter(
+                algorithm -> limiters.stream().filter(l -> l.algorithm() == algorithm).findFirst().orElseThrow(),
+                new RedisCircuitBreaker(FALLBACK, registry),
+                new LocalRateLimiter(FALLBACK),
+                hotKeyDetector(false, registry),
+                shards,
+                counterKeys,
+                registry
+        );
+    }
+
+    public static CounterKeys counterKeys(CounterFormat format) {
+        return new CounterKeys(new CounterProperties(format, false, 1000, null));
+    }
+
+    public static HotKeyDetector hotKeyDetector(boolean enabled, MeterRegistry registry) {
+        return new HotKeyDetector(new HotKeyProperties(enabled, 20, 4096, 4, 10_000), registry);
+    }
+
+    private static RedisRateLimiter rateLimiter(Function<RateLimitAlgorithm, RateLimiter> limiterFor,
+                                                RedisCircuitBreaker breaker,
+                                                LocalRateLimiter localLimiter,
+                                                HotKeyDetector hotKeys,
+                                                RedisShards shards,
+                                                CounterKeys counterKeys,
+                                                MeterRegistry registry) {
+        List<RateLimiter> limiters = new ArrayList<>();
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            limiters.add(limiterFor.apply(algorithm));
+        }
+
+        return new RedisRateLimiter(
+                limiters,
+                new LeasedRateLimiter(shards, counterKeys, new LeaseProperties(false, 100, 0.1, 0.25, 1)),
+                localLimiter,
+                breaker,
+                hotKeys,
+                shards,
+                counterKeys,
+                FALLBACK,
+                new QuotaProperties(Duration.ofSeconds(60)),
+                registry
+        );
+    }
+
+    // real limiter scripts against a fake reactive Redis that allows everything after one round trip
+    @SuppressWarnings("unchecked")
+    public static ReactiveRateLimiter reactiveRateLimiter(Duration redisLatency, MeterRegistry registry) {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(FALLBACK, registry);
+        LocalRateLimiter localLimiter = new LocalRateLimiter(FALLBACK);
+        HotKeyDetector hotKeys = hotKeyDetector(false, registry);
+
+        ReactiveStringRedisTemplate redis = mock(ReactiveStringRedisTemplate.class);
+        // {allowed, used, remaining, resetSeconds}, one element at a time like Lettuce
+        when(redis.execute(any(RedisScript.class), anyList(), anyList()))
+                .thenAnswer(inv -> Flux.just(1L, 1L, 99L, 30L).delaySubscription(redisLatency));
+
+        // no shard nodes configured: everything goes to this one template
+        RedisShards shards = new RedisShards(
+                new ShardProperties(160, Duration.ofMillis(100), Duration.ofMillis(250), List.of()),
+                null,
+                Optional.of(redis),
+                registry
+        );
+
+        return new ReactiveRateLimiter(
+                List.of(
+                        new FixedWindowRateLimiter(null, COMPACT_COUNTERS),
+                        new SlidingWindowRateLimiter(null, COMPACT_COUNTERS),
+                        new TokenBucketRateLimiter(null)
+                ),
+                shards,
+                rateLimiter(algorithm -> new FixedLimiter(algorithm, true), breaker, localLimiter, hotKeys, shards, COMPACT_COUNTERS, registry),
+                localLimiter,
+                breaker,
+                hotKeys
+        );
+    }
+
+    public static ApiKeyAuthFilter authFilter(ApiClientRepository repo, RedisRateLimiter rateLimiter, MeterRegistry registry) {
+        return new ApiKeyAuthFilter(
+                clientCache(repo, registry),
+                revokedKeys(),
+                new ApiKeyHasher(),
+                rateLimiter,
+                NO_ROUTE_COSTS,
+                new ApiErrorWriter(JSON),
+                new AuthMetrics(registry, new MetricsProperties(List.of(), 0, Duration.ofMinutes(10))),
+                mock(UsageRecorder.class),
+                profiler()
+        );
+    }
+
+    public static FilterProfiler profiler() {
+        return new FilterProfiler(new ProfilingProperties(Duration.ofSeconds(60), Duration.ofMinutes(10), DataSize.ofMegabytes(64), ""));
+    }
+
+    public static ReactiveApiKeyAuthFilter reactiveAuthFilter(ApiClientRepository repo,
+                                                              ReactiveRateLimiter rateLimiter,
+                                                              MeterRegistry registry) {
+        return new ReactiveApiKeyAuthFilter(
+                clientCache(repo, registry),
+                revokedKeys(),
+                new ApiKeyHasher(),
+                rateLimiter,
+                NO_ROUTE_COSTS,
+                new ApiErrorWriter(JSON),
+                new AuthMetrics(registry, new MetricsProperties(List.of(), 0, Duration.ofMinutes(10))),
+                mock(UsageRecorder.class)
+        );
+    }
+
+    /**
+     * Limiter that answers without Redis: always allows or always rejects.
+     */
+    public record FixedLimiter(RateLimitAlgorithm algorithm, boolean allow) implements RateLimiter {
+
+        @Override
+        public RateLimitResult tryAcquire(String apiKeyHash, RateLimitPolicy policy, int cost) {
+            int limit = policy.requestsPerMinute();
+            return allow
+                    ? new RateLimitResult(true, limit, 1, limit - 1, 30)
+                    // nothing charged on a rejection, like the scripts: the window is simply full
+                    : new RateLimitResult(false, limit, limit, 0, 30);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.shotaroi.keygateapi.trace;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+class TraceContextTest {
+
+    private final RequestIdGenerator generator = new TimeOrderedRequestIdGenerator();
+
+    @Test
+    void generatedIdsAreVersion7AndTimeOrdered() throws Exception {
+        String first = generator.next();
+        Thread.sleep(2);
+        String second = generator.next();
+
+        UUID uuid = UUID.fromString(first);
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(uuid.getMostSignificantBits() >>> 16).isCloseTo(System.currentTimeMillis(), offset(1_000L));
+        assertThat(second).isGreaterThan(first);
+    }
+
+    @Test
+    void checksIncomingIds() {
+        assertThat(RequestIds.isValid(generator.next(), 64)).isTrue();
+        assertThat(RequestIds.isValid("01ARZ3NDEKTSV4RRFFQ69G5FAV", 64)).isTrue();
+        assertThat(RequestIds.isValid("", 64)).isFalse();
+        assertThat(RequestIds.isValid("a".repeat(65), 64)).isFalse();
+        assertThat(RequestIds.isValid("forged\nlog line", 64)).isFalse();
+        assertThat(RequestIds.isValid("id with spaces", 64)).isFalse();
+    }
+
+    @Test
+    void continuesAnIncomingTrace() {
+        TraceContext trace = TraceContext.continueOrStart("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", "some-id");
+
+        assertThat(trace.traceId()).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+        assertThat(trace.sampled()).isTrue();
+        assertThat(trace.spanId()).isNotEqualTo("00f067aa0ba902b7").hasSize(16);
+        assertThat(trace.traceparent()).matches("00-4bf92f3577b34da6a3ce929d0e0e4736-[0-9a-f]{16}-01");
+    }
+
+    @Test
+    void startsATraceFromTheRequestId() {
+        String requestId = generator.next();
+        TraceContext trace = TraceContext.continueOrStart(null, requestId);
+
+        assertThat(trace.traceId()).isEqualTo(requestId.replace("-", ""));
+        assertThat(trace.traceparent()).hasSize(55).endsWith("-01");
+    }
+
+    @Test
+    void ignoresMalformedTraceparents() {
+        String requestId = generator.next();
+        for (String bad : new String[] {
+                "00-00000000000000000000000000000000-00f067aa0ba902b7-01",
+                "00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01",
+                "ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+                "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7",
+                // version 00 has no room for more fields
+                "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra",
+                "garbage"
+        }) {
+            assertThat(TraceContext.continueOrStart(bad, requestId).traceId()).isEqualTo(requestId.replace("-", ""));
+        }
+    }
+
+    @Test
+    void laterVersionsMayAppendFields() {
+        TraceContext trace = TraceContext.continueOrStart("01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra", "some-id");
+
+        assertThat(trace.traceId()).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+    }
+
+    @Test
+    void buildsTheServletTraceOnFirstUse() {
+        String requestId = generator.next();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(RequestIdFilter.ATTR, requestId);
+
+        assertThat(request.getAttribute(TraceContext.ATTR)).isNull();
+        TraceContext trace = TraceContext.of(request);
+
+        assertThat(trace.traceId()).isEqualTo(requestId.replace("-", ""));
+        assertThat(TraceContext.of(request)).isSameAs(trace);
+        assertThat(request.getAttribute(TraceContext.ATTR)).isSameAs(trace);
+    }
+
+    @Test
+    void buildsTheReactiveTraceOnFirstUse() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .header(TraceContext.HEADER, "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00"));
+        exchange.getAttributes().put(RequestIdFilter.ATTR, generator.next());
+
+        TraceContext trace = TraceContext.of(exchange);
+
+        assertThat(trace.traceId()).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+        assertThat(trace.sampled()).isFalse();
+        assertThat(TraceContext.of(exchange)).isSameAs(trace);
+    }
+
+    @Test
+    void startsATraceWithoutARequestId() {
+        TraceContext trace = TraceContext.of(new MockHttpServletRequest());
+
+        assertThat(trace.traceparent()).matches("00-[0-9a-f]{32}-[0-9a-f]{16}-01");
+    }
+}
@@ -0,0 +1,127 @@
+package com.shotaroi.keygateapi.usage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class UsageRecorderTest {
+
+    private static final Instant MINUTE = Instant.parse("2026-01-01T10:00:00Z");
+
+    private final MutableClock clock = new MutableClock(MINUTE.plusSeconds(5));
+    private final UsageStore store = mock(UsageStore.class);
+    private final List<UsageStore.MinuteCount> written = new ArrayList<>();
+    private final UsageRecorder recorder = new UsageRecorder(
+            store, new UsageProperties(Duration.ofHours(48), Duration.ofDays(90), 5000), clock);
+
+    UsageRecorderTest() {
+        doAnswer(inv -> written.addAll(inv.getArgument(0))).when(store).addMinuteCounts(anyList());
+    }
+
+    @Test
+    void flushWritesOneCountPerClientAndMinute() {
+        recorder.record(1);
+        recorder.record(1);
+        recorder.record(2);
+
+        recorder.flush();
+
+        assertThat(written).containsExactlyInAnyOrder(
+                new UsageStore.MinuteCount(1, MINUTE, 2),
+                new UsageStore.MinuteCount(2, MINUTE, 1));
+
+        // nothing new, nothing written
+        written.clear();
+        recorder.flush();
+        verify(store).addMinuteCounts(anyList());
+        assertThat(written).isEmpty();
+    }
+
+    @Test
+    void failedFlushIsRetriedWithTheSameCounts() {
+        doThrow(new DataAccessResourceFailureException("db down")).doAnswer(inv -> written.addAll(inv.getArgument(0)))
+                .when(store).addMinuteCounts(anyList());
+        recorder.record(1);
+        recorder.record(1);
+
+        recorder.flush();
+        recorder.record(1);
+        recorder.flush();
+
+        assertThat(written).hasSize(1);
+        // the two counts put back after the failure, plus the one recorded since
+        assertThat(written.getFirst().count()).isEqualTo(3);
+    }
+
+    @Test
+    void lateIncrementsToAPastMinuteAreKeptUntilTheNextFlush() {
+        recorder.record(1);
+        clock.set(MINUTE.plusSeconds(65));
+
+        recorder.flush();
+        // a request thread that read the clock just before the minute ended
+        clock.set(MINUTE.plusSeconds(59));
+        recorder.record(1);
+        clock.set(MINUTE.plusSeconds(66));
+        recorder.record(1);
+        recorder.flush();
+
+        assertThat(written).containsExactlyInAnyOrder(
+                new UsageStore.MinuteCount(1, MINUTE, 1),
+                new UsageStore.MinuteCount(1, MINUTE, 1),
+                new UsageStore.MinuteCount(1, MINUTE.plusSeconds(60), 1));
+
+        // the old minute is gone now, nothing more is written for it
+        recorder.flush();
+        assertThat(written).hasSize(3);
+    }
+
+    @Test
+    void noWriteWithoutRequests() {
+        recorder.flush();
+
+        verify(store, never()).addMinuteCounts(anyList());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void set(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.shotaroi.keygateapi.usage;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UsageStoreTest {
+
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final TransactionTemplate tx = mock(TransactionTemplate.class);
+    private final UsageStore store = new UsageStore(jdbc, tx);
+
+    UsageStoreTest() {
+        when(tx.execute(any())).thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void minuteCountsAreUpsertedAsMinuteRows() throws Exception {
+        Instant minute = Instant.parse("2026-01-01T10:00:00Z");
+        List<UsageStore.MinuteCount> counts = List.of(new UsageStore.MinuteCount(7, minute, 3));
+
+        store.addMinuteCounts(counts);
+
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<UsageStore.MinuteCount>> setter =
+                ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        verify(jdbc).batchUpdate(contains("ON CONFLICT"), eq(counts), eq(500), setter.capture());
+
+        PreparedStatement ps = mock(PreparedStatement.class);
+        setter.getValue().setValues(ps, counts.getFirst());
+        verify(ps).setLong(1, 7);
+        verify(ps).setString(2, "MINUTE");
+        verify(ps).setObject(3, minute.atOffset(ZoneOffset.UTC));
+        verify(ps).setLong(4, 3);
+    }
+
+    @Test
+    void compactionFoldsMinutesIntoHoursAndHoursIntoDays() {
+        when(jdbc.queryForObject(anyString(), eq(Boolean.class), any(Object[].class))).thenReturn(true);
+        Instant now = Instant.parse("2026-03-10T12:34:56Z");
+
+        assertThat(store.compact(now, Duration.ofHours(48), Duration.ofDays(90))).isTrue();
+
+        verify(jdbc).update(contains("granularity = 'MINUTE'"),
+                eq(Instant.parse("2026-03-08T12:00:00Z").atOffset(ZoneOffset.UTC)));
+        verify(jdbc).update(contains("granularity = 'HOUR'"),
+                eq(Instant.parse("2025-12-10T00:00:00Z").atOffset(ZoneOffset.UTC)));
+    }
+
+    @Test
+    void compactionIsSkippedWhenAnotherNodeHoldsTheLock() {
+        when(jdbc.queryForObject(anyString(), eq(Boolean.class), any(Object[].class))).thenReturn(false);
+
+        assertThat(store.compact(Instant.now(), Duration.ofHours(48), Duration.ofDays(90))).isFalse();
+
+        verify(jdbc, never()).update(anyString(), any(Object[].class));
+    }
+}